@@ -0,0 +1,671 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.custom;
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.widgets.*;
+import java.util.Vector;
+
+/**
+ * A <code>StyledTextContent</code> that stores its text in a piece table.
+ * <p>
+ * The text is described by a sequence of pieces, each one referring to a
+ * range of either the string passed to <code>setText</code> or an append
+ * only buffer holding all the inserted text. The original string is never
+ * copied. The pieces are kept in a balanced tree where every node caches the
+ * number of characters and line delimiters of its subtree, so that mapping
+ * between offsets and lines, as well as replacing text, takes logarithmic
+ * time regardless of the size of the document. This makes the content
+ * suitable for very large documents, such as log files of several hundred
+ * megabytes.
+ * </p><p>
+ * Like the default content, this content does not allow the \r\n line
+ * delimiter to be split or partially deleted, and a \r and a \n that are
+ * brought together by an edit count as two line delimiters.
+ * </p>
+ *
+ * @see StyledText#setContent(StyledTextContent)
+ *
+ * @since 3.6
+ */
+public class PieceTableContent implements StyledTextContent {
+	final static String LineDelimiter = System.getProperty("line.separator");
+
+	Vector textListeners = new Vector(); // stores text listeners for event sending
+	String original = "";	// the text of the last setText, never copied
+	int[] originalLineStarts = new int[0];	// offsets following each line delimiter of the original text
+	char[] added = new char[256];	// append only store for inserted text
+	int addedLength = 0;
+	int[] addedLineStarts = new int[32];	// offsets following each line delimiter of the added text
+	int addedLineCount = 0;
+	Piece root;	// the root of the piece tree
+	int seed = 0x2545F491;	// state of the priority generator
+
+	/* A piece of text and the root of a subtree of pieces */
+	static class Piece {
+		boolean added;	// true if the piece refers to the added text, false for the original text
+		int start, length;	// range of the piece in its buffer
+		int delimiterCount;	// number of line delimiters in the piece
+		int treeLength, treeDelimiterCount;	// totals for the subtree rooted at this piece
+		int priority;
+		Piece left, right;
+	}
+
+/**
+ * Creates a new empty content.  A <code>StyledTextContent</code> will always have
+ * at least one empty line.
+ */
+public PieceTableContent() {
+	super();
+}
+/**
+ * Adds a <code>TextChangeListener</code> listening for
+ * <code>TextChangingEvent</code> and <code>TextChangedEvent</code>. A
+ * <code>TextChangingEvent</code> is sent before changes to the text occur.
+ * A <code>TextChangedEvent</code> is sent after changes to the text
+ * occurred.
+ * <p>
+ *
+ * @param listener the listener
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void addTextChangeListener(TextChangeListener listener) {
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	StyledTextListener typedListener = new StyledTextListener(listener);
+	textListeners.addElement(typedListener);
+}
+/**
+ * Appends text to the added buffer and indexes its line delimiters.
+ * <p>
+ * The line delimiters of each appended string are indexed on their
+ * own, so that a \r ending a string and a \n starting the next one
+ * are counted as two delimiters.
+ * </p>
+ *
+ * @param text the text to append
+ * @return the offset of the text in the added buffer
+ */
+int append(String text) {
+	int length = text.length();
+	if (addedLength + length > added.length) {
+		char[] newAdded = new char[Math.max(addedLength + length, added.length * 2)];
+		System.arraycopy(added, 0, newAdded, 0, addedLength);
+		added = newAdded;
+	}
+	text.getChars(0, length, added, addedLength);
+	int start = addedLength, end = addedLength + length;
+	for (int i = start; i < end; i++) {
+		char ch = added[i];
+		if (ch == SWT.CR) {
+			if (i + 1 < end && added[i + 1] == SWT.LF) i++;
+			addLineStart(i + 1);
+		} else if (ch == SWT.LF) {
+			addLineStart(i + 1);
+		}
+	}
+	addedLength = end;
+	return start;
+}
+/**
+ * Adds an offset following a line delimiter to the line starts of the added buffer.
+ *
+ * @param offset the offset in the added buffer
+ */
+void addLineStart(int offset) {
+	if (addedLineCount == addedLineStarts.length) {
+		int[] newLineStarts = new int[addedLineCount * 2];
+		System.arraycopy(addedLineStarts, 0, newLineStarts, 0, addedLineCount);
+		addedLineStarts = newLineStarts;
+	}
+	addedLineStarts[addedLineCount++] = offset;
+}
+/**
+ * Returns the character at the given offset of a buffer.
+ *
+ * @param inAdded true for the added buffer, false for the original text
+ * @param offset the offset in the buffer
+ * @return the character
+ */
+char bufferChar(boolean inAdded, int offset) {
+	return inAdded ? added[offset] : original.charAt(offset);
+}
+/**
+ * Returns the character at the given logical offset.
+ *
+ * @param offset the offset of the character
+ * @return the character
+ */
+char charAt(int offset) {
+	Piece piece = root;
+	while (piece != null) {
+		int leftLength = length(piece.left);
+		if (offset < leftLength) {
+			piece = piece.left;
+			continue;
+		}
+		offset -= leftLength;
+		if (offset < piece.length) return bufferChar(piece.added, piece.start + offset);
+		offset -= piece.length;
+		piece = piece.right;
+	}
+	error(SWT.ERROR_INVALID_ARGUMENT);
+	return 0;
+}
+/**
+ * Returns the number of line delimiters of a buffer that lie in the
+ * given range.  A delimiter lies in the range when the offset following
+ * it is greater than <code>start</code> and not greater than
+ * <code>start + length</code>.
+ *
+ * @param inAdded true for the added buffer, false for the original text
+ * @param start the start of the range in the buffer
+ * @param length the length of the range
+ * @return the number of line delimiters
+ */
+int countDelimiters(boolean inAdded, int start, int length) {
+	if (length == 0) return 0;
+	int[] lineStarts = inAdded ? addedLineStarts : originalLineStarts;
+	int count = inAdded ? addedLineCount : originalLineStarts.length;
+	return upperBound(lineStarts, count, start + length) - upperBound(lineStarts, count, start);
+}
+/**
+ * Returns the number of line delimiters in a subtree.
+ */
+int delimiterCount(Piece piece) {
+	return piece == null ? 0 : piece.treeDelimiterCount;
+}
+/**
+ * Reports an SWT error.
+ * <p>
+ *
+ * @param code the error code
+ */
+void error (int code) {
+	SWT.error(code);
+}
+/**
+ * Returns the logical length of the text.
+ *
+ * @return the number of characters in the content
+ */
+public int getCharCount() {
+	return length(root);
+}
+/**
+ * Returns the line at <code>index</code> without delimiters.
+ * <p>
+ *
+ * @param index	the index of the line to return
+ * @return the line text without delimiters
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when index is out of range</li>
+ * </ul>
+ */
+public String getLine(int index) {
+	int lineCount = getLineCount();
+	if ((index >= lineCount) || (index < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	int start = getOffsetAtLine(index);
+	int end;
+	if (index + 1 < lineCount) {
+		end = getOffsetAtLine(index + 1);
+		while (end > start && isDelimiter(charAt(end - 1))) end--;
+	} else {
+		end = getCharCount();
+	}
+	return getTextRange(start, end - start);
+}
+/**
+ * Returns the line index at the given offset.
+ * <p>
+ *
+ * @param offset logical character offset
+ * @return the line index
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT when offset is out of range</li>
+ * </ul>
+ */
+public int getLineAtOffset(int offset) {
+	if ((offset > getCharCount()) || (offset < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	int line = 0;
+	Piece piece = root;
+	while (piece != null) {
+		int leftLength = length(piece.left);
+		if (offset < leftLength) {
+			piece = piece.left;
+			continue;
+		}
+		offset -= leftLength;
+		line += delimiterCount(piece.left);
+		if (offset <= piece.length) {
+			return line + countDelimiters(piece.added, piece.start, offset);
+		}
+		offset -= piece.length;
+		line += piece.delimiterCount;
+		piece = piece.right;
+	}
+	return line;
+}
+/**
+ * Returns the number of lines in the content.
+ *
+ * @return the number of lines
+ */
+public int getLineCount() {
+	return delimiterCount(root) + 1;
+}
+/**
+ * Returns the line delimiter that should be used by the StyledText
+ * widget when inserting new lines.  This delimiter may be different than the
+ * delimiter that is used by the <code>StyledTextContent</code> interface.
+ * <p>
+ *
+ * @return the platform line delimiter as specified in the line.separator
+ * 	system property.
+ */
+public String getLineDelimiter() {
+	return LineDelimiter;
+}
+/**
+ * Returns the logical offset of the given line.
+ * <p>
+ *
+ * @param lineIndex index of line
+ * @return the logical starting offset of the line.  When there are not any lines,
+ * 	getOffsetAtLine(0) is a valid call that should answer 0.
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when lineIndex is out of range</li>
+ * </ul>
+ */
+public int getOffsetAtLine(int lineIndex) {
+	if (lineIndex == 0) return 0;
+	if ((lineIndex >= getLineCount()) || (lineIndex < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	int offset = 0;
+	Piece piece = root;
+	while (piece != null) {
+		int leftCount = delimiterCount(piece.left);
+		if (lineIndex <= leftCount) {
+			piece = piece.left;
+			continue;
+		}
+		lineIndex -= leftCount;
+		offset += length(piece.left);
+		if (lineIndex <= piece.delimiterCount) {
+			int[] lineStarts = piece.added ? addedLineStarts : originalLineStarts;
+			int count = piece.added ? addedLineCount : originalLineStarts.length;
+			int index = upperBound(lineStarts, count, piece.start) + lineIndex - 1;
+			return offset + lineStarts[index] - piece.start;
+		}
+		lineIndex -= piece.delimiterCount;
+		offset += piece.length;
+		piece = piece.right;
+	}
+	return offset;
+}
+/**
+ * Copies the text of a subtree that lies in the given range into a buffer.
+ *
+ * @param piece the root of the subtree
+ * @param offset the logical offset of the subtree
+ * @param start the logical start of the range
+ * @param end the logical end of the range
+ * @param buffer the destination, indexed from <code>start</code>
+ */
+void getText(Piece piece, int offset, int start, int end, char[] buffer) {
+	if (piece == null) return;
+	int pieceStart = offset + length(piece.left);
+	int pieceEnd = pieceStart + piece.length;
+	if (start < pieceStart) getText(piece.left, offset, start, end, buffer);
+	int copyStart = Math.max(start, pieceStart);
+	int copyEnd = Math.min(end, pieceEnd);
+	if (copyStart < copyEnd) {
+		int bufferStart = piece.start + copyStart - pieceStart;
+		if (piece.added) {
+			System.arraycopy(added, bufferStart, buffer, copyStart - start, copyEnd - copyStart);
+		} else {
+			original.getChars(bufferStart, bufferStart + copyEnd - copyStart, buffer, copyStart - start);
+		}
+	}
+	if (end > pieceEnd) getText(piece.right, pieceEnd, start, end, buffer);
+}
+/**
+ * Returns the logical content in the given range.
+ * <p>
+ *
+ * @param start the logical start offset of the text to return
+ * @param length the logical length of the text to return
+ * @return the text
+ */
+public String getTextRange(int start, int length) {
+	if (length == 0) return "";
+	if (start < 0 || length < 0 || start + length > getCharCount()) error(SWT.ERROR_INVALID_ARGUMENT);
+	char[] buffer = new char[length];
+	getText(root, 0, start, start + length, buffer);
+	return new String(buffer);
+}
+/**
+ * Returns whether or not the given character is a line delimiter.  Both CR and LF
+ * are valid line delimiters.
+ * <p>
+ *
+ * @param ch the character to test
+ * @return true if ch is a delimiter, false otherwise
+ */
+boolean isDelimiter(char ch) {
+	if (ch == SWT.CR) return true;
+	if (ch == SWT.LF) return true;
+	return false;
+}
+/**
+ * Determine whether or not the replace operation is valid.  The content will not allow
+ * the /r/n line delimiter to be split or partially deleted.
+ * <p>
+ *
+ * @param start	start offset of text to replace
+ * @param replaceLength start offset of text to replace
+ * @param newText start offset of text to replace
+ * @return a boolean specifying whether or not the replace operation is valid
+ */
+protected boolean isValidReplace(int start, int replaceLength, String newText){
+	int charCount = getCharCount();
+	if (start < 0 || replaceLength < 0 || start + replaceLength > charCount) return false;
+	if (replaceLength == 0) {
+		// inserting text, see if the \r\n line delimiter is being split
+		if (start == 0) return true;
+		if (start == charCount) return true;
+		if (charAt(start - 1) == SWT.CR && charAt(start) == SWT.LF) return false;
+	} else {
+		// deleting text, see if part of a \r\n line delimiter is being deleted
+		if (start != 0 && charAt(start) == SWT.LF && charAt(start - 1) == SWT.CR) return false;
+		int end = start + replaceLength;
+		if (end != charCount && charAt(end - 1) == SWT.CR && charAt(end) == SWT.LF) return false;
+	}
+	return true;
+}
+/**
+ * Returns the number of characters in a subtree.
+ */
+int length(Piece piece) {
+	return piece == null ? 0 : piece.treeLength;
+}
+/**
+ * Merges two subtrees, all the pieces of <code>left</code> preceding the
+ * pieces of <code>right</code>.
+ *
+ * @param left the first subtree
+ * @param right the second subtree
+ * @return the root of the merged tree
+ */
+Piece merge(Piece left, Piece right) {
+	if (left == null) return right;
+	if (right == null) return left;
+	if (left.priority > right.priority) {
+		left.right = merge(left.right, right);
+		update(left);
+		return left;
+	}
+	right.left = merge(left, right.left);
+	update(right);
+	return right;
+}
+/**
+ * Creates a piece referring to the given range of a buffer.
+ *
+ * @param inAdded true for the added buffer, false for the original text
+ * @param start the start of the range
+ * @param length the length of the range
+ * @return the new piece
+ */
+Piece newPiece(boolean inAdded, int start, int length) {
+	Piece piece = new Piece();
+	piece.added = inAdded;
+	piece.start = start;
+	piece.length = length;
+	piece.delimiterCount = countDelimiters(inAdded, start, length);
+	seed ^= seed << 13;
+	seed ^= seed >>> 17;
+	seed ^= seed << 5;
+	piece.priority = seed;
+	update(piece);
+	return piece;
+}
+/**
+ * Removes the specified <code>TextChangeListener</code>.
+ * <p>
+ *
+ * @param listener the listener which should no longer be notified
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void removeTextChangeListener(TextChangeListener listener) {
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	for (int i = 0; i < textListeners.size(); i++) {
+		TypedListener typedListener = (TypedListener) textListeners.elementAt(i);
+		if (typedListener.getEventListener () == listener) {
+			textListeners.removeElementAt(i);
+			break;
+		}
+	}
+}
+/**
+ * Replaces the text with <code>newText</code> starting at position <code>start</code>
+ * for a length of <code>replaceLength</code>.  Notifies the appropriate listeners.
+ * <p>
+ *
+ * When sending the TextChangingEvent, <code>newLineCount</code> is the number of
+ * lines that are going to be inserted and <code>replaceLineCount</code> is
+ * the number of lines that are going to be deleted, based on the change
+ * that occurs visually.  For example:
+ * <ul>
+ * <li>(replaceText,newText) ==> (replaceLineCount,newLineCount)
+ * <li>("","\n") ==> (0,1)
+ * <li>("\n\n","a") ==> (2,0)
+ * </ul>
+ * </p>
+ *
+ * @param start	start offset of text to replace
+ * @param replaceLength start offset of text to replace
+ * @param newText start offset of text to replace
+ *
+ * @exception SWTException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when the text change results in a multi byte
+ *      line delimiter being split or partially deleted.  Splitting a line
+ *      delimiter by inserting text between the CR and LF characters of the
+ *      \r\n delimiter or deleting part of this line delimiter is not supported</li>
+ * </ul>
+ */
+public void replaceTextRange(int start, int replaceLength, String newText) {
+	// check for invalid replace operations
+	if (!isValidReplace(start, replaceLength, newText)) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+
+	// inform listeners
+	StyledTextEvent event = new StyledTextEvent(this);
+	event.type = StyledText.TextChanging;
+	event.start = start;
+	event.replaceLineCount = getLineAtOffset(start + replaceLength) - getLineAtOffset(start);
+	event.text = newText;
+	event.newLineCount = lineCount(newText);
+	event.replaceCharCount = replaceLength;
+	event.newCharCount = newText.length();
+	sendTextEvent(event);
+
+	Piece[] pieces = split(root, start);
+	Piece left = pieces[0];
+	pieces = split(pieces[1], replaceLength);
+	Piece right = pieces[1];
+	int newLength = newText.length();
+	if (newLength > 0) {
+		Piece last = left;
+		while (last != null && last.right != null) last = last.right;
+		boolean extend = last != null && last.added && last.start + last.length == addedLength;
+		int addedStart = append(newText);
+		if (extend) {
+			// typing at the end of the last insertion, grow its piece
+			extendLast(left, newLength);
+		} else {
+			left = merge(left, newPiece(true, addedStart, newLength));
+		}
+	}
+	root = merge(left, right);
+
+	// inform listeners
+	event = new StyledTextEvent(this);
+	event.type = StyledText.TextChanged;
+	sendTextEvent(event);
+}
+/**
+ * Grows the last piece of a subtree by the given number of characters.
+ *
+ * @param piece the root of the subtree
+ * @param length the number of characters to add to the last piece
+ */
+void extendLast(Piece piece, int length) {
+	if (piece.right != null) {
+		extendLast(piece.right, length);
+	} else {
+		piece.length += length;
+		piece.delimiterCount = countDelimiters(piece.added, piece.start, piece.length);
+	}
+	update(piece);
+}
+/**
+ * Returns the number of lines that are in the specified text.
+ * <p>
+ *
+ * @param text the text to lineate
+ * @return number of lines in the text
+ */
+int lineCount(String text) {
+	int lineCount = 0;
+	int length = text.length();
+	for (int i = 0; i < length; i++) {
+		char ch = text.charAt(i);
+		if (ch == SWT.CR) {
+			if (i + 1 < length && text.charAt(i + 1) == SWT.LF) {
+				i++;
+			}
+			lineCount++;
+		} else if (ch == SWT.LF) {
+			lineCount++;
+		}
+	}
+	return lineCount;
+}
+/**
+ * Sends the text listeners the TextChanged event.
+ */
+void sendTextEvent(StyledTextEvent event) {
+	for (int i = 0; i < textListeners.size(); i++) {
+		((StyledTextListener)textListeners.elementAt(i)).handleEvent(event);
+	}
+}
+/**
+ * Sets the content to text.  The text is referenced, not copied, and
+ * the line delimiters are indexed once.  The added buffer is discarded.
+ * <p>
+ *
+ * @param text the text
+ */
+public void setText(String text) {
+	int length = text.length();
+	int[] lineStarts = new int[32];
+	int count = 0;
+	for (int i = 0; i < length; i++) {
+		char ch = text.charAt(i);
+		if (ch == SWT.CR || ch == SWT.LF) {
+			if (ch == SWT.CR && i + 1 < length && text.charAt(i + 1) == SWT.LF) i++;
+			if (count == lineStarts.length) {
+				int[] newLineStarts = new int[count * 2];
+				System.arraycopy(lineStarts, 0, newLineStarts, 0, count);
+				lineStarts = newLineStarts;
+			}
+			lineStarts[count++] = i + 1;
+		}
+	}
+	originalLineStarts = new int[count];
+	System.arraycopy(lineStarts, 0, originalLineStarts, 0, count);
+	original = text;
+	added = new char[256];
+	addedLength = 0;
+	addedLineStarts = new int[32];
+	addedLineCount = 0;
+	root = length > 0 ? newPiece(false, 0, length) : null;
+	StyledTextEvent event = new StyledTextEvent(this);
+	event.type = StyledText.TextSet;
+	event.text = "";
+	sendTextEvent(event);
+}
+/**
+ * Splits a subtree at the given logical offset.  A piece containing the
+ * offset is divided in two.
+ *
+ * @param piece the root of the subtree
+ * @param offset the offset, relative to the subtree
+ * @return the subtrees before and after the offset
+ */
+Piece[] split(Piece piece, int offset) {
+	if (piece == null) return new Piece[2];
+	int leftLength = length(piece.left);
+	if (offset <= leftLength) {
+		Piece[] result = split(piece.left, offset);
+		piece.left = result[1];
+		update(piece);
+		result[1] = piece;
+		return result;
+	}
+	if (offset >= leftLength + piece.length) {
+		Piece[] result = split(piece.right, offset - leftLength - piece.length);
+		piece.right = result[0];
+		update(piece);
+		result[0] = piece;
+		return result;
+	}
+	int pieceOffset = offset - leftLength;
+	Piece tail = newPiece(piece.added, piece.start + pieceOffset, piece.length - pieceOffset);
+	piece.length = pieceOffset;
+	piece.delimiterCount -= tail.delimiterCount;
+	Piece right = merge(tail, piece.right);
+	piece.right = null;
+	update(piece);
+	return new Piece[] {piece, right};
+}
+/**
+ * Recomputes the cached totals of a piece from its children.
+ */
+void update(Piece piece) {
+	piece.treeLength = piece.length + length(piece.left) + length(piece.right);
+	piece.treeDelimiterCount = piece.delimiterCount + delimiterCount(piece.left) + delimiterCount(piece.right);
+}
+/**
+ * Returns the number of entries of a sorted array that are less than or
+ * equal to the given value.
+ *
+ * @param array the sorted array
+ * @param count the number of valid entries in the array
+ * @param value the value
+ * @return the number of entries
+ */
+static int upperBound(int[] array, int count, int value) {
+	int low = 0, high = count;
+	while (low < high) {
+		int mid = (low + high) >>> 1;
+		if (array[mid] <= value) {
+			low = mid + 1;
+		} else {
+			high = mid;
+		}
+	}
+	return low;
+}
+}
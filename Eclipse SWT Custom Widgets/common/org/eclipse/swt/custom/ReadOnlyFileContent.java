@@ -0,0 +1,661 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.custom;
+
+import java.io.*;
+import java.util.Vector;
+import org.eclipse.swt.*;
+import org.eclipse.swt.widgets.*;
+
+/**
+ * A read-only <code>StyledTextContent</code> that displays a file without
+ * loading it into memory.
+ * <p>
+ * Only the start of the file is indexed when the content is created, the
+ * rest of the file is indexed by a background thread and the new lines are
+ * appended to the content, with the usual text change events, in the user
+ * interface thread of the given display. The text of a line is read and
+ * decoded from the file when it is requested and a small number of decoded
+ * lines are cached. The memory used by the content is therefore proportional
+ * to the number of lines of the file and to the lines being displayed,
+ * rather than to the size of the file.
+ * </p><p>
+ * The encoding of the file must be compatible with ASCII for the line
+ * delimiters, as is the case of UTF-8 and of the ISO-8859 family. Files
+ * longer than <code>Integer.MAX_VALUE</code> characters are truncated.
+ * The text of the content cannot be changed, the widget displaying it
+ * should not be editable. When the content is no longer needed, it must
+ * be disposed in order to stop the indexing and close the file.
+ * </p><p>
+ * The <code>newText</code> field of the <code>TextChangingEvent</code>
+ * sent when lines are appended is <code>null</code>.
+ * </p>
+ *
+ * @see StyledText#setContent(StyledTextContent)
+ * @see StyledText#setEditable(boolean)
+ *
+ * @since 3.6
+ */
+public class ReadOnlyFileContent implements StyledTextContent {
+	final static String LineDelimiter = System.getProperty("line.separator");
+	final static int INITIAL_SIZE = 256 * 1024;	// bytes indexed when the content is created
+	final static int BLOCK_SIZE = 64 * 1024;	// bytes indexed at a time
+	final static int MAX_PENDING = 256 * 1024;	// lines indexed ahead of the user interface thread
+	final static int CACHE_SIZE = 256;	// decoded lines
+
+	/* Character counting modes */
+	final static int UTF8 = 0;
+	final static int SINGLE_BYTE = 1;
+	final static int DECODE = 2;
+
+	Display display;
+	String fileName, encoding;
+	int mode;
+	RandomAccessFile file;	// used to decode lines in the user interface thread
+	Vector textListeners = new Vector(); // stores text listeners for event sending
+
+	/* The indexed lines, accessed in the user interface thread */
+	long[] lineByteOffsets = new long[64];
+	int[] lineOffsets = new int[64];
+	int lineCount = 1;
+	int charCount = 0;
+	long byteEnd = 0;	// end of the last line in the file
+
+	/* Decoded lines */
+	int[] cacheLines = new int[CACHE_SIZE];
+	String[] cacheText = new String[CACHE_SIZE];
+
+	/* Lines found by the indexer and not yet added, guarded by lock */
+	Object lock = new Object();
+	long[] pendingByteOffsets = new long[64];
+	int[] pendingOffsets = new int[64];
+	int pendingCount = 0;
+	int pendingEnd = -1;	// the final character count once the whole file is indexed
+	long pendingByteEnd;
+	boolean commitPosted, disposed;
+
+	/* Indexer state */
+	long indexOffset;	// bytes read so far
+	long lineStartByte;
+	int lineStartChar;
+	long lineChars;
+	boolean pendingCR, indexed;
+	byte[] lineBytes;	// bytes of the current line, for DECODE mode
+	int lineBytesLength;
+
+	Runnable commitRunnable = new Runnable() {
+		public void run() {
+			commit();
+		}
+	};
+
+/**
+ * Creates a new content for the given file and starts indexing it.
+ *
+ * @param display the display whose user interface thread receives the lines indexed in the background
+ * @param fileName the name of the file
+ * @param encoding the name of the encoding of the file
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the display, the file name or the encoding is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the display is disposed or the encoding is not supported</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_IO - if an IO error occurs while reading the file</li>
+ * </ul>
+ */
+public ReadOnlyFileContent(Display display, String fileName, String encoding) {
+	if (display == null || fileName == null || encoding == null) error(SWT.ERROR_NULL_ARGUMENT);
+	if (display.isDisposed()) error(SWT.ERROR_INVALID_ARGUMENT);
+	this.display = display;
+	this.fileName = fileName;
+	this.encoding = encoding;
+	mode = encodingMode(encoding);
+	if (mode == DECODE) lineBytes = new byte[256];
+	for (int i = 0; i < CACHE_SIZE; i++) cacheLines[i] = -1;
+	InputStream stream = null;
+	try {
+		file = new RandomAccessFile(fileName, "r");
+		stream = new FileInputStream(fileName);
+		byte[] block = new byte[BLOCK_SIZE];
+		while (!indexed && indexOffset < INITIAL_SIZE) {
+			indexBlock(stream, block);
+		}
+	} catch (IOException e) {
+		close(stream);
+		dispose();
+		SWT.error(SWT.ERROR_IO, e);
+	}
+	commit();
+	if (indexed) {
+		close(stream);
+	} else {
+		final InputStream input = stream;
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				index(input);
+			}
+		}, "StyledText indexer: " + fileName);
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+}
+/**
+ * Adds a <code>TextChangeListener</code> listening for
+ * <code>TextChangingEvent</code> and <code>TextChangedEvent</code>. A
+ * <code>TextChangingEvent</code> is sent before changes to the text occur.
+ * A <code>TextChangedEvent</code> is sent after changes to the text
+ * occurred.
+ * <p>
+ *
+ * @param listener the listener
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void addTextChangeListener(TextChangeListener listener) {
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	StyledTextListener typedListener = new StyledTextListener(listener);
+	textListeners.addElement(typedListener);
+}
+/**
+ * Adds a line found by the indexer.  Called with the lock held.
+ *
+ * @param byteOffset the offset in the file following the line delimiter
+ */
+void addLine(long byteOffset) {
+	if (mode == DECODE) lineChars = decode(lineBytes, 0, lineBytesLength).length();
+	long nextChar = lineStartChar + lineChars;
+	if (nextChar > Integer.MAX_VALUE) {
+		indexEnd();
+		return;
+	}
+	if (pendingCount == pendingOffsets.length) {
+		long[] newByteOffsets = new long[pendingCount * 2];
+		System.arraycopy(pendingByteOffsets, 0, newByteOffsets, 0, pendingCount);
+		pendingByteOffsets = newByteOffsets;
+		int[] newOffsets = new int[pendingCount * 2];
+		System.arraycopy(pendingOffsets, 0, newOffsets, 0, pendingCount);
+		pendingOffsets = newOffsets;
+	}
+	pendingByteOffsets[pendingCount] = byteOffset;
+	pendingOffsets[pendingCount] = (int) nextChar;
+	pendingCount++;
+	lineStartByte = byteOffset;
+	lineStartChar = (int) nextChar;
+	lineChars = 0;
+	lineBytesLength = 0;
+}
+/**
+ * Closes a stream, ignoring errors.
+ */
+void close(InputStream stream) {
+	if (stream == null) return;
+	try {
+		stream.close();
+	} catch (IOException e) {}
+}
+/**
+ * Appends the lines found by the indexer to the content and notifies
+ * the listeners.  Called in the user interface thread.
+ */
+void commit() {
+	int count, end;
+	long[] byteOffsets;
+	int[] offsets;
+	long newByteEnd;
+	synchronized (lock) {
+		commitPosted = false;
+		if (disposed) return;
+		count = pendingCount;
+		end = pendingEnd;
+		newByteEnd = pendingByteEnd;
+		if (count == 0 && (end == -1 || end == charCount)) return;
+		byteOffsets = pendingByteOffsets;
+		offsets = pendingOffsets;
+		pendingByteOffsets = new long[64];
+		pendingOffsets = new int[64];
+		pendingCount = 0;
+		lock.notifyAll();
+	}
+	int newCharCount = end != -1 ? end : offsets[count - 1];
+	StyledTextEvent event = new StyledTextEvent(this);
+	event.type = StyledText.TextChanging;
+	event.start = charCount;
+	event.replaceLineCount = 0;
+	event.newLineCount = count;
+	event.replaceCharCount = 0;
+	event.newCharCount = newCharCount - charCount;
+	sendTextEvent(event);
+
+	if (lineCount + count > lineOffsets.length) {
+		int size = Math.max(lineCount + count, lineOffsets.length * 2);
+		long[] newByteOffsets = new long[size];
+		System.arraycopy(lineByteOffsets, 0, newByteOffsets, 0, lineCount);
+		lineByteOffsets = newByteOffsets;
+		int[] newOffsets = new int[size];
+		System.arraycopy(lineOffsets, 0, newOffsets, 0, lineCount);
+		lineOffsets = newOffsets;
+	}
+	System.arraycopy(byteOffsets, 0, lineByteOffsets, lineCount, count);
+	System.arraycopy(offsets, 0, lineOffsets, lineCount, count);
+	int lastLine = lineCount - 1;
+	cacheLines[lastLine % CACHE_SIZE] = -1;
+	lineCount += count;
+	charCount = newCharCount;
+	byteEnd = end != -1 ? newByteEnd : lineByteOffsets[lineCount - 1];
+
+	event = new StyledTextEvent(this);
+	event.type = StyledText.TextChanged;
+	sendTextEvent(event);
+}
+/**
+ * Decodes bytes, replacing unsupported encodings by the platform encoding.
+ */
+String decode(byte[] bytes, int offset, int length) {
+	try {
+		return new String(bytes, offset, length, encoding);
+	} catch (UnsupportedEncodingException e) {
+		return new String(bytes, offset, length);
+	}
+}
+/**
+ * Stops indexing the file and closes it.  Calling this method
+ * more than once has no effect.
+ */
+public void dispose() {
+	synchronized (lock) {
+		if (disposed) return;
+		disposed = true;
+		lock.notifyAll();
+	}
+	if (file != null) {
+		try {
+			file.close();
+		} catch (IOException e) {}
+		file = null;
+	}
+	for (int i = 0; i < CACHE_SIZE; i++) {
+		cacheLines[i] = -1;
+		cacheText[i] = null;
+	}
+}
+/**
+ * Returns the character counting mode of an encoding.
+ *
+ * @param encoding the name of the encoding
+ * @return one of UTF8, SINGLE_BYTE or DECODE
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT - if the encoding is not supported</li>
+ * </ul>
+ */
+int encodingMode(String encoding) {
+	if (encoding.equalsIgnoreCase("UTF-8") || encoding.equalsIgnoreCase("UTF8")) return UTF8;
+	byte[] bytes = new byte[256];
+	for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) i;
+	try {
+		if (new String(bytes, encoding).length() == bytes.length) return SINGLE_BYTE;
+	} catch (UnsupportedEncodingException e) {
+		error(SWT.ERROR_INVALID_ARGUMENT);
+	}
+	return DECODE;
+}
+/**
+ * Reports an SWT error.
+ * <p>
+ *
+ * @param code the error code
+ */
+void error (int code) {
+	SWT.error(code);
+}
+/**
+ * Returns the number of characters in the indexed part of the file.
+ *
+ * @return the number of characters in the content
+ */
+public int getCharCount() {
+	return charCount;
+}
+/**
+ * Returns the line at the given index with delimiters, reading it from
+ * the file when it is not cached.
+ *
+ * @param index	the index of the line to return
+ * @return the line text with delimiters
+ */
+String getFullLine(int index) {
+	int slot = index % CACHE_SIZE;
+	if (cacheLines[slot] == index) return cacheText[slot];
+	int start = lineOffsets[index];
+	int length = (index + 1 < lineCount ? lineOffsets[index + 1] : charCount) - start;
+	long byteStart = lineByteOffsets[index];
+	long byteLength = (index + 1 < lineCount ? lineByteOffsets[index + 1] : byteEnd) - byteStart;
+	String text = "";
+	if (length > 0) {
+		if (file == null) SWT.error(SWT.ERROR_IO);
+		byte[] bytes = new byte[(int) byteLength];
+		try {
+			file.seek(byteStart);
+			file.readFully(bytes);
+		} catch (IOException e) {
+			SWT.error(SWT.ERROR_IO, e);
+		}
+		text = decode(bytes, 0, bytes.length);
+		if (text.length() > length) {
+			text = text.substring(0, length);
+		} else if (text.length() < length) {
+			// malformed input decoded to fewer characters than indexed
+			StringBuffer buffer = new StringBuffer(text);
+			while (buffer.length() < length) buffer.append('\uFFFD');
+			text = buffer.toString();
+		}
+	}
+	cacheLines[slot] = index;
+	cacheText[slot] = text;
+	return text;
+}
+/**
+ * Returns the line at <code>index</code> without delimiters.
+ * <p>
+ *
+ * @param index	the index of the line to return
+ * @return the line text without delimiters
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when index is out of range</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_IO - if an IO error occurs while reading the file</li>
+ * </ul>
+ */
+public String getLine(int index) {
+	if ((index >= lineCount) || (index < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	String line = getFullLine(index);
+	int length = line.length();
+	while (length > 0 && isDelimiter(line.charAt(length - 1))) length--;
+	return line.substring(0, length);
+}
+/**
+ * Returns the line index at the given offset.
+ * <p>
+ *
+ * @param offset logical character offset
+ * @return the line index
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT when offset is out of range</li>
+ * </ul>
+ */
+public int getLineAtOffset(int offset) {
+	if ((offset > charCount) || (offset < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	int low = 0, high = lineCount;
+	while (low < high) {
+		int mid = (low + high) >>> 1;
+		if (lineOffsets[mid] <= offset) {
+			low = mid + 1;
+		} else {
+			high = mid;
+		}
+	}
+	return low - 1;
+}
+/**
+ * Returns the number of lines in the indexed part of the file.
+ *
+ * @return the number of lines
+ */
+public int getLineCount() {
+	return lineCount;
+}
+/**
+ * Returns the line delimiter that should be used by the StyledText
+ * widget when inserting new lines.  This delimiter may be different than the
+ * delimiter that is used by the <code>StyledTextContent</code> interface.
+ * <p>
+ *
+ * @return the platform line delimiter as specified in the line.separator
+ * 	system property.
+ */
+public String getLineDelimiter() {
+	return LineDelimiter;
+}
+/**
+ * Returns the logical offset of the given line.
+ * <p>
+ *
+ * @param lineIndex index of line
+ * @return the logical starting offset of the line.  When there are not any lines,
+ * 	getOffsetAtLine(0) is a valid call that should answer 0.
+ * @exception IllegalArgumentException <ul>
+ *   <li>ERROR_INVALID_ARGUMENT when lineIndex is out of range</li>
+ * </ul>
+ */
+public int getOffsetAtLine(int lineIndex) {
+	if ((lineIndex >= lineCount) || (lineIndex < 0)) error(SWT.ERROR_INVALID_ARGUMENT);
+	return lineOffsets[lineIndex];
+}
+/**
+ * Returns the logical content in the given range.
+ * <p>
+ *
+ * @param start the logical start offset of the text to return
+ * @param length the logical length of the text to return
+ * @return the text
+ * @exception SWTException <ul>
+ *    <li>ERROR_IO - if an IO error occurs while reading the file</li>
+ * </ul>
+ */
+public String getTextRange(int start, int length) {
+	if (length == 0) return "";
+	if (start < 0 || length < 0 || start + length > charCount) error(SWT.ERROR_INVALID_ARGUMENT);
+	int end = start + length;
+	int lineIndex = getLineAtOffset(start);
+	String line = getFullLine(lineIndex);
+	int lineStart = lineOffsets[lineIndex];
+	if (end <= lineStart + line.length()) {
+		return line.substring(start - lineStart, end - lineStart);
+	}
+	StringBuffer buffer = new StringBuffer(length);
+	while (start < end) {
+		line = getFullLine(lineIndex);
+		lineStart = lineOffsets[lineIndex];
+		int lineEnd = Math.min(end, lineStart + line.length());
+		buffer.append(line.substring(start - lineStart, lineEnd - lineStart));
+		start = lineEnd;
+		lineIndex++;
+	}
+	return buffer.toString();
+}
+/**
+ * Indexes the rest of the file.  Called in the indexing thread.
+ *
+ * @param stream the file, positioned after the bytes already indexed
+ */
+void index(InputStream stream) {
+	try {
+		byte[] block = new byte[BLOCK_SIZE];
+		while (!indexed) {
+			synchronized (lock) {
+				while (!disposed && pendingCount >= MAX_PENDING) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {}
+				}
+				if (disposed) return;
+			}
+			indexBlock(stream, block);
+			synchronized (lock) {
+				if (disposed || commitPosted) continue;
+				if (pendingCount == 0 && !indexed) continue;
+				commitPosted = true;
+			}
+			if (display.isDisposed()) return;
+			display.asyncExec(commitRunnable);
+		}
+	} catch (IOException e) {
+		synchronized (lock) {
+			indexEnd();
+		}
+		if (!display.isDisposed()) display.asyncExec(commitRunnable);
+	} catch (SWTException e) {
+		// the display was disposed while posting
+	} finally {
+		close(stream);
+	}
+}
+/**
+ * Reads and indexes a block of the file.
+ *
+ * @param stream the file
+ * @param block the buffer
+ */
+void indexBlock(InputStream stream, byte[] block) throws IOException {
+	int length = stream.read(block);
+	synchronized (lock) {
+		if (length == -1) {
+			if (pendingCR) {
+				pendingCR = false;
+				addLine(indexOffset);
+			}
+			if (mode == DECODE) lineChars = decode(lineBytes, 0, lineBytesLength).length();
+			indexEnd();
+			return;
+		}
+		for (int i = 0; i < length && !indexed; i++) {
+			byte b = block[i];
+			if (pendingCR) {
+				pendingCR = false;
+				if (b == SWT.LF) {
+					countByte(b);
+					addLine(indexOffset + i + 1);
+					continue;
+				}
+				addLine(indexOffset + i);
+				if (indexed) break;
+			}
+			countByte(b);
+			if (b == SWT.CR) {
+				pendingCR = true;
+			} else if (b == SWT.LF) {
+				addLine(indexOffset + i + 1);
+			}
+		}
+		indexOffset += length;
+	}
+}
+/**
+ * Counts the characters of a byte of the current line.
+ */
+void countByte(byte b) {
+	switch (mode) {
+		case UTF8:
+			if ((b & 0xC0) != 0x80) lineChars++;
+			if ((b & 0xF8) == 0xF0) lineChars++;
+			break;
+		case SINGLE_BYTE:
+			lineChars++;
+			break;
+		default:
+			if (lineBytesLength == lineBytes.length) {
+				byte[] newBytes = new byte[lineBytesLength * 2];
+				System.arraycopy(lineBytes, 0, newBytes, 0, lineBytesLength);
+				lineBytes = newBytes;
+			}
+			lineBytes[lineBytesLength++] = b;
+	}
+}
+/**
+ * Ends the indexing at the current line.  Called with the lock held.
+ */
+void indexEnd() {
+	indexed = true;
+	long end = lineStartChar + lineChars;
+	if (end > Integer.MAX_VALUE || lineChars == 0) {
+		pendingEnd = lineStartChar;
+		pendingByteEnd = lineStartByte;
+	} else {
+		pendingEnd = (int) end;
+		pendingByteEnd = indexOffset;
+	}
+}
+/**
+ * Returns whether or not the given character is a line delimiter.  Both CR and LF
+ * are valid line delimiters.
+ * <p>
+ *
+ * @param ch the character to test
+ * @return true if ch is a delimiter, false otherwise
+ */
+boolean isDelimiter(char ch) {
+	if (ch == SWT.CR) return true;
+	if (ch == SWT.LF) return true;
+	return false;
+}
+/**
+ * Returns whether the whole file has been indexed.  Lines indexed in
+ * the background are appended to the content in the user interface thread.
+ *
+ * @return true if the content holds the whole file, false otherwise
+ */
+public boolean isComplete() {
+	synchronized (lock) {
+		return indexed && pendingCount == 0 && pendingEnd == charCount;
+	}
+}
+/**
+ * Removes the specified <code>TextChangeListener</code>.
+ * <p>
+ *
+ * @param listener the listener which should no longer be notified
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT when listener is null</li>
+ * </ul>
+ */
+public void removeTextChangeListener(TextChangeListener listener) {
+	if (listener == null) error(SWT.ERROR_NULL_ARGUMENT);
+	for (int i = 0; i < textListeners.size(); i++) {
+		TypedListener typedListener = (TypedListener) textListeners.elementAt(i);
+		if (typedListener.getEventListener () == listener) {
+			textListeners.removeElementAt(i);
+			break;
+		}
+	}
+}
+/**
+ * The content is read-only, this method is not supported.
+ *
+ * @exception SWTException <ul>
+ *   <li>ERROR_NOT_IMPLEMENTED - always</li>
+ * </ul>
+ */
+public void replaceTextRange(int start, int replaceLength, String text) {
+	SWT.error(SWT.ERROR_NOT_IMPLEMENTED);
+}
+/**
+ * Sends the text listeners the TextChanged event.
+ */
+void sendTextEvent(StyledTextEvent event) {
+	for (int i = 0; i < textListeners.size(); i++) {
+		((StyledTextListener)textListeners.elementAt(i)).handleEvent(event);
+	}
+}
+/**
+ * The content is read-only, this method is not supported.
+ *
+ * @exception SWTException <ul>
+ *   <li>ERROR_NOT_IMPLEMENTED - always</li>
+ * </ul>
+ */
+public void setText(String text) {
+	SWT.error(SWT.ERROR_NOT_IMPLEMENTED);
+}
+}
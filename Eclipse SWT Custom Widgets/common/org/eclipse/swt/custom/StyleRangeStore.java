@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.custom;
+
+/**
+ * Stores the sorted, non overlapping style ranges of a StyledTextRenderer.
+ * <p>
+ * The ranges are kept in a gap buffer.  Ranges are replaced at the gap, so
+ * that setting the styles of consecutive lines moves the gap by a few entries
+ * only.  The start offsets of the ranges following the gap are relative to
+ * <code>gapDelta</code>, so that shifting all the ranges following a text
+ * change only needs to move the gap to the change and update the delta.
+ * </p>
+ */
+class StyleRangeStore {
+	int[] starts = new int[GROW];	// the start of each range, relative to gapDelta after the gap
+	int[] lengths = new int[GROW];
+	StyleRange[] styles = new StyleRange[GROW];
+	int count;	// the number of ranges
+	int gapStart;	// the index of the gap, the gap ends at gapStart + capacity - count
+	int gapDelta;	// added to the starts of the ranges after the gap
+
+	final static int GROW = 32;
+
+/**
+ * Returns a copy of the store, cloning the styles.
+ */
+StyleRangeStore copy() {
+	StyleRangeStore store = new StyleRangeStore();
+	store.starts = new int[Math.max(count, 1)];
+	store.lengths = new int[store.starts.length];
+	store.styles = new StyleRange[store.starts.length];
+	for (int i = 0; i < count; i++) {
+		store.starts[i] = getStart(i);
+		store.lengths[i] = getLength(i);
+		store.styles[i] = (StyleRange)getStyle(i).clone();
+	}
+	store.count = store.gapStart = count;
+	return store;
+}
+/**
+ * Returns the end offset (exclusive) of the range at index.
+ */
+int getEnd(int index) {
+	return getStart(index) + getLength(index);
+}
+int getLength(int index) {
+	return lengths[index < gapStart ? index : index + starts.length - count];
+}
+int getStart(int index) {
+	if (index < gapStart) return starts[index];
+	return starts[index + starts.length - count] + gapDelta;
+}
+StyleRange getStyle(int index) {
+	return styles[index < gapStart ? index : index + starts.length - count];
+}
+/**
+ * Returns the index of the first range that ends after offset,
+ * or the number of ranges when there is no such range.
+ */
+int indexOf(int offset) {
+	int low = 0, high = count;
+	while (low < high) {
+		int index = (low + high) >>> 1;
+		if (getEnd(index) > offset) {
+			high = index;
+		} else {
+			low = index + 1;
+		}
+	}
+	return high;
+}
+/**
+ * Moves the gap before the range at index.
+ */
+void moveGap(int index) {
+	int gapLength = starts.length - count;
+	if (index < gapStart) {
+		int moveCount = gapStart - index;
+		System.arraycopy(starts, index, starts, index + gapLength, moveCount);
+		System.arraycopy(lengths, index, lengths, index + gapLength, moveCount);
+		System.arraycopy(styles, index, styles, index + gapLength, moveCount);
+		for (int i = index + gapLength; i < gapStart + gapLength; i++) {
+			starts[i] -= gapDelta;
+		}
+		int clearEnd = Math.min(gapStart, index + gapLength);
+		for (int i = index; i < clearEnd; i++) {
+			styles[i] = null;
+		}
+	} else if (index > gapStart) {
+		int moveCount = index - gapStart;
+		System.arraycopy(starts, gapStart + gapLength, starts, gapStart, moveCount);
+		System.arraycopy(lengths, gapStart + gapLength, lengths, gapStart, moveCount);
+		System.arraycopy(styles, gapStart + gapLength, styles, gapStart, moveCount);
+		for (int i = gapStart; i < index; i++) {
+			starts[i] += gapDelta;
+		}
+		int clearStart = Math.max(index, gapStart + gapLength);
+		for (int i = clearStart; i < index + gapLength; i++) {
+			styles[i] = null;
+		}
+	}
+	gapStart = index;
+}
+/**
+ * Replaces the ranges from start (inclusive) to end (exclusive)
+ * with the given ranges.
+ *
+ * @param start the index of the first range to replace
+ * @param end the index after the last range to replace
+ * @param newRanges the start and length of the new ranges
+ * @param newStyles the styles of the new ranges
+ * @param newCount the number of new ranges
+ */
+void replace(int start, int end, int[] newRanges, StyleRange[] newStyles, int newCount) {
+	moveGap(end);
+	for (int i = start; i < end; i++) {
+		styles[i] = null;
+	}
+	gapStart = start;
+	count -= end - start;
+	if (count + newCount > starts.length) {
+		int size = count + newCount + Math.max(GROW, starts.length >> 1);
+		int tailCount = count - gapStart, tailStart = starts.length - tailCount;
+		int[] newStarts = new int[size];
+		int[] newLengths = new int[size];
+		StyleRange[] newStyleArray = new StyleRange[size];
+		System.arraycopy(starts, 0, newStarts, 0, gapStart);
+		System.arraycopy(lengths, 0, newLengths, 0, gapStart);
+		System.arraycopy(styles, 0, newStyleArray, 0, gapStart);
+		System.arraycopy(starts, tailStart, newStarts, size - tailCount, tailCount);
+		System.arraycopy(lengths, tailStart, newLengths, size - tailCount, tailCount);
+		System.arraycopy(styles, tailStart, newStyleArray, size - tailCount, tailCount);
+		starts = newStarts;
+		lengths = newLengths;
+		styles = newStyleArray;
+	}
+	for (int i = 0; i < newCount; i++) {
+		starts[gapStart] = newRanges[i << 1];
+		lengths[gapStart] = newRanges[(i << 1) + 1];
+		styles[gapStart] = newStyles[i];
+		gapStart++;
+	}
+	count += newCount;
+}
+void setLength(int index, int length) {
+	lengths[index < gapStart ? index : index + starts.length - count] = length;
+}
+void setStart(int index, int start) {
+	if (index < gapStart) {
+		starts[index] = start;
+	} else {
+		starts[index + starts.length - count] = start - gapDelta;
+	}
+}
+/**
+ * Adds delta to the start of the range at index and of all the
+ * ranges following it.
+ */
+void shift(int index, int delta) {
+	if (delta == 0 || index >= count) return;
+	moveGap(index);
+	gapDelta += delta;
+}
+}
@@ -303,9 +303,10 @@ public class StyledText extends Canvas {
 				printerRenderer.setLineIndent(i, 1, indent * printerDPI.x / screenDPI.x);
 			}
 		}
-		StyleRange[] styles = printerRenderer.styles;
-		for (int i = 0; i < printerRenderer.styleCount; i++) {
-			StyleRange style = styles[i];
+		StyleRangeStore styleStore = printerRenderer.styleStore;
+		int styleCount = styleStore != null ? styleStore.count : 0;
+		for (int i = 0; i < styleCount; i++) {
+			StyleRange style = styleStore.getStyle(i);
 			Font font = style.font;
 			if (style.font != null) {
 				Font printerFont = (Font)resources.get(font);
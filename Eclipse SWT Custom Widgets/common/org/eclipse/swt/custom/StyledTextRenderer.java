@@ -33,6 +33,7 @@ class StyledTextRenderer {
 	/* Line data */
 	int topIndex = -1;
 	TextLayout[] layouts;
+	TextLayoutCache layoutCache;	// the layouts of the lines outside of layouts
 	int lineCount;
 	int[] lineWidth;
 	int[] lineHeight;
@@ -40,6 +41,7 @@ class StyledTextRenderer {
 	int maxWidth;
 	int maxWidthLineIndex;
 	boolean idleRunning;
+	int idleLine;	// lines before idleLine have been measured
 	
 	/* Bullet */
 	Bullet[] bullets;
@@ -47,20 +49,18 @@ class StyledTextRenderer {
 	int[] redrawLines;
 	
 	/* Style data */
-	int[] ranges;
-	int styleCount;	
-	StyleRange[] styles;
+	StyleRangeStore styleStore;
 	StyleRange[] stylesSet;
 	int stylesSetCount = 0;
 	boolean hasLinks, fixedPitch;
 	final static int BULLET_MARGIN = 8;
 	
-	final static boolean COMPACT_STYLES = true;
 	final static boolean MERGE_STYLES = true;
 	
 	final static int GROW = 32;
 	final static int IDLE_TIME = 50;
 	final static int CACHE_SIZE = 128;
+	final static int LAYOUT_CACHE_SIZE = Integer.getInteger("org.eclipse.swt.custom.StyledTextRenderer.layoutCacheSize", 256).intValue(); //$NON-NLS-1$
 	
 	final static int BACKGROUND = 1 << 0;
 	final static int ALIGNMENT = 1 << 1;
@@ -94,102 +94,38 @@ StyledTextRenderer(Device device, StyledText styledText) {
 	this.device = device;
 	this.styledText = styledText;
 }
-int addMerge(int[] mergeRanges, StyleRange[] mergeStyles, int mergeCount, int modifyStart, int modifyEnd) {
-	int rangeCount = styleCount << 1;
-	StyleRange endStyle = null;
-	int endStart = 0, endLength = 0;
-	if (modifyEnd < rangeCount) {
-		endStyle = styles[modifyEnd >> 1];
-		endStart = ranges[modifyEnd];
-		endLength = ranges[modifyEnd + 1];
-	}
-	int grow = mergeCount - (modifyEnd - modifyStart);
-	if (rangeCount + grow >= ranges.length) {
-		int[] tmpRanges = new int[ranges.length + grow + (GROW << 1)];
-		System.arraycopy(ranges, 0, tmpRanges, 0, modifyStart);
-		StyleRange[] tmpStyles = new StyleRange[styles.length + (grow >> 1) + GROW];
-		System.arraycopy(styles, 0, tmpStyles, 0, modifyStart >> 1);
-		if (rangeCount > modifyEnd) {
-			System.arraycopy(ranges, modifyEnd, tmpRanges, modifyStart + mergeCount, rangeCount - modifyEnd);
-			System.arraycopy(styles, modifyEnd >> 1, tmpStyles, (modifyStart + mergeCount) >> 1, styleCount - (modifyEnd >> 1));
-		}
-		ranges = tmpRanges;
-		styles = tmpStyles;
-	} else {
-		if (rangeCount > modifyEnd) {
-			System.arraycopy(ranges, modifyEnd, ranges, modifyStart + mergeCount, rangeCount - modifyEnd);
-			System.arraycopy(styles, modifyEnd >> 1, styles, (modifyStart + mergeCount) >> 1, styleCount - (modifyEnd >> 1));
-		}
-	}
-	if (MERGE_STYLES) {
-		int j = modifyStart;	
-		for (int i = 0; i < mergeCount; i += 2) {
-			if (j > 0 && ranges[j - 2] + ranges[j - 1] == mergeRanges[i] && mergeStyles[i >> 1].similarTo(styles[(j - 2) >> 1])) {
-				ranges[j - 1] += mergeRanges[i + 1];
-			} else {
-				styles[j >> 1] = mergeStyles[i >> 1];
-				ranges[j++] = mergeRanges[i];
-				ranges[j++] = mergeRanges[i + 1];
-			}
-		}
-		if (endStyle != null && ranges[j - 2] + ranges[j - 1] == endStart && endStyle.similarTo(styles[(j - 2) >> 1])) {
-			ranges[j - 1] += endLength;
-			modifyEnd += 2;
-			mergeCount += 2;
-		}
-		if (rangeCount > modifyEnd) {
-			System.arraycopy(ranges, modifyStart + mergeCount, ranges, j, rangeCount - modifyEnd);
-			System.arraycopy(styles, (modifyStart + mergeCount) >> 1, styles, j >> 1, styleCount - (modifyEnd >> 1));
-		}
-		grow = (j - modifyStart) - (modifyEnd - modifyStart);
-	} else {
-		System.arraycopy(mergeRanges, 0, ranges, modifyStart, mergeCount);
-		System.arraycopy(mergeStyles, 0, styles, modifyStart >> 1, mergeCount >> 1);
-	}
-	styleCount += grow >> 1;
-	return grow;
-}
-int addMerge(StyleRange[] mergeStyles, int mergeCount, int modifyStart, int modifyEnd) {
-	int grow = mergeCount - (modifyEnd - modifyStart);
-	StyleRange endStyle = null;
-	if (modifyEnd < styleCount) endStyle = styles[modifyEnd];
-	if (styleCount + grow >= styles.length) {
-		StyleRange[] tmpStyles = new StyleRange[styles.length + grow + GROW];
-		System.arraycopy(styles, 0, tmpStyles, 0, modifyStart);
-		if (styleCount > modifyEnd) {
-			System.arraycopy(styles, modifyEnd, tmpStyles, modifyStart + mergeCount, styleCount - modifyEnd);
-		}
-		styles = tmpStyles;
-	} else {
-		if (styleCount > modifyEnd) {
-			System.arraycopy(styles, modifyEnd, styles, modifyStart + mergeCount, styleCount - modifyEnd);
-		}
-	}
+void addMerge(int[] mergeRanges, StyleRange[] mergeStyles, int mergeCount, int modifyStart, int modifyEnd) {
+	StyleRangeStore store = styleStore;
+	int replaceStart = modifyStart, replaceEnd = modifyEnd;
 	if (MERGE_STYLES) {
-		int j = modifyStart;
-		for (int i = 0; i < mergeCount; i++) {
-			StyleRange newStyle = mergeStyles[i], style;
-			if (j > 0 && (style = styles[j - 1]).start + style.length == newStyle.start && newStyle.similarTo(style)) {
-				style.length += newStyle.length;
+		int[] newRanges = new int[(mergeCount + 1) << 1];
+		StyleRange[] newStyles = new StyleRange[mergeCount + 1];
+		int j = 0;
+		if (modifyStart > 0 && store.getEnd(modifyStart - 1) == mergeRanges[0] && mergeStyles[0].similarTo(store.getStyle(modifyStart - 1))) {
+			replaceStart--;
+			newStyles[0] = store.getStyle(replaceStart);
+			newRanges[0] = store.getStart(replaceStart);
+			newRanges[1] = store.getLength(replaceStart);
+			j = 2;
+		}
+		for (int i = 0; i < mergeCount << 1; i += 2) {
+			if (j > 0 && newRanges[j - 2] + newRanges[j - 1] == mergeRanges[i] && mergeStyles[i >> 1].similarTo(newStyles[(j - 2) >> 1])) {
+				newRanges[j - 1] += mergeRanges[i + 1];
 			} else {
-				styles[j++] = newStyle;
+				newStyles[j >> 1] = mergeStyles[i >> 1];
+				newRanges[j++] = mergeRanges[i];
+				newRanges[j++] = mergeRanges[i + 1];
 			}
 		}
-		StyleRange style = styles[j - 1];
-		if (endStyle != null && style.start + style.length == endStyle.start && endStyle.similarTo(style)) {
-			style.length += endStyle.length;
-			modifyEnd++;
-			mergeCount++;
+		if (modifyEnd < store.count && newRanges[j - 2] + newRanges[j - 1] == store.getStart(modifyEnd) && store.getStyle(modifyEnd).similarTo(newStyles[(j - 2) >> 1])) {
+			newRanges[j - 1] += store.getLength(modifyEnd);
+			replaceEnd++;
 		}
-		if (styleCount > modifyEnd) {
-			System.arraycopy(styles, modifyStart + mergeCount, styles, j, styleCount - modifyEnd);
-		}
-		grow = (j - modifyStart) - (modifyEnd - modifyStart);
-	} else {
-		System.arraycopy(mergeStyles, 0, styles, modifyStart, mergeCount);
+		mergeRanges = newRanges;
+		mergeStyles = newStyles;
+		mergeCount = j >> 1;
 	}
-	styleCount += grow;
-	return grow;
+	store.replace(replaceStart, replaceEnd, mergeRanges, mergeStyles, mergeCount);
 }
 void calculate(int startLine, int lineCount) {
 	int endLine = startLine + lineCount;
@@ -226,15 +162,30 @@ void calculateIdle () {
 	Runnable runnable = new Runnable() {
 		public void run() {
 			if (styledText == null) return;
-			int i;
 			long start = System.currentTimeMillis();
-			for (i = 0; i < lineCount; i++) {
+			/* Measure the lines around the visible area first */
+			int topIndex = styledText.topIndex;
+			int firstLine = Math.max(idleLine, topIndex - CACHE_SIZE);
+			int lastLine = Math.min(lineCount, topIndex + CACHE_SIZE);
+			boolean timeout = false;
+			for (int i = firstLine; i < lastLine; i++) {
 				if (lineHeight[i] == -1 || lineWidth[i] == -1) {
 					calculate(i, 1);
-					if (System.currentTimeMillis() - start > IDLE_TIME) break;
+					if (System.currentTimeMillis() - start > IDLE_TIME) {
+						timeout = true;
+						break;
+					}
+				}
+			}
+			/* Resume the measuring of the remaining lines */
+			while (!timeout && idleLine < lineCount) {
+				if (lineHeight[idleLine] == -1 || lineWidth[idleLine] == -1) {
+					calculate(idleLine, 1);
+					timeout = System.currentTimeMillis() - start > IDLE_TIME;
 				}
+				idleLine++;
 			}
-			if (i < lineCount) {
+			if (idleLine < lineCount) {
 				Display display = styledText.getDisplay();				
 				display.asyncExec(this);
 			} else {
@@ -273,16 +224,8 @@ void clearLineStyle(int startLine, int count) {
 	}
 }
 void copyInto(StyledTextRenderer renderer) {
-	if (ranges != null) {
-		int[] newRanges = renderer.ranges = new int[styleCount << 1];
-		System.arraycopy(ranges, 0, newRanges, 0, newRanges.length);
-	}
-	if (styles != null) {
-		StyleRange[] newStyles = renderer.styles = new StyleRange[styleCount];
-		for (int i = 0; i < newStyles.length; i++) {
-			newStyles[i] = (StyleRange)styles[i].clone();
-		}
-		renderer.styleCount = styleCount;
+	if (styleStore != null) {
+		renderer.styleStore = styleStore.copy();
 	}
 	if (lines != null) {
 		LineInfo[] newLines = renderer.lines = new LineInfo[lineCount];
@@ -308,6 +251,7 @@ void disposeTextLayout (TextLayout layout) {
 			if (layouts[i] == layout) return;
 		}
 	}
+	if (layoutCache != null && layoutCache.release(layout)) return;
 	layout.dispose();
 }
 void drawBullet(Bullet bullet, GC gc, int paintX, int paintY, int index, int lineAscent, int lineDescent) {
@@ -475,18 +419,23 @@ int getHeight () {
 	int width = styledText.getWrapWidth();
 	for (int i = 0; i < lineCount; i++) {
 		int height = lineHeight[i];
-		if (height == -1) {
-			if (width > 0) {
-				int length = content.getLine(i).length();
-				height = ((length * averageCharWidth / width) + 1) * defaultLineHeight;
-			} else {
-				height = defaultLineHeight;
-			}
-		}
+		if (height == -1) height = getEstimatedLineHeight(i, width, defaultLineHeight);
 		totalHeight += height;
 	}
 	return totalHeight + styledText.topMargin + styledText.bottomMargin;
 }
+/*
+ * Returns an estimate of the height of a line that has not been measured,
+ * based on its length.  The delimiter is included in the length to avoid
+ * creating the line text.
+ */
+int getEstimatedLineHeight(int lineIndex, int width, int defaultLineHeight) {
+	if (width <= 0) return defaultLineHeight;
+	int lineOffset = content.getOffsetAtLine(lineIndex);
+	int nextOffset = lineIndex + 1 < content.getLineCount() ? content.getOffsetAtLine(lineIndex + 1) : content.getCharCount();
+	int length = nextOffset - lineOffset;
+	return ((length * averageCharWidth / width) + 1) * defaultLineHeight;
+}
 boolean hasLink(int offset) {
 	if (offset == -1) return false;
 	int lineIndex = content.getLineAtOffset(offset);
@@ -512,14 +461,11 @@ boolean hasLink(int offset) {
 			}
 		}
 	}  else {
-		if (ranges != null) {
-			int rangeCount = styleCount << 1;
-			int index = getRangeIndex(offset, -1, rangeCount);
-			if (index >= rangeCount) return false;
-			int rangeStart = ranges[index]; 
-			int rangeLength = ranges[index + 1];
-			StyleRange rangeStyle = styles[index >> 1];
-			if (rangeStart <= offset && offset < rangeStart + rangeLength && rangeStyle.underline && rangeStyle.underlineStyle == SWT.UNDERLINE_LINK) {
+		if (styleStore != null) {
+			int index = styleStore.indexOf(offset);
+			if (index >= styleStore.count) return false;
+			StyleRange rangeStyle = styleStore.getStyle(index);
+			if (styleStore.getStart(index) <= offset && rangeStyle.underline && rangeStyle.underlineStyle == SWT.UNDERLINE_LINK) {
 				return true;
 			}
 		}
@@ -584,56 +530,19 @@ int[] getLineSegments(int index, int[] defaultSegments) {
 	}
 	return defaultSegments;
 }
-int getRangeIndex(int offset, int low, int high) {
-	if (styleCount == 0) return 0;
-	if (ranges != null)  {
-		while (high - low > 2) {
-			int index = ((high + low) / 2) / 2 * 2;
-			int end = ranges[index] + ranges[index + 1];
-			if (end > offset) {
-				high = index;
-			} else {
-				low = index;
-			}
-		}
-	} else {
-		while (high - low > 1) {
-			int index = ((high + low) / 2);
-			int end = styles[index].start + styles[index].length;
-			if (end > offset) {
-				high = index;
-			} else {
-				low = index;
-			}
-		}
-	}
-	return high;
-}
 int[] getRanges(int start, int length) {
-	if (length == 0) return null;
-	int[] newRanges;
+	if (length == 0 || styleStore == null) return null;
+	StyleRangeStore store = styleStore;
 	int end = start + length - 1;
-	if (ranges != null) {
-		int rangeCount = styleCount << 1;
-		int rangeStart = getRangeIndex(start, -1, rangeCount);
-		if (rangeStart >= rangeCount) return null;
-		if (ranges[rangeStart] > end) return null;
-		int rangeEnd = Math.min(rangeCount - 2, getRangeIndex(end, rangeStart - 1, rangeCount));
-		if (ranges[rangeEnd] > end) rangeEnd = Math.max(rangeStart, rangeEnd - 2);
-		newRanges = new int[rangeEnd - rangeStart + 2];
-		System.arraycopy(ranges, rangeStart, newRanges, 0, newRanges.length);
-	} else {
-		int rangeStart = getRangeIndex(start, -1, styleCount);
-		if (rangeStart >= styleCount) return null;
-		if (styles[rangeStart].start > end) return null;
-		int rangeEnd = Math.min(styleCount - 1, getRangeIndex(end, rangeStart - 1, styleCount));
-		if (styles[rangeEnd].start > end) rangeEnd = Math.max(rangeStart, rangeEnd - 1);
-		newRanges = new int[(rangeEnd - rangeStart + 1) << 1];
-		for (int i = rangeStart, j = 0; i <= rangeEnd; i++, j += 2) {
-			StyleRange style = styles[i];
-			newRanges[j] = style.start;
-			newRanges[j + 1] = style.length;
-		}
+	int rangeStart = store.indexOf(start);
+	if (rangeStart >= store.count) return null;
+	if (store.getStart(rangeStart) > end) return null;
+	int rangeEnd = Math.min(store.count - 1, store.indexOf(end));
+	if (store.getStart(rangeEnd) > end) rangeEnd = Math.max(rangeStart, rangeEnd - 1);
+	int[] newRanges = new int[(rangeEnd - rangeStart + 1) << 1];
+	for (int i = rangeStart, j = 0; i <= rangeEnd; i++, j += 2) {
+		newRanges[j] = store.getStart(i);
+		newRanges[j + 1] = store.getLength(i);
 	}
 	if (start > newRanges[0]) {
 		newRanges[1] = newRanges[0] + newRanges[1] - start;
@@ -645,45 +554,32 @@ int[] getRanges(int start, int length) {
 	return newRanges;
 }
 StyleRange[] getStyleRanges(int start, int length, boolean includeRanges) {
-	if (length == 0) return null;
-	StyleRange[] newStyles;
+	if (length == 0 || styleStore == null) return null;
+	StyleRangeStore store = styleStore;
 	int end = start + length - 1;
-	if (ranges != null) {
-		int rangeCount = styleCount << 1;
-		int rangeStart = getRangeIndex(start, -1, rangeCount);
-		if (rangeStart >= rangeCount) return null;
-		if (ranges[rangeStart] > end) return null;
-		int rangeEnd = Math.min(rangeCount - 2, getRangeIndex(end, rangeStart - 1, rangeCount));
-		if (ranges[rangeEnd] > end) rangeEnd = Math.max(rangeStart, rangeEnd - 2);
-		newStyles = new StyleRange[((rangeEnd - rangeStart) >> 1) + 1];
+	int rangeStart = store.indexOf(start);
+	if (rangeStart >= store.count) return null;
+	if (store.getStart(rangeStart) > end) return null;
+	int rangeEnd = Math.min(store.count - 1, store.indexOf(end));
+	if (store.getStart(rangeEnd) > end) rangeEnd = Math.max(rangeStart, rangeEnd - 1);
+	StyleRange[] newStyles = new StyleRange[rangeEnd - rangeStart + 1];
+	for (int i = rangeStart, j = 0; i <= rangeEnd; i++, j++) {
 		if (includeRanges) {
-			for (int i = rangeStart, j = 0; i <= rangeEnd; i += 2, j++) {
-				newStyles[j] = (StyleRange)styles[i >> 1].clone();
-				newStyles[j].start = ranges[i];
-				newStyles[j].length = ranges[i + 1];
-			}
+			newStyles[j] = (StyleRange)store.getStyle(i).clone();
+			newStyles[j].start = store.getStart(i);
+			newStyles[j].length = store.getLength(i);
 		} else {
-			System.arraycopy(styles, rangeStart >> 1, newStyles, 0, newStyles.length);
+			newStyles[j] = store.getStyle(i);
 		}
-	} else {
-		int rangeStart = getRangeIndex(start, -1, styleCount);
-		if (rangeStart >= styleCount) return null;
-		if (styles[rangeStart].start > end) return null;
-		int rangeEnd = Math.min(styleCount - 1, getRangeIndex(end, rangeStart - 1, styleCount));
-		if (styles[rangeEnd].start > end) rangeEnd = Math.max(rangeStart, rangeEnd - 1);
-		newStyles = new StyleRange[rangeEnd - rangeStart + 1];
-		System.arraycopy(styles, rangeStart, newStyles, 0, newStyles.length);
-	}
-	if (includeRanges || ranges == null) {
+	}
+	if (includeRanges) {
 		StyleRange style = newStyles[0];
 		if (start > style.start) {
-			newStyles[0] = style = (StyleRange)style.clone();
 			style.length = style.start + style.length - start;
 			style.start = start;
 		}
 		style = newStyles[newStyles.length - 1];
 		if (end < style.start + style.length - 1) {
-			newStyles[newStyles.length - 1] = style = (StyleRange)style.clone();
 			style.length = end - style.start + 1;
 		}
 	}
@@ -704,6 +600,7 @@ TextLayout getTextLayout(int lineIndex) {
 TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpacing) {
 	TextLayout layout = null;
 	if (styledText != null) {
+		if (layoutCache == null) layoutCache = new TextLayoutCache(LAYOUT_CACHE_SIZE);
 		int topIndex = styledText.topIndex > 0 ? styledText.topIndex - 1 : 0;	
 		if (layouts == null || topIndex != this.topIndex) {
 			TextLayout[] newLayouts = new TextLayout[CACHE_SIZE];
@@ -714,7 +611,7 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 						if (0 <= layoutIndex && layoutIndex < newLayouts.length) {
 							newLayouts[layoutIndex] = layouts[i];
 						} else {
-							layouts[i].dispose();
+							layoutCache.put(i + this.topIndex, layouts[i]);
 						}
 					}
 				}
@@ -740,15 +637,21 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 			this.topIndex = topIndex;
 			layouts = newLayouts;
 		}
-		if (layouts != null) {
-			int layoutIndex = lineIndex - topIndex;
+		int layoutIndex = lineIndex - topIndex;
+		if (0 <= layoutIndex && layoutIndex < layouts.length) {
+			layout = layouts[layoutIndex];
+			if (layout == null) layout = layouts[layoutIndex] = layoutCache.remove(lineIndex);
+		} else {
+			layout = layoutCache.get(lineIndex);
+		}
+		if (layout != null) {
+			if (lineWidth[lineIndex] != -1) return layout;
+		} else {
+			layout = new TextLayout(device);
 			if (0 <= layoutIndex && layoutIndex < layouts.length) {
-				layout = layouts[layoutIndex];
-				if (layout != null) {
-					if (lineWidth[lineIndex] != -1) return layout;
-				} else {
-					layout = layouts[layoutIndex] = new TextLayout(device);
-				}
+				layouts[layoutIndex] = layout;
+			} else {
+				layoutCache.put(lineIndex, layout);
 			}
 		}
 	}
@@ -822,13 +725,10 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 				}
 			}
 		}
-		ranges = this.ranges;
-		styles = this.styles;
-		styleCount = this.styleCount;
+		ranges = getRanges(lineOffset, line.length());
 		if (ranges != null) {
-			rangeStart = getRangeIndex(lineOffset, -1, styleCount << 1);
-		} else {
-			rangeStart = getRangeIndex(lineOffset, -1, styleCount);
+			styles = getStyleRanges(lineOffset, line.length(), false);
+			styleCount = styles.length;
 		}
 	}
 	if (bullet != null) {
@@ -965,6 +865,7 @@ TextLayout getTextLayout(int lineIndex, int orientation, int width, int lineSpac
 					}
 				}
 			}
+			if (layoutCache != null) layoutCache.setAscent(ascent, descent);
 			if (styledText.verticalScrollOffset != 0) {
 				int topIndex = styledText.topIndex;
 				int topIndexY = styledText.topIndexY;
@@ -995,10 +896,11 @@ void reset() {
 		}
 		layouts = null;
 	}
+	if (layoutCache != null) layoutCache.dispose();
 	topIndex = -1;
-	stylesSetCount = styleCount = lineCount = 0;
-	ranges = null;
-	styles = null;
+	idleLine = 0;
+	stylesSetCount = lineCount = 0;
+	styleStore = null;
 	stylesSet = null;
 	lines = null;
 	lineWidth = null;
@@ -1015,6 +917,7 @@ void reset(int startLine, int lineCount) {
 		lineWidth[i] = -1;
 		lineHeight[i] = -1;
 	}
+	idleLine = Math.min(idleLine, startLine);
 	if (startLine <= maxWidthLineIndex && maxWidthLineIndex < endLine) {
 		maxWidth = 0;
 		maxWidthLineIndex = -1;
@@ -1157,14 +1060,13 @@ void setLineSegments(int startLine, int count, int[] segments) {
 }
 void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 	if (newStyles == null) {
-		stylesSetCount = styleCount = 0;
-		ranges = null;
-		styles = null;
+		stylesSetCount = 0;
+		styleStore = null;
 		stylesSet = null;
 		hasLinks = false;
 		return;
 	}
-	if (newRanges == null && COMPACT_STYLES) {
+	if (newRanges == null) {
 		newRanges = new int[newStyles.length << 1];		
 		StyleRange[] tmpStyles = new StyleRange[newStyles.length];
 		if (stylesSet == null) stylesSet = new StyleRange[4];
@@ -1190,122 +1092,56 @@ void setStyleRanges (int[] newRanges, StyleRange[] newStyles) {
 		newStyles = tmpStyles;
 	}
 	
-	if (styleCount == 0) {
-		if (newRanges != null) {
-			ranges = new int[newRanges.length];
-			System.arraycopy(newRanges, 0, ranges, 0, ranges.length);
-		}
-		styles = new StyleRange[newStyles.length];
-		System.arraycopy(newStyles, 0, styles, 0, styles.length);
-		styleCount = newStyles.length;
+	if (styleStore == null || styleStore.count == 0) {
+		styleStore = new StyleRangeStore();
+		styleStore.replace(0, 0, newRanges, newStyles, newStyles.length);
 		return;
 	}
-	if (newRanges != null && ranges == null) {
-		ranges = new int[styles.length << 1];
-		for (int i = 0, j = 0; i < styleCount; i++) {
-			ranges[j++] = styles[i].start;
-			ranges[j++] = styles[i].length;
-		}
-	}
-	if (newRanges == null && ranges != null) {
-		newRanges = new int[newStyles.length << 1];
-		for (int i = 0, j = 0; i < newStyles.length; i++) {
-			newRanges[j++] = newStyles[i].start;
-			newRanges[j++] = newStyles[i].length;
-		}
+	StyleRangeStore store = styleStore;
+	int start = newRanges[0];
+	int modifyStart = store.indexOf(start), modifyEnd;
+	boolean insert = modifyStart == store.count;
+	if (!insert) {
+		int end = newRanges[newRanges.length - 2] + newRanges[newRanges.length - 1];
+		modifyEnd = store.indexOf(end);
+		insert = modifyStart == modifyEnd && store.getStart(modifyStart) >= end;
+	}
+	if (insert) {
+		addMerge(newRanges, newStyles, newRanges.length >> 1, modifyStart, modifyStart);
+		return;
 	}
-	if (ranges != null) {
-		int rangeCount = styleCount << 1;
-		int start = newRanges[0];
-		int modifyStart = getRangeIndex(start, -1, rangeCount), modifyEnd;
-		boolean insert = modifyStart == rangeCount;
-		if (!insert) {
-			int end = newRanges[newRanges.length - 2] + newRanges[newRanges.length - 1];
-			modifyEnd = getRangeIndex(end, modifyStart - 1, rangeCount);
-			insert = modifyStart == modifyEnd && ranges[modifyStart] >= end;
-		}
-		if (insert) {
-			addMerge(newRanges, newStyles, newRanges.length, modifyStart, modifyStart);
-			return;
-		}
-		modifyEnd = modifyStart;
-		int[] mergeRanges = new int[6];
-		StyleRange[] mergeStyles = new StyleRange[3];
-		for (int i = 0; i < newRanges.length; i += 2) {
-			int newStart = newRanges[i];
-			int newEnd = newStart + newRanges[i + 1];
-			if (newStart == newEnd) continue;
-			int modifyLast = 0, mergeCount = 0;
-			while (modifyEnd < rangeCount) {
-				if (newStart >= ranges[modifyStart] + ranges[modifyStart + 1]) modifyStart += 2;
-				if (ranges[modifyEnd] + ranges[modifyEnd + 1] > newEnd) break;
-				modifyEnd += 2;
-			}
-			if (ranges[modifyStart] < newStart && newStart < ranges[modifyStart] + ranges[modifyStart + 1]) {
-				mergeStyles[mergeCount >> 1] = styles[modifyStart >> 1];
-				mergeRanges[mergeCount] = ranges[modifyStart];
-				mergeRanges[mergeCount + 1] = newStart - ranges[modifyStart];				
-				mergeCount += 2;
-			}
-			mergeStyles[mergeCount >> 1] = newStyles[i >> 1];
-			mergeRanges[mergeCount] = newStart;
-			mergeRanges[mergeCount + 1] = newRanges[i + 1];
-			mergeCount += 2;
-			if (modifyEnd < rangeCount && ranges[modifyEnd] < newEnd && newEnd < ranges[modifyEnd] + ranges[modifyEnd + 1]) {
-				mergeStyles[mergeCount >> 1] = styles[modifyEnd >> 1];
-				mergeRanges[mergeCount] = newEnd;
-				mergeRanges[mergeCount + 1] = ranges[modifyEnd] + ranges[modifyEnd + 1] - newEnd;
-				mergeCount += 2;
-				modifyLast = 2;
-			}
-			int grow = addMerge(mergeRanges, mergeStyles, mergeCount, modifyStart, modifyEnd + modifyLast);
-			rangeCount += grow;
-			modifyStart = modifyEnd += grow;
-		}
-	} else {
-		int start = newStyles[0].start;
-		int modifyStart = getRangeIndex(start, -1, styleCount), modifyEnd;
-		boolean insert = modifyStart == styleCount;
-		if (!insert) {
-			int end = newStyles[newStyles.length - 1].start + newStyles[newStyles.length - 1].length;
-			modifyEnd = getRangeIndex(end, modifyStart - 1, styleCount);
-			insert = modifyStart == modifyEnd && styles[modifyStart].start >= end;
+	modifyEnd = modifyStart;
+	int[] mergeRanges = new int[6];
+	StyleRange[] mergeStyles = new StyleRange[3];
+	for (int i = 0; i < newRanges.length; i += 2) {
+		int newStart = newRanges[i];
+		int newEnd = newStart + newRanges[i + 1];
+		if (newStart == newEnd) continue;
+		int modifyLast = 0, mergeCount = 0;
+		while (modifyEnd < store.count) {
+			if (newStart >= store.getEnd(modifyStart)) modifyStart++;
+			if (store.getEnd(modifyEnd) > newEnd) break;
+			modifyEnd++;
 		}
-		if (insert) {
-			addMerge(newStyles, newStyles.length, modifyStart, modifyStart);
-			return;
+		if (modifyStart < store.count && store.getStart(modifyStart) < newStart && newStart < store.getEnd(modifyStart)) {
+			mergeStyles[mergeCount] = store.getStyle(modifyStart);
+			mergeRanges[mergeCount << 1] = store.getStart(modifyStart);
+			mergeRanges[(mergeCount << 1) + 1] = newStart - store.getStart(modifyStart);
+			mergeCount++;
 		}
-		modifyEnd = modifyStart;
-		StyleRange[] mergeStyles = new StyleRange[3];
-		for (int i = 0; i < newStyles.length; i++) {
-			StyleRange newStyle = newStyles[i], style; 
-			int newStart = newStyle.start;
-			int newEnd = newStart + newStyle.length;
-			if (newStart == newEnd) continue;
-			int modifyLast = 0, mergeCount = 0;
-			while (modifyEnd < styleCount) {
-				if (newStart >= styles[modifyStart].start + styles[modifyStart].length) modifyStart++;
-				if (styles[modifyEnd].start + styles[modifyEnd].length > newEnd) break;
-				modifyEnd++;
-			}
-			style = styles[modifyStart];
-			if (style.start < newStart && newStart < style.start + style.length) {
-				style = mergeStyles[mergeCount++] = (StyleRange)style.clone();
-				style.length = newStart - style.start;
-			}
-			mergeStyles[mergeCount++] = newStyle;
-			if (modifyEnd < styleCount) {
-				style = styles[modifyEnd];
-				if (style.start < newEnd && newEnd < style.start + style.length) {
-					style = mergeStyles[mergeCount++] = (StyleRange)style.clone();
-					style.length += style.start - newEnd;
-					style.start = newEnd;
-					modifyLast = 1;
-				}
-			}
-			int grow = addMerge(mergeStyles, mergeCount, modifyStart, modifyEnd + modifyLast);
-			modifyStart = modifyEnd += grow;
+		mergeStyles[mergeCount] = newStyles[i >> 1];
+		mergeRanges[mergeCount << 1] = newStart;
+		mergeRanges[(mergeCount << 1) + 1] = newRanges[i + 1];
+		mergeCount++;
+		if (modifyEnd < store.count && store.getStart(modifyEnd) < newEnd && newEnd < store.getEnd(modifyEnd)) {
+			mergeStyles[mergeCount] = store.getStyle(modifyEnd);
+			mergeRanges[mergeCount << 1] = newEnd;
+			mergeRanges[(mergeCount << 1) + 1] = store.getEnd(modifyEnd) - newEnd;
+			mergeCount++;
+			modifyLast = 1;
 		}
+		addMerge(mergeRanges, mergeStyles, mergeCount, modifyStart, modifyEnd + modifyLast);
+		modifyStart = modifyEnd = store.indexOf(newEnd);
 	}
 }
 void textChanging(TextChangingEvent event) {
@@ -1316,6 +1152,7 @@ void textChanging(TextChangingEvent event) {
 	updateRanges(start, replaceCharCount, newCharCount);	
 	
 	int startLine = content.getLineAtOffset(start);
+	if (layoutCache != null) layoutCache.textChanged(startLine, replaceLineCount, newLineCount);
 	if (replaceCharCount == content.getCharCount()) lines = null;
 	if (replaceLineCount == lineCount) {
 		lineCount = newLineCount;
@@ -1349,6 +1186,7 @@ void textChanging(TextChangingEvent event) {
 		for (int i = lineCount + delta; i < lineCount; i++) {
 			lineWidth[i] = lineHeight[i] = -1;
 		}
+		idleLine = Math.min(idleLine, startLine);
 		if (layouts != null) {
 			int layoutStartLine = startLine - topIndex;
 			int layoutEndLine = layoutStartLine + replaceLineCount + 1;
@@ -1372,7 +1210,7 @@ void textChanging(TextChangingEvent event) {
 								bullets[i] = null;
 							}
 						} else {
-							if (layouts[i] != null) layouts[i].dispose();
+							if (layouts[i] != null) layoutCache.put(topIndex + endIndex, layouts[i]);
 							layouts[i] = null;
 							if (bullets != null && bulletsIndices != null) bullets[i] = null;
 						}
@@ -1391,7 +1229,7 @@ void textChanging(TextChangingEvent event) {
 								bullets[i] = null;
 							}
 						} else {
-							if (layouts[i] != null) layouts[i].dispose();
+							if (layouts[i] != null) layoutCache.put(topIndex + endIndex, layouts[i]);
 							layouts[i] = null;
 							if (bullets != null && bulletsIndices != null) bullets[i] = null;
 						}
@@ -1463,106 +1301,36 @@ void updateBullets(int startLine, int replaceLineCount, int newLineCount, boolea
 	}
 }
 void updateRanges(int start, int replaceCharCount, int newCharCount) {
-	if (styleCount == 0 || (replaceCharCount == 0 && newCharCount == 0)) return;
-	if (ranges != null) {
-		int rangeCount = styleCount << 1;
-		int modifyStart = getRangeIndex(start, -1, rangeCount);
-		if (modifyStart == rangeCount) return;
-		int end = start + replaceCharCount;
-		int modifyEnd = getRangeIndex(end, modifyStart - 1, rangeCount);
-		int offset = newCharCount - replaceCharCount;
-		if (modifyStart == modifyEnd && ranges[modifyStart] < start && end < ranges[modifyEnd] + ranges[modifyEnd + 1]) {
-			if (newCharCount == 0) {
-				ranges[modifyStart + 1] -= replaceCharCount;
-				modifyEnd += 2;
-			} else {
-				if (rangeCount + 2 > ranges.length) {
-					int[] newRanges = new int[ranges.length + (GROW << 1)];
-					System.arraycopy(ranges, 0, newRanges, 0, rangeCount);
-					ranges = newRanges;
-					StyleRange[] newStyles = new StyleRange[styles.length + GROW];
-					System.arraycopy(styles, 0, newStyles, 0, styleCount);
-					styles = newStyles;
-				}
-				System.arraycopy(ranges, modifyStart + 2, ranges, modifyStart + 4, rangeCount - (modifyStart + 2));
-				System.arraycopy(styles, (modifyStart + 2) >> 1, styles, (modifyStart + 4) >> 1, styleCount - ((modifyStart + 2) >> 1));
-				ranges[modifyStart + 3] = ranges[modifyStart] + ranges[modifyStart + 1] - end;
-				ranges[modifyStart + 2] = start + newCharCount;
-				ranges[modifyStart + 1] = start - ranges[modifyStart];
-				styles[(modifyStart >> 1) + 1] = styles[modifyStart >> 1]; 
-				rangeCount += 2;
-				styleCount++;
-				modifyEnd += 4;
-			}
-			if (offset != 0) {
-				for (int i = modifyEnd; i < rangeCount; i += 2) {
-					ranges[i] += offset;
-				}
-			}
+	if (styleStore == null || styleStore.count == 0 || (replaceCharCount == 0 && newCharCount == 0)) return;
+	StyleRangeStore store = styleStore;
+	int modifyStart = store.indexOf(start);
+	if (modifyStart == store.count) return;
+	int end = start + replaceCharCount;
+	int modifyEnd = store.indexOf(end);
+	int offset = newCharCount - replaceCharCount;
+	if (modifyStart == modifyEnd && store.getStart(modifyStart) < start && end < store.getEnd(modifyEnd)) {
+		if (newCharCount == 0) {
+			store.setLength(modifyStart, store.getLength(modifyStart) - replaceCharCount);
+			modifyEnd++;
 		} else {
-			if (ranges[modifyStart] < start && start < ranges[modifyStart] + ranges[modifyStart + 1]) {
-				ranges[modifyStart + 1] = start - ranges[modifyStart];
-				modifyStart += 2;
-			}
-			if (modifyEnd < rangeCount && ranges[modifyEnd] < end && end < ranges[modifyEnd] + ranges[modifyEnd + 1]) {
-				ranges[modifyEnd + 1] = ranges[modifyEnd] + ranges[modifyEnd + 1] - end;
-				ranges[modifyEnd] = end;
-			}
-			if (offset != 0) {
-				for (int i = modifyEnd; i < rangeCount; i += 2) {
-					ranges[i] += offset;
-				}
-			}
-			System.arraycopy(ranges, modifyEnd, ranges, modifyStart, rangeCount - modifyEnd);
-			System.arraycopy(styles, modifyEnd >> 1, styles, modifyStart >> 1, styleCount - (modifyEnd >> 1));
-			styleCount -= (modifyEnd - modifyStart) >> 1;
+			StyleRange style = store.getStyle(modifyStart);
+			int rangeStart = store.getStart(modifyStart);
+			int[] splitRanges = new int[] {rangeStart, start - rangeStart, start + newCharCount, store.getEnd(modifyStart) - end};
+			store.replace(modifyStart, modifyStart + 1, splitRanges, new StyleRange[] {style, style}, 2);
+			modifyEnd += 2;
 		}
+		store.shift(modifyEnd, offset);
 	} else {
-		int modifyStart = getRangeIndex(start, -1, styleCount);
-		if (modifyStart == styleCount) return;
-		int end = start + replaceCharCount;
-		int modifyEnd = getRangeIndex(end, modifyStart - 1, styleCount);
-		int offset = newCharCount - replaceCharCount;
-		if (modifyStart == modifyEnd && styles[modifyStart].start < start && end < styles[modifyEnd].start + styles[modifyEnd].length) {
-			if (newCharCount == 0) {
-				styles[modifyStart].length -= replaceCharCount;
-				modifyEnd++;
-			} else {
-				if (styleCount + 1 > styles.length) {
-					StyleRange[] newStyles = new StyleRange[styles.length + GROW];
-					System.arraycopy(styles, 0, newStyles, 0, styleCount);
-					styles = newStyles;
-				}
-				System.arraycopy(styles, modifyStart + 1, styles, modifyStart + 2, styleCount - (modifyStart + 1));
-				styles[modifyStart + 1] = (StyleRange)styles[modifyStart].clone();
-				styles[modifyStart + 1].length = styles[modifyStart].start + styles[modifyStart].length - end;
-				styles[modifyStart + 1].start = start + newCharCount;
-				styles[modifyStart].length = start - styles[modifyStart].start;
-				styleCount++;
-				modifyEnd += 2;
-			}
-			if (offset != 0) {
-				for (int i = modifyEnd; i < styleCount; i++) {
-					styles[i].start += offset;
-				}
-			}
-		} else {
-			if (styles[modifyStart].start < start && start < styles[modifyStart].start + styles[modifyStart].length) {
-				styles[modifyStart].length = start - styles[modifyStart].start;
-				modifyStart++;
-			}
-			if (modifyEnd < styleCount && styles[modifyEnd].start < end && end < styles[modifyEnd].start + styles[modifyEnd].length) {
-				styles[modifyEnd].length = styles[modifyEnd].start + styles[modifyEnd].length - end;
-				styles[modifyEnd].start = end;
-			}
-			if (offset != 0) {
-				for (int i = modifyEnd; i < styleCount; i++) {
-					styles[i].start += offset;
-				}
-			}
-			System.arraycopy(styles, modifyEnd, styles, modifyStart, styleCount - modifyEnd);
-			styleCount -= modifyEnd - modifyStart;
+		if (store.getStart(modifyStart) < start && start < store.getEnd(modifyStart)) {
+			store.setLength(modifyStart, start - store.getStart(modifyStart));
+			modifyStart++;
+		}
+		if (modifyEnd < store.count && store.getStart(modifyEnd) < end && end < store.getEnd(modifyEnd)) {
+			store.setLength(modifyEnd, store.getEnd(modifyEnd) - end);
+			store.setStart(modifyEnd, end);
 		}
+		store.shift(modifyEnd, offset);
+		store.replace(modifyStart, modifyEnd, null, null, 0);
 	}
 }
 }
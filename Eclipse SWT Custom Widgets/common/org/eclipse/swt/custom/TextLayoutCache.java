@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.custom;
+
+import java.util.Hashtable;
+
+import org.eclipse.swt.graphics.TextLayout;
+
+/**
+ * Keeps the text layouts of the lines outside of the visible window of a
+ * StyledTextRenderer, so that scrolling back to a line does not shape its
+ * text again.
+ * <p>
+ * The layouts are keyed by line index and kept in least recently used order.
+ * They are also indexed by layout, so that a layout that is released can be
+ * found without walking the cache.
+ * Once the cache holds more than <code>maxSize</code> layouts, the least
+ * recently used layout is disposed.
+ * </p>
+ * <p>
+ * The cache counts the lookups that found a layout, the ones that did not,
+ * and the layouts it disposed to stay within its size.
+ * </p>
+ */
+class TextLayoutCache {
+	Hashtable entries = new Hashtable();	// Integer line index -> Entry
+	Hashtable layouts = new Hashtable();	// TextLayout -> Entry
+	Entry first, last;	// most and least recently used
+	int maxSize;
+
+	/* Statistics */
+	int hits, misses, evictions;
+
+	static class Entry {
+		int lineIndex;
+		TextLayout layout;
+		Entry previous, next;
+	}
+
+TextLayoutCache(int maxSize) {
+	this.maxSize = maxSize;
+}
+void addFirst(Entry entry) {
+	entry.previous = null;
+	entry.next = first;
+	if (first != null) first.previous = entry;
+	first = entry;
+	if (last == null) last = entry;
+}
+void addLast(Entry entry) {
+	entry.next = null;
+	entry.previous = last;
+	if (last != null) last.next = entry;
+	last = entry;
+	if (first == null) first = entry;
+}
+/**
+ * Disposes all the layouts.
+ */
+void dispose() {
+	for (Entry entry = first; entry != null; entry = entry.next) {
+		entry.layout.dispose();
+	}
+	entries.clear();
+	layouts.clear();
+	first = last = null;
+}
+/**
+ * Returns the layout of the line and makes it the most recently
+ * used one, or returns null when the line has no layout.
+ */
+TextLayout get(int lineIndex) {
+	Entry entry = (Entry)entries.get(new Integer(lineIndex));
+	if (entry == null) {
+		misses++;
+		return null;
+	}
+	hits++;
+	if (entry != first) {
+		unlink(entry);
+		addFirst(entry);
+	}
+	return entry.layout;
+}
+/**
+ * Returns the number of layouts that were disposed to keep the
+ * cache within its size.
+ */
+int getEvictions() {
+	return evictions;
+}
+/**
+ * Returns the number of lookups that found the layout of the line.
+ */
+int getHits() {
+	return hits;
+}
+/**
+ * Returns the number of lookups that did not find the layout of the line.
+ */
+int getMisses() {
+	return misses;
+}
+/**
+ * Adds the layout of the line as the most recently used one,
+ * disposing the layout it replaces.
+ */
+void put(int lineIndex, TextLayout layout) {
+	Integer key = new Integer(lineIndex);
+	Entry entry = (Entry)entries.get(key);
+	if (entry != null) {
+		if (entry.layout != layout) {
+			layouts.remove(entry.layout);
+			entry.layout.dispose();
+		}
+		unlink(entry);
+	} else {
+		entry = new Entry();
+		entry.lineIndex = lineIndex;
+		entries.put(key, entry);
+	}
+	entry.layout = layout;
+	layouts.put(layout, entry);
+	addFirst(entry);
+	trim();
+}
+/**
+ * Makes the layout the least recently used one, so that it is the first
+ * to be disposed when room is needed.  Returns false when the layout is
+ * not in the cache.
+ */
+boolean release(TextLayout layout) {
+	Entry entry = (Entry)layouts.get(layout);
+	if (entry == null) return false;
+	if (entry != last) {
+		unlink(entry);
+		addLast(entry);
+	}
+	return true;
+}
+/**
+ * Removes the layout of the line from the cache without disposing it,
+ * or returns null when the line has no layout.
+ */
+TextLayout remove(int lineIndex) {
+	TextLayout layout = removeLayout(lineIndex);
+	if (layout == null) {
+		misses++;
+	} else {
+		hits++;
+	}
+	return layout;
+}
+TextLayout removeLayout(int lineIndex) {
+	Entry entry = (Entry)entries.remove(new Integer(lineIndex));
+	if (entry == null) return null;
+	layouts.remove(entry.layout);
+	unlink(entry);
+	return entry.layout;
+}
+void setAscent(int ascent, int descent) {
+	for (Entry entry = first; entry != null; entry = entry.next) {
+		entry.layout.setAscent(ascent);
+		entry.layout.setDescent(descent);
+	}
+}
+void setMaxSize(int maxSize) {
+	this.maxSize = maxSize;
+	trim();
+}
+/**
+ * Disposes the layouts of the lines replaced by a text change and
+ * moves the layouts of the lines following the change.
+ */
+void textChanged(int startLine, int replaceLineCount, int newLineCount) {
+	if (entries.isEmpty()) return;
+	int endLine = startLine + replaceLineCount;
+	int delta = newLineCount - replaceLineCount;
+	if (delta == 0 && replaceLineCount < entries.size()) {
+		for (int i = startLine; i <= endLine; i++) {
+			TextLayout layout = removeLayout(i);
+			if (layout != null) layout.dispose();
+		}
+		return;
+	}
+	Hashtable newEntries = new Hashtable();
+	Entry entry = first;
+	while (entry != null) {
+		Entry next = entry.next;
+		if (startLine <= entry.lineIndex && entry.lineIndex <= endLine) {
+			unlink(entry);
+			layouts.remove(entry.layout);
+			entry.layout.dispose();
+		} else {
+			if (entry.lineIndex > endLine) entry.lineIndex += delta;
+			newEntries.put(new Integer(entry.lineIndex), entry);
+		}
+		entry = next;
+	}
+	entries = newEntries;
+}
+/**
+ * Disposes the least recently used layouts until the cache holds
+ * at most maxSize layouts.
+ */
+void trim() {
+	while (entries.size() > maxSize) {
+		Entry eldest = last;
+		unlink(eldest);
+		entries.remove(new Integer(eldest.lineIndex));
+		layouts.remove(eldest.layout);
+		eldest.layout.dispose();
+		evictions++;
+	}
+}
+void unlink(Entry entry) {
+	if (entry.previous != null) {
+		entry.previous.next = entry.next;
+	} else {
+		first = entry.next;
+	}
+	if (entry.next != null) {
+		entry.next.previous = entry.previous;
+	} else {
+		last = entry.previous;
+	}
+	entry.previous = entry.next = null;
+}
+}
@@ -4184,6 +4184,34 @@ JNIEXPORT void JNICALL OS_NATIVE(_1gdk_1draw_1rectangle)
 }
 #endif
 
+#ifndef NO__1gdk_1draw_1rgb_1image
+JNIEXPORT void JNICALL OS_NATIVE(_1gdk_1draw_1rgb_1image)
+	(JNIEnv *env, jclass that, jintLong arg0, jintLong arg1, jint arg2, jint arg3, jint arg4, jint arg5, jint arg6, jbyteArray arg7, jint arg8)
+{
+	jbyte *lparg7=NULL;
+	OS_NATIVE_ENTER(env, that, _1gdk_1draw_1rgb_1image_FUNC);
+#ifdef JNI_VERSION_1_2
+	if (IS_JNI_1_2) {
+		if (arg7) if ((lparg7 = (*env)->GetPrimitiveArrayCritical(env, arg7, NULL)) == NULL) goto fail;
+	} else
+#endif
+	{
+		if (arg7) if ((lparg7 = (*env)->GetByteArrayElements(env, arg7, NULL)) == NULL) goto fail;
+	}
+	gdk_draw_rgb_image((GdkDrawable *)arg0, (GdkGC *)arg1, (gint)arg2, (gint)arg3, (gint)arg4, (gint)arg5, (GdkRgbDither)arg6, (const guchar *)lparg7, (gint)arg8);
+fail:
+#ifdef JNI_VERSION_1_2
+	if (IS_JNI_1_2) {
+		if (arg7 && lparg7) (*env)->ReleasePrimitiveArrayCritical(env, arg7, lparg7, JNI_ABORT);
+	} else
+#endif
+	{
+		if (arg7 && lparg7) (*env)->ReleaseByteArrayElements(env, arg7, lparg7, JNI_ABORT);
+	}
+	OS_NATIVE_EXIT(env, that, _1gdk_1draw_1rgb_1image_FUNC);
+}
+#endif
+
 #ifndef NO__1gdk_1drawable_1get_1depth
 JNIEXPORT jint JNICALL OS_NATIVE(_1gdk_1drawable_1get_1depth)
 	(JNIEnv *env, jclass that, jintLong arg0)
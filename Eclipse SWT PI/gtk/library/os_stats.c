@@ -18,8 +18,8 @@
 
 #ifdef NATIVE_STATS
 
-int OS_nativeFunctionCount = 1291;
-int OS_nativeFunctionCallCount[1291];
+int OS_nativeFunctionCount = 1292;
+int OS_nativeFunctionCallCount[1292];
 char * OS_nativeFunctionNames[] = {
 #ifndef JNI64
 	"Call__IIII",
@@ -372,6 +372,7 @@ char * OS_nativeFunctionNames[] = {
 	"_1gdk_1draw_1point",
 	"_1gdk_1draw_1polygon",
 	"_1gdk_1draw_1rectangle",
+	"_1gdk_1draw_1rgb_1image",
 	"_1gdk_1drawable_1get_1depth",
 	"_1gdk_1drawable_1get_1image",
 	"_1gdk_1drawable_1get_1size",
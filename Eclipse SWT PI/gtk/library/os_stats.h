@@ -380,6 +380,7 @@ typedef enum {
 	_1gdk_1draw_1point_FUNC,
 	_1gdk_1draw_1polygon_FUNC,
 	_1gdk_1draw_1rectangle_FUNC,
+	_1gdk_1draw_1rgb_1image_FUNC,
 	_1gdk_1drawable_1get_1depth_FUNC,
 	_1gdk_1drawable_1get_1image_FUNC,
 	_1gdk_1drawable_1get_1size_FUNC,
@@ -3353,6 +3353,26 @@ public static final void gdk_draw_rectangle(int /*long*/ drawable, int /*long*/
 		lock.unlock();
 	}
 }
+/**
+ * @param drawable cast=(GdkDrawable *)
+ * @param gc cast=(GdkGC *)
+ * @param x cast=(gint)
+ * @param y cast=(gint)
+ * @param width cast=(gint)
+ * @param height cast=(gint)
+ * @param dith cast=(GdkRgbDither)
+ * @param rgb_buf cast=(const guchar *),flags=no_out critical
+ * @param rowstride cast=(gint)
+ */
+public static final native void _gdk_draw_rgb_image(int /*long*/ drawable, int /*long*/ gc, int x, int y, int width, int height, int dith, byte[] rgb_buf, int rowstride);
+public static final void gdk_draw_rgb_image(int /*long*/ drawable, int /*long*/ gc, int x, int y, int width, int height, int dith, byte[] rgb_buf, int rowstride) {
+	lock.lock();
+	try {
+		_gdk_draw_rgb_image(drawable, gc, x, y, width, height, dith, rgb_buf, rowstride);
+	} finally {
+		lock.unlock();
+	}
+}
 /** @param drawable cast=(GdkDrawable *) */
 public static final native int _gdk_drawable_get_depth(int /*long*/ drawable);
 public static final int gdk_drawable_get_depth(int /*long*/ drawable) {
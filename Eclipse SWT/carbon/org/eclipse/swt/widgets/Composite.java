@@ -52,6 +52,8 @@ public class Composite extends Scrollable {
 	int scrolledVisibleRgn, siblingsVisibleRgn;
 	int layoutCount, backgroundMode;
 
+	static final boolean INCREMENTAL_LAYOUT = Boolean.getBoolean ("org.eclipse.swt.widgets.Composite.incrementalLayout"); //$NON-NLS-1$
+
 Composite () {
 	/* Do nothing */
 }
@@ -775,6 +777,11 @@ public void layout (boolean changed, boolean all) {
  * peers of the changed control have changed state since the last layout.
  * If an ancestor does not have a layout, skip it.
  * <p>
+ * When the <code>org.eclipse.swt.widgets.Composite.incrementalLayout</code>
+ * system property is set, the ancestors above the first one whose preferred
+ * size is not changed by the changed control are not laid out.
+ * </p>
+ * <p>
  * Note: Layout is different from painting. If a child is
  * moved or resized such that an area in the parent is
  * exposed, then the parent will paint. If no child is
@@ -816,10 +823,21 @@ public void layout (Control [] changed) {
 		Control child = changed [i];
 		Composite composite = child.parent;
 		while (child != this) {
+			boolean resized = true;
 			if (composite.layout != null) {
 				composite.state |= LAYOUT_NEEDED;
+				Point size = null;
+				if (INCREMENTAL_LAYOUT && composite != this) {
+					size = composite.computeSize (SWT.DEFAULT, SWT.DEFAULT, false);
+				}
 				if (!composite.layout.flushCache (child)) {
 					composite.state |= LAYOUT_CHANGED;
+				} else {
+					/*
+					* Stop at the ancestor whose preferred size did not change,
+					* since the layout of its own parent is not affected.
+					*/
+					if (size != null) resized = !size.equals (composite.computeSize (SWT.DEFAULT, SWT.DEFAULT, false));
 				}
 			}
 			if (updateCount == update.length) {
@@ -828,6 +846,7 @@ public void layout (Control [] changed) {
 				update = newUpdate;
 			}
 			child = update [updateCount++] = composite;
+			if (!resized) break;
 			composite = child.parent;
 		}
 	}
@@ -1155,6 +1155,60 @@ public ImageData scaledTo(int width, int height) {
 	return dest;
 }
 
+/**
+ * Returns a copy of the receiver which has been stretched or
+ * shrunk to the specified size using the specified interpolation.
+ * If either the width or height is negative, the resulting image
+ * will be inverted in the associated axis.
+ * <p>
+ * The interpolation must be one of:
+ * <dl>
+ * <dt><code>SWT.NONE</code></dt>
+ * <dd>each pixel is the nearest pixel of the receiver, as with <code>scaledTo(int, int)</code></dd>
+ * <dt><code>SWT.LOW</code></dt>
+ * <dd>each pixel is the average of the pixels of the receiver it covers (box filter)</dd>
+ * <dt><code>SWT.DEFAULT</code></dt>
+ * <dd>each pixel is interpolated linearly from the pixels around it (bilinear filter)</dd>
+ * <dt><code>SWT.HIGH</code></dt>
+ * <dd>each pixel is interpolated from the three pixels on each side of it (Lanczos filter)</dd>
+ * </dl>
+ * </p><p>
+ * Except for <code>SWT.NONE</code>, the colors of the pixels are filtered,
+ * so images with an indexed palette are scaled to direct 24 bit images,
+ * and the transparency of the receiver, be it a mask, a transparent pixel
+ * or alpha data, is filtered and returned as alpha data.  Large images
+ * are scaled on several threads.
+ * </p>
+ *
+ * @param width the width of the new ImageData
+ * @param height the height of the new ImageData
+ * @param interpolation the interpolation to use
+ * @return a scaled copy of the image
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT - if the width or height is zero, or if the interpolation is not one of
+ *                                 <code>SWT.NONE</code>, <code>SWT.LOW</code>, <code>SWT.DEFAULT</code> or <code>SWT.HIGH</code></li>
+ * </ul>
+ *
+ * @see #scaledTo(int, int)
+ *
+ * @since 3.6
+ */
+public ImageData scaledTo(int width, int height, int interpolation) {
+	if (width == 0 || height == 0) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	switch (interpolation) {
+		case SWT.NONE:
+			return scaledTo(width, height);
+		case SWT.LOW:
+		case SWT.DEFAULT:
+		case SWT.HIGH:
+			return ImageScaler.scale(this, width, height, interpolation);
+		default:
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+			return null;
+	}
+}
+
 /**
  * Sets the alpha value at offset <code>x</code> in
  * scanline <code>y</code> in the receiver's alpha data.
@@ -1919,31 +1973,47 @@ static void blit(int op,
 		}
 		return;
 	}
-	/*Fast 32 to 32 blit */
-	if (alphaMode == 0x10000 && stype == TYPE_GENERIC_32_MSB && dtype == TYPE_GENERIC_32_MSB) {
-		if (srcRedMask == 0xFF00 && srcGreenMask == 0xff0000 && srcBlueMask == 0xff000000 && destRedMask == 0xFF0000 && destGreenMask == 0xff00 && destBlueMask == 0xff) {
-			for (int dy = destHeight, sfy = sfyi; dy > 0; --dy, sp = spr += (sfy >>> 16) * srcStride, sfy = (sfy & 0xffff) + sfyi, dp = dpr += dpryi) {
-				for (int dx = destWidth, sfx = sfxi; dx > 0; --dx, dp += dprxi, sfx = (sfx & 0xffff) + sfxi) {
-					destData[dp] = srcData[sp + 3];
-					destData[dp + 1] = srcData[sp + 2];
-					destData[dp + 2] = srcData[sp + 1];
-					destData[dp + 3] = srcData[sp];
-					sp += (sfx >>> 16) * 4;
+	/*** Fast blit (byte aligned channels) ***/
+	if (alphaMode == 0x10000 && sbpp >= 3 && dbpp >= 3) {
+		final int sr = getByteIndex(srcRedMask, stype), sg = getByteIndex(srcGreenMask, stype), sb = getByteIndex(srcBlueMask, stype);
+		final int dr = getByteIndex(destRedMask, dtype), dg = getByteIndex(destGreenMask, dtype), db = getByteIndex(destBlueMask, dtype);
+		if (sr != -1 && sg != -1 && sb != -1 && dr != -1 && dg != -1 && db != -1 && dr != dg && dr != db && dg != db) {
+			if (dbpp == 3) {
+				for (int dy = destHeight, sfy = sfyi; dy > 0; --dy, sp = spr += (sfy >>> 16) * srcStride, sfy = (sfy & 0xffff) + sfyi, dp = dpr += dpryi) {
+					for (int dx = destWidth, sfx = sfxi; dx > 0; --dx, dp += dprxi, sfx = (sfx & 0xffff) + sfxi) {
+						destData[dp + dr] = srcData[sp + sr];
+						destData[dp + dg] = srcData[sp + sg];
+						destData[dp + db] = srcData[sp + sb];
+						sp += (sfx >>> 16) * sbpp;
+					}
 				}
+				return;
 			}
-			return;
-		}
-	}
-	/*Fast 24 to 32 blit */
-	if (alphaMode == 0x10000 && stype == TYPE_GENERIC_24 && dtype == TYPE_GENERIC_32_MSB) {
-		if (srcRedMask == 0xFF && srcGreenMask == 0xff00 && srcBlueMask == 0xff0000 && destRedMask == 0xFF0000 && destGreenMask == 0xff00 && destBlueMask == 0xff) {
-			for (int dy = destHeight, sfy = sfyi; dy > 0; --dy, sp = spr += (sfy >>> 16) * srcStride, sfy = (sfy & 0xffff) + sfyi, dp = dpr += dpryi) {
-				for (int dx = destWidth, sfx = sfxi; dx > 0; --dx, dp += dprxi, sfx = (sfx & 0xffff) + sfxi) {
-					destData[dp] = 0;
-					destData[dp + 1] = srcData[sp + 2];
-					destData[dp + 2] = srcData[sp + 1];
-					destData[dp + 3] = srcData[sp];
-					sp += (sfx >>> 16) * 3;
+			/*
+			* The byte of a 32 bit pixel that holds no channel is copied
+			* from the source when it also has one, and cleared otherwise.
+			*/
+			final int dx = 6 - dr - dg - db;
+			if (sbpp == 4 && sr != sg && sr != sb && sg != sb) {
+				final int sx = 6 - sr - sg - sb;
+				for (int dy = destHeight, sfy = sfyi; dy > 0; --dy, sp = spr += (sfy >>> 16) * srcStride, sfy = (sfy & 0xffff) + sfyi, dp = dpr += dpryi) {
+					for (int i = destWidth, sfx = sfxi; i > 0; --i, dp += dprxi, sfx = (sfx & 0xffff) + sfxi) {
+						destData[dp + dx] = srcData[sp + sx];
+						destData[dp + dr] = srcData[sp + sr];
+						destData[dp + dg] = srcData[sp + sg];
+						destData[dp + db] = srcData[sp + sb];
+						sp += (sfx >>> 16) * 4;
+					}
+				}
+			} else {
+				for (int dy = destHeight, sfy = sfyi; dy > 0; --dy, sp = spr += (sfy >>> 16) * srcStride, sfy = (sfy & 0xffff) + sfyi, dp = dpr += dpryi) {
+					for (int i = destWidth, sfx = sfxi; i > 0; --i, dp += dprxi, sfx = (sfx & 0xffff) + sfxi) {
+						destData[dp + dx] = 0;
+						destData[dp + dr] = srcData[sp + sr];
+						destData[dp + dg] = srcData[sp + sg];
+						destData[dp + db] = srcData[sp + sb];
+						sp += (sfx >>> 16) * sbpp;
+					}
 				}
 			}
 			return;
@@ -2760,32 +2830,6 @@ static void blit(int op,
 	boolean flipX, boolean flipY) {
 	if ((destWidth <= 0) || (destHeight <= 0) || (alphaMode == ALPHA_TRANSPARENT)) return;
 
-	/*** Fast blit (straight copy) ***/
-	if (srcX == 0 && srcY == 0 && destX == 0 && destY == 0 && destWidth == srcWidth && destHeight == srcHeight) {
-		if (destDepth == 24 && srcDepth == 8 && (op & BLIT_ALPHA) == 0 && destRedMask == 0xFF0000 && destGreenMask == 0xFF00 && destBlueMask == 0xFF) {
-			for (int y = 0, sp = 0, dp = 0, spad = srcStride - srcWidth, dpad = destStride - (destWidth * 3); y < destHeight; y++, sp += spad, dp += dpad) {
-				for (int x = 0; x < destWidth; x++) {
-					int index = srcData[sp++] & 0xff;
-					destData[dp++] = srcReds[index];
-					destData[dp++] = srcGreens[index];
-					destData[dp++] = srcBlues[index];
-				}
-			}
-			return;
-		}
-		if (destDepth == 32 && destOrder == MSB_FIRST && srcDepth == 8 && (op & BLIT_ALPHA) == 0 && destRedMask == 0xFF0000 && destGreenMask == 0xFF00 && destBlueMask == 0xFF) {
-			for (int y = 0, sp = 0, dp = 0, spad = srcStride - srcWidth, dpad = destStride - (destWidth * 4); y < destHeight; y++, sp += spad, dp += dpad) {
-				for (int x = 0; x < destWidth; x++) {
-					int index = srcData[sp++] & 0xff;
-					dp++;
-					destData[dp++] = srcReds[index];
-					destData[dp++] = srcGreens[index];
-					destData[dp++] = srcBlues[index];
-				}
-			}
-			return;
-		}
-	}
 	// these should be supplied as params later
 	final int destAlphaMask = 0;
 
@@ -2876,6 +2920,40 @@ static void blit(int op,
 		apr = 0;
 	}
 
+	/*** Fast blit (8 bit index to byte aligned channels) ***/
+	if (alphaMode == 0x10000 && stype == TYPE_INDEX_8 && dbpp >= 3) {
+		final int dr = getByteIndex(destRedMask, dtype), dg = getByteIndex(destGreenMask, dtype), db = getByteIndex(destBlueMask, dtype);
+		if (dr != -1 && dg != -1 && db != -1 && dr != dg && dr != db && dg != db) {
+			int dp = dpr;
+			int sp = spr;
+			if (dbpp == 3) {
+				for (int dy = destHeight, sfy = sfyi; dy > 0; --dy, sp = spr += (sfy >>> 16) * srcStride, sfy = (sfy & 0xffff) + sfyi, dp = dpr += dpryi) {
+					for (int dx = destWidth, sfx = sfxi; dx > 0; --dx, dp += dprxi, sfx = (sfx & 0xffff) + sfxi) {
+						final int index = srcData[sp] & 0xff;
+						destData[dp + dr] = srcReds[index];
+						destData[dp + dg] = srcGreens[index];
+						destData[dp + db] = srcBlues[index];
+						sp += (sfx >>> 16);
+					}
+				}
+				return;
+			}
+			/* The byte of a 32 bit pixel that holds no channel is cleared */
+			final int dx = 6 - dr - dg - db;
+			for (int dy = destHeight, sfy = sfyi; dy > 0; --dy, sp = spr += (sfy >>> 16) * srcStride, sfy = (sfy & 0xffff) + sfyi, dp = dpr += dpryi) {
+				for (int i = destWidth, sfx = sfxi; i > 0; --i, dp += dprxi, sfx = (sfx & 0xffff) + sfxi) {
+					final int index = srcData[sp] & 0xff;
+					destData[dp + dx] = 0;
+					destData[dp + dr] = srcReds[index];
+					destData[dp + dg] = srcGreens[index];
+					destData[dp + db] = srcBlues[index];
+					sp += (sfx >>> 16);
+				}
+			}
+			return;
+		}
+	}
+
 	/*** Comprehensive blit (apply transformations) ***/
 	final int destRedShift = getChannelShift(destRedMask);
 	final int destRedWidth = getChannelWidth(destRedMask, destRedShift);
@@ -3437,6 +3515,28 @@ static void blit(int op,
 	}
 }
 
+/**
+ * Returns the offset in a pixel of the given type of the byte
+ * that holds the channel of the mask, or -1 if the channel is
+ * not a whole byte of a 24 or 32 bit pixel.
+ */
+static int getByteIndex(int mask, int type) {
+	int shift;
+	switch (mask) {
+		case 0xFF: shift = 0; break;
+		case 0xFF00: shift = 1; break;
+		case 0xFF0000: shift = 2; break;
+		case 0xFF000000: shift = 3; break;
+		default: return -1;
+	}
+	switch (type) {
+		case TYPE_GENERIC_24: return shift < 3 ? 2 - shift : -1;
+		case TYPE_GENERIC_32_MSB: return 3 - shift;
+		case TYPE_GENERIC_32_LSB: return shift;
+	}
+	return -1;
+}
+
 /**
  * Computes the required channel shift from a mask.
  */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2009 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -81,6 +81,40 @@ public class ImageLoader {
 	 * The default is 1. A value of 0 means 'display repeatedly'
 	 */
 	public int repeatCount;
+
+	/**
+	 * a hint for the width at which the images are needed, in pixels.
+	 * Formats that can decode an image at a reduced size load it at
+	 * the smallest size that is at least <code>targetWidth</code>
+	 * pixels wide and <code>targetHeight</code> pixels high, so that
+	 * the image does not need to be decoded at full size and scaled
+	 * down afterwards.  Currently, only JPEG images are reduced, by a
+	 * factor of 2, 4 or 8.
+	 * The default is 0 which means 'no hint'
+	 * 
+	 * @since 3.6
+	 */
+	public int targetWidth;
+
+	/**
+	 * a hint for the height at which the images are needed, in pixels.
+	 * The default is 0 which means 'no hint'
+	 * 
+	 * @see #targetWidth
+	 * @since 3.6
+	 */
+	public int targetHeight;
+
+	/**
+	 * the compression level to use when saving images in formats that
+	 * can trade the size of the file for the time it takes to write it,
+	 * from 0 (no compression) to 9 (best compression).  Currently, only
+	 * PNG images are compressed at this level.
+	 * The default is -1 which means 'the default level of the format'
+	 * 
+	 * @since 3.6
+	 */
+	public int compression = -1;
 		
 	/*
 	 * the set of ImageLoader event listeners, created on demand
@@ -96,7 +130,8 @@ public ImageLoader() {
 
 /**
  * Resets the fields of the ImageLoader, except for the
- * <code>imageLoaderListeners</code> field.
+ * <code>imageLoaderListeners</code>, <code>targetWidth</code>,
+ * <code>targetHeight</code> and <code>compression</code> fields.
  */
 void reset() {
 	data = null;
@@ -127,10 +162,62 @@ void reset() {
 public ImageData[] load(InputStream stream) {
 	if (stream == null) SWT.error(SWT.ERROR_NULL_ARGUMENT);
 	reset();
-	data = FileFormat.load(stream, this);
+	data = ImageDataCache.load(stream, this);
 	return data;
 }
 
+/**
+ * Loads the first image of the specified input stream in bands of
+ * scanlines that are decoded into the specified buffer, so that large
+ * images can be processed without holding all their pixels in memory.
+ * Throws an error if either an error occurs while loading the image,
+ * or if the image is not of a supported type.
+ * <p>
+ * Each band is sent to the listener in an <code>ImageLoaderEvent</code>
+ * as soon as it is decoded.  The image data of the event describes the
+ * rows of the band: its <code>y</code> field is the row of the image where
+ * the band starts, its <code>height</code> is the number of rows of the
+ * band, and its <code>data</code> is the buffer, which holds as many rows
+ * as fit in it.  The alpha data of the event, if any, is also reused for
+ * every band.  The contents of the buffer are only valid until the
+ * listener returns.  The last band has the <code>endOfImage</code> flag
+ * set.  Bands are delivered from the top of the image to its bottom,
+ * except for images that are stored bottom-up, like BMP images, whose
+ * bands are delivered from the bottom of the image to its top.
+ * </p><p>
+ * When the first band is delivered, the <code>logicalScreenWidth</code>
+ * and <code>logicalScreenHeight</code> fields hold the size of the image.
+ * The <code>data</code> field is not set by this method.
+ * </p><p>
+ * Non-interlaced PNG and GIF images, uncompressed BMP images and JPEG
+ * images are decoded one row at a time.  Other images are loaded in full
+ * and then delivered in bands.
+ * </p>
+ *
+ * @param stream the input stream to load the image from
+ * @param buffer the buffer to decode the bands of the image into
+ * @param listener the listener to deliver the bands to
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the stream, the buffer or the listener is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the buffer cannot hold a row of the image</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_IO - if an IO error occurs while reading from the stream</li>
+ *    <li>ERROR_INVALID_IMAGE - if the image stream contains invalid data</li>
+ *    <li>ERROR_UNSUPPORTED_FORMAT - if the image stream contains an unrecognized format</li>
+ * </ul>
+ *
+ * @see ImageLoaderEvent
+ * 
+ * @since 3.6
+ */
+public void loadBands(InputStream stream, byte[] buffer, ImageLoaderListener listener) {
+	if (stream == null || buffer == null || listener == null) SWT.error(SWT.ERROR_NULL_ARGUMENT);
+	reset();
+	FileFormat.load(stream, this, buffer, listener);
+}
+
 /**
  * Loads an array of <code>ImageData</code> objects from the
  * file with the specified name. Throws an error if either
@@ -247,6 +334,131 @@ public void save(String filename, int format) {
 	}
 }
 
+/**
+ * Adds the file format to the formats that images are loaded from
+ * and saved to, and returns the format type to pass to the save
+ * methods to save images in the format.
+ * <p>
+ * Streams are matched against the signatures of the registered formats,
+ * the sequences of bytes that the streams of a format start with, so that
+ * the format of a stream is found from a single read of its header.  The
+ * registered instance creates a new instance of its format for each image
+ * that is loaded or saved.
+ * </p>
+ * <p>
+ * <b>IMPORTANT:</b> The format extends <code>FileFormat</code>, which is
+ * not part of the public API of SWT. Formats written against it may need
+ * to change when SWT changes.
+ * </p>
+ *
+ * @param format the format to register
+ * @return the format type of the format
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the format is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the format has no signatures or an empty one</li>
+ * </ul>
+ *
+ * @see #save(OutputStream, int)
+ * @see #save(String, int)
+ *
+ * @since 3.6
+ */
+public static int registerFormat(FileFormat format) {
+	return FileFormat.register(format);
+}
+
+/**
+ * Removes all the images from the image cache.
+ *
+ * @see #setCacheSize(int)
+ *
+ * @since 3.6
+ */
+public static void clearCache() {
+	ImageDataCache.clear();
+}
+
+/**
+ * Returns the number of loads that found their images in the
+ * image cache instead of decoding them.
+ *
+ * @return the number of loads that hit the cache
+ *
+ * @see #setCacheSize(int)
+ *
+ * @since 3.6
+ */
+public static int getCacheHits() {
+	return ImageDataCache.getHits();
+}
+
+/**
+ * Returns the number of loads that looked for their images in
+ * the image cache and decoded them because they were not found.
+ *
+ * @return the number of loads that missed the cache
+ *
+ * @see #setCacheSize(int)
+ *
+ * @since 3.6
+ */
+public static int getCacheMisses() {
+	return ImageDataCache.getMisses();
+}
+
+/**
+ * Returns the size of the image cache, in bytes.
+ *
+ * @return the size of the cache
+ *
+ * @see #setCacheSize(int)
+ *
+ * @since 3.6
+ */
+public static int getCacheSize() {
+	return ImageDataCache.getSize();
+}
+
+/**
+ * Returns the number of bytes taken by the images that the
+ * image cache keeps.
+ *
+ * @return the number of bytes used in the cache
+ *
+ * @see #setCacheSize(int)
+ *
+ * @since 3.6
+ */
+public static int getCacheUsed() {
+	return ImageDataCache.getUsed();
+}
+
+/**
+ * Sets the size, in bytes, of the process wide cache of the images
+ * that are loaded from streams, so that loading the same stream again
+ * answers a copy of the cached image data instead of decoding it again.
+ * The most recently used images are kept until their image data and
+ * streams exceed the size of the cache, and the others are only kept
+ * until the garbage collector needs their memory.  Images are not
+ * cached when the loader has listeners.
+ * <p>
+ * The cache is disabled by default, or when its size is zero.  Its
+ * initial size can also be set with the
+ * <code>org.eclipse.swt.internal.image.ImageDataCache.size</code>
+ * system property.
+ * </p>
+ *
+ * @param size the size of the cache, or zero to disable it
+ *
+ * @see #load(InputStream)
+ *
+ * @since 3.6
+ */
+public static void setCacheSize(int size) {
+	ImageDataCache.setSize(size);
+}
+
 /**	 
  * Adds the listener to the collection of listeners who will be
  * notified when image data is either partially or completely loaded.
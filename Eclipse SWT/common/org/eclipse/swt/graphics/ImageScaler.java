@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.graphics;
+
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.internal.Compatibility;
+
+/**
+ * Scales image data with a box, bilinear or Lanczos filter.
+ * <p>
+ * The filter is separable: the rows of the source are first scaled
+ * horizontally, then the columns of the result are scaled vertically.
+ * The pixels are converted to premultiplied ARGB values, so that the
+ * colors of transparent pixels do not bleed into their neighbours, and
+ * the weights of each destination pixel are computed once per axis in
+ * fixed point.  When the image is reduced, the filter is widened by the
+ * reduction factor so that every source pixel contributes to the result.
+ * </p><p>
+ * Large images are scaled by several threads, each of them working on
+ * its own rows.  The number of threads is the number of processors,
+ * unless the <code>org.eclipse.swt.graphics.ImageScaler.threads</code>
+ * system property sets it.
+ * </p>
+ */
+final class ImageScaler implements Runnable {
+	ImageData src, dest;
+	Axis xAxis, yAxis;
+	int[] lut, buffer;
+	boolean hasAlpha, flipX, flipY;
+	int pass, start, end;
+
+	static final int THREADS = getThreads();
+	static final int MIN_PIXELS = 1 << 20;
+	static final int PRECISION = 14;
+	static final int HALF = 1 << (PRECISION - 1);
+
+	static final class Axis {
+		int[] starts, counts, weights;
+		int stride;
+	}
+
+ImageScaler(ImageData src, ImageData dest, Axis xAxis, Axis yAxis, int[] lut, boolean hasAlpha, boolean flipX, boolean flipY, int[] buffer) {
+	this.src = src;
+	this.dest = dest;
+	this.xAxis = xAxis;
+	this.yAxis = yAxis;
+	this.lut = lut;
+	this.hasAlpha = hasAlpha;
+	this.flipX = flipX;
+	this.flipY = flipY;
+	this.buffer = buffer;
+}
+
+static int clamp(int value) {
+	value = (value + HALF) >> PRECISION;
+	return value < 0 ? 0 : value > 255 ? 255 : value;
+}
+
+static double filter(int interpolation, double x) {
+	if (x < 0) x = -x;
+	switch (interpolation) {
+		case SWT.LOW:
+			return x < 0.5 ? 1 : 0;
+		case SWT.HIGH:
+			if (x == 0) return 1;
+			if (x >= 3) return 0;
+			double px = Math.PI * x;
+			return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+		default:
+			return x < 1 ? 1 - x : 0;
+	}
+}
+
+/**
+ * Computes the range of source pixels and their weights for
+ * each destination pixel along one axis.
+ */
+static Axis getAxis(int srcSize, int destSize, int interpolation) {
+	Axis axis = new Axis();
+	double scale = (double)srcSize / destSize;
+	double filterScale = Math.max(1, scale);
+	double support = support(interpolation) * filterScale;
+	int stride = axis.stride = (int)Math.ceil(support) * 2 + 1;
+	int[] starts = axis.starts = new int[destSize];
+	int[] counts = axis.counts = new int[destSize];
+	int[] weights = axis.weights = new int[destSize * stride];
+	double[] values = new double[stride];
+	for (int i = 0; i < destSize; i++) {
+		double center = (i + 0.5) * scale;
+		int min = Math.max(0, (int)(center - support + 0.5));
+		int max = Math.min(srcSize, (int)(center + support + 0.5));
+		int count = Math.min(max - min, stride);
+		double total = 0;
+		for (int j = 0; j < count; j++) {
+			values[j] = filter(interpolation, (min + j - center + 0.5) / filterScale);
+			total += values[j];
+		}
+		if (total == 0) {
+			/* Use the nearest pixel when the filter misses all of them */
+			min = Math.min(srcSize - 1, (int)center);
+			count = 1;
+			values[0] = total = 1;
+		}
+		int index = i * stride, sum = 0, largest = 0;
+		for (int j = 0; j < count; j++) {
+			sum += weights[index + j] = (int)Math.round(values[j] / total * (1 << PRECISION));
+			if (weights[index + j] > weights[index + largest]) largest = j;
+		}
+		/* Make the weights add up to one exactly */
+		weights[index + largest] += (1 << PRECISION) - sum;
+		starts[i] = min;
+		counts[i] = count;
+	}
+	return axis;
+}
+
+static int getThreads() {
+	Integer threads = Integer.getInteger("org.eclipse.swt.graphics.ImageScaler.threads"); //$NON-NLS-1$
+	if (threads != null) return threads.intValue();
+	return Compatibility.availableProcessors();
+}
+
+/**
+ * Scales the source image to the given size, which is negative
+ * when the image is inverted along the associated axis.
+ */
+static ImageData scale(ImageData src, int width, int height, int interpolation) {
+	boolean flipX = width < 0;
+	if (flipX) width = -width;
+	boolean flipY = height < 0;
+	if (flipY) height = -height;
+	PaletteData palette = src.palette;
+	int[] lut = null;
+	int depth = src.depth;
+	if (!palette.isDirect) {
+		RGB[] rgbs = palette.colors;
+		lut = new int[1 << src.depth];
+		for (int i = 0; i < rgbs.length && i < lut.length; i++) {
+			lut[i] = (rgbs[i].red << 16) | (rgbs[i].green << 8) | rgbs[i].blue;
+		}
+		palette = new PaletteData(0xFF0000, 0xFF00, 0xFF);
+		depth = 24;
+	}
+	boolean hasAlpha = src.maskData != null || src.transparentPixel != -1 || src.alphaData != null;
+	ImageData dest = new ImageData(
+		width, height, depth, palette,
+		src.scanlinePad, null, 0, null,
+		hasAlpha ? new byte[width * height] : null, src.alpha, -1, src.type,
+		src.x, src.y, src.disposalMethod, src.delayTime);
+	Axis xAxis = getAxis(src.width, width, interpolation);
+	Axis yAxis = getAxis(src.height, height, interpolation);
+	int[] buffer = new int[src.height * width];
+	int count = 1;
+	if ((long)src.width * src.height + (long)width * height >= MIN_PIXELS) {
+		count = Math.max(1, Math.min(THREADS, Math.min(src.height, height) / 64));
+	}
+	ImageScaler[] scalers = new ImageScaler[count];
+	for (int i = 0; i < count; i++) {
+		scalers[i] = new ImageScaler(src, dest, xAxis, yAxis, lut, hasAlpha, flipX, flipY, buffer);
+	}
+	/* The vertical pass needs all the rows of the horizontal pass */
+	for (int pass = 0; pass < 2; pass++) {
+		int rows = pass == 0 ? src.height : height;
+		Thread[] threads = new Thread[count];
+		for (int i = 0; i < count; i++) {
+			scalers[i].pass = pass;
+			scalers[i].start = (int)((long)rows * i / count);
+			scalers[i].end = (int)((long)rows * (i + 1) / count);
+			if (i > 0) {
+				threads[i] = new Thread(scalers[i], "Image Scaler"); //$NON-NLS-1$
+				threads[i].start();
+			}
+		}
+		scalers[0].run();
+		for (int i = 1; i < count; i++) {
+			while (threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {}
+			}
+		}
+	}
+	return dest;
+}
+
+static double support(int interpolation) {
+	switch (interpolation) {
+		case SWT.LOW: return 0.5;
+		case SWT.HIGH: return 3;
+		default: return 1;
+	}
+}
+
+/**
+ * Scales the rows of the source from start to end horizontally.
+ */
+void horizontal() {
+	int srcWidth = src.width, destWidth = dest.width;
+	int[] pixels = new int[srcWidth], argb = new int[srcWidth];
+	PaletteData palette = src.palette;
+	int redMask = palette.redMask, greenMask = palette.greenMask, blueMask = palette.blueMask;
+	int redShift = palette.redShift, greenShift = palette.greenShift, blueShift = palette.blueShift;
+	int maskBpl = 0;
+	if (src.maskData != null) {
+		maskBpl = (srcWidth + 7) / 8;
+		maskBpl = (maskBpl + (src.maskPad - 1)) / src.maskPad * src.maskPad;
+	}
+	int[] starts = xAxis.starts, counts = xAxis.counts, weights = xAxis.weights;
+	int stride = xAxis.stride;
+	for (int y = start; y < end; y++) {
+		src.getPixels(0, y, srcWidth, pixels, 0);
+		for (int x = 0; x < srcWidth; x++) {
+			int pixel = pixels[x], r, g, b;
+			if (lut != null) {
+				int rgb = pixel < lut.length ? lut[pixel] : 0;
+				r = (rgb >> 16) & 0xFF;
+				g = (rgb >> 8) & 0xFF;
+				b = rgb & 0xFF;
+			} else {
+				r = pixel & redMask;
+				r = (redShift < 0) ? r >>> -redShift : r << redShift;
+				g = pixel & greenMask;
+				g = (greenShift < 0) ? g >>> -greenShift : g << greenShift;
+				b = pixel & blueMask;
+				b = (blueShift < 0) ? b >>> -blueShift : b << blueShift;
+			}
+			int a = 0xFF;
+			if (hasAlpha) {
+				if (src.maskData != null) {
+					if ((src.maskData[y * maskBpl + (x >> 3)] & (1 << (7 - (x & 7)))) == 0) a = 0;
+				} else if (src.transparentPixel != -1) {
+					if (pixel == src.transparentPixel) a = 0;
+				} else {
+					a = src.alphaData[y * srcWidth + x] & 0xFF;
+				}
+				if (a != 0xFF) {
+					r = (r * a + 127) / 255;
+					g = (g * a + 127) / 255;
+					b = (b * a + 127) / 255;
+				}
+			}
+			argb[x] = (a << 24) | (r << 16) | (g << 8) | b;
+		}
+		int offset = y * destWidth;
+		for (int x = 0; x < destWidth; x++) {
+			int index = x * stride, first = starts[x];
+			int a = 0, r = 0, g = 0, b = 0;
+			for (int i = 0, count = counts[x]; i < count; i++) {
+				int weight = weights[index + i], pixel = argb[first + i];
+				a += weight * (pixel >>> 24);
+				r += weight * ((pixel >> 16) & 0xFF);
+				g += weight * ((pixel >> 8) & 0xFF);
+				b += weight * (pixel & 0xFF);
+			}
+			buffer[offset + (flipX ? destWidth - 1 - x : x)] = (clamp(a) << 24) | (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+		}
+	}
+}
+
+public void run() {
+	if (pass == 0) {
+		horizontal();
+	} else {
+		vertical();
+	}
+}
+
+/**
+ * Scales the columns of the destination rows from start to end vertically.
+ */
+void vertical() {
+	int width = dest.width;
+	int[] as = new int[width], rs = new int[width], gs = new int[width], bs = new int[width];
+	int[] pixels = new int[width];
+	PaletteData palette = dest.palette;
+	int redMask = palette.redMask, greenMask = palette.greenMask, blueMask = palette.blueMask;
+	int redShift = palette.redShift, greenShift = palette.greenShift, blueShift = palette.blueShift;
+	int[] starts = yAxis.starts, counts = yAxis.counts, weights = yAxis.weights;
+	int stride = yAxis.stride;
+	for (int y = start; y < end; y++) {
+		for (int x = 0; x < width; x++) {
+			as[x] = rs[x] = gs[x] = bs[x] = 0;
+		}
+		int index = y * stride;
+		for (int i = 0, count = counts[y]; i < count; i++) {
+			int weight = weights[index + i];
+			int offset = (starts[y] + i) * width;
+			for (int x = 0; x < width; x++) {
+				int pixel = buffer[offset + x];
+				as[x] += weight * (pixel >>> 24);
+				rs[x] += weight * ((pixel >> 16) & 0xFF);
+				gs[x] += weight * ((pixel >> 8) & 0xFF);
+				bs[x] += weight * (pixel & 0xFF);
+			}
+		}
+		int row = flipY ? dest.height - 1 - y : y;
+		for (int x = 0; x < width; x++) {
+			int r = clamp(rs[x]), g = clamp(gs[x]), b = clamp(bs[x]);
+			if (hasAlpha) {
+				int a = clamp(as[x]);
+				dest.alphaData[row * width + x] = (byte)a;
+				if (a == 0) {
+					r = g = b = 0;
+				} else if (a != 0xFF) {
+					r = Math.min(255, (r * 255 + a / 2) / a);
+					g = Math.min(255, (g * 255 + a / 2) / a);
+					b = Math.min(255, (b * 255 + a / 2) / a);
+				}
+			}
+			int pixel = 0;
+			pixel |= (redShift < 0 ? r << -redShift : r >>> redShift) & redMask;
+			pixel |= (greenShift < 0 ? g << -greenShift : g >>> greenShift) & greenMask;
+			pixel |= (blueShift < 0 ? b << -blueShift : b >>> blueShift) & blueMask;
+			pixels[x] = pixel;
+		}
+		dest.setPixels(0, row, width, pixels, 0);
+	}
+}
+
+}
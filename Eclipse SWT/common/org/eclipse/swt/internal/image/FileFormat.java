@@ -18,25 +18,53 @@ import org.eclipse.swt.graphics.*;
 /**
  * Abstract factory class for loading/unloading images from files or streams
  * in various image file formats.
- *
+ * <p>
+ * The formats are kept in a registry that is indexed by the first byte of
+ * their signatures, so that the format of a stream is detected from a single
+ * read of its header.  Formats other than the ones of SWT can be added to the
+ * registry with <code>register()</code>.  The registered instance of a format
+ * creates the instances that load and save images with <code>newInstance()</code>.
+ * </p>
  */
 public abstract class FileFormat {
 	static final String FORMAT_PACKAGE = "org.eclipse.swt.internal.image"; //$NON-NLS-1$
 	static final String FORMAT_SUFFIX = "FileFormat"; //$NON-NLS-1$
 	static final String[] FORMATS = {"WinBMP", "WinBMP", "GIF", "WinICO", "JPEG", "PNG", "TIFF", "OS2BMP"}; //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$//$NON-NLS-5$ //$NON-NLS-6$//$NON-NLS-7$//$NON-NLS-8$
+	static final int HEADER_SIZE = 32;
+
+	static FileFormat[] Formats;	// the formats by format type, null when not available
+	static FileFormat[][] FormatTable;	// the formats by the first byte of their signatures
 	
-	LEDataInputStream inputStream;
-	LEDataOutputStream outputStream;
-	ImageLoader loader;
+	protected LEDataInputStream inputStream;
+	protected LEDataOutputStream outputStream;
+	protected ImageLoader loader;
+	ImageBands bands;
 	int compression;
 
 /**
- * Return whether or not the specified input stream
- * represents a supported file format.
+ * Answer the signatures of the format, the sequences of bytes that
+ * the streams of the format start with.  Signatures must not be empty.
+ */
+protected abstract byte[][] getSignatures();
+
+/**
+ * Return whether or not the header of a stream, that starts with one
+ * of the signatures of the format, represents a supported file format.
+ * The header holds the first <code>HEADER_SIZE</code> bytes of the stream,
+ * followed by zeros when the stream is shorter.
  */
-abstract boolean isFileFormat(LEDataInputStream stream);
+protected boolean isFileFormat(byte[] header) {
+	return true;
+}
 
-abstract ImageData[] loadFromByteStream();
+/**
+ * Answer a new instance of the format, to load or save an image.
+ * Formats keep the state of the stream they are reading or writing,
+ * so each image is loaded or saved by an instance of its own.
+ */
+protected abstract FileFormat newInstance();
+
+protected abstract ImageData[] loadFromByteStream();
 
 /**
  * Read the specified input stream, and return the
@@ -47,8 +75,13 @@ public ImageData[] loadFromStream(LEDataInputStream stream) {
 		inputStream = stream;
 		return loadFromByteStream();
 	} catch (Exception e) {
+		/* Let the exceptions of the band listener through */
+		if (bands != null && bands.exception != null) throw bands.exception;
 		if (e instanceof IOException) {
 			SWT.error(SWT.ERROR_IO, e);
+		} else if (bands != null && bands.buffer.length < bands.bytesPerLine) {
+			/* The buffer cannot hold a row of the image */
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		} else {
 			SWT.error(SWT.ERROR_INVALID_IMAGE, e);
 		}
@@ -57,50 +90,206 @@ public ImageData[] loadFromStream(LEDataInputStream stream) {
 }
 
 /**
- * Read the specified input stream using the specified loader, and
- * return the device independent image array represented by the stream.
- */	
-public static ImageData[] load(InputStream is, ImageLoader loader) {
-	FileFormat fileFormat = null;
-	LEDataInputStream stream = new LEDataInputStream(is);
-	boolean isSupported = false;	
-	for (int i = 1; i < FORMATS.length; i++) {
-		if (FORMATS[i] != null) {
-			try {
-				Class clazz = Class.forName(FORMAT_PACKAGE + '.' + FORMATS[i] + FORMAT_SUFFIX);
-				fileFormat = (FileFormat) clazz.newInstance();
-				if (fileFormat.isFileFormat(stream)) {
-					isSupported = true;
+ * Add the format to the registry and answer the format type that
+ * saves images in the format.
+ * <p>
+ * The format is asked for a new instance of itself with
+ * <code>newInstance()</code> for each image that is loaded or saved.
+ * </p>
+ *
+ * @param fileFormat the format to register
+ * @return the format type of the format
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the format is null</li>
+ *    <li>ERROR_INVALID_ARGUMENT - if the format has no signatures or an empty one</li>
+ * </ul>
+ */
+public static synchronized int register(FileFormat fileFormat) {
+	if (fileFormat == null) SWT.error(SWT.ERROR_NULL_ARGUMENT);
+	byte[][] signatures = fileFormat.getSignatures();
+	if (signatures == null || signatures.length == 0) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	for (int i = 0; i < signatures.length; i++) {
+		if (signatures[i] == null || signatures[i].length == 0) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	}
+	FileFormat[] formats = getFormats();
+	FileFormat[] newFormats = new FileFormat[formats.length + 1];
+	System.arraycopy(formats, 0, newFormats, 0, formats.length);
+	newFormats[formats.length] = fileFormat;
+	Formats = newFormats;
+	addFormat(fileFormat, signatures);
+	return formats.length;
+}
+
+static void addFormat(FileFormat fileFormat, byte[][] signatures) {
+	for (int i = 0; i < signatures.length; i++) {
+		int index = signatures[i][0] & 0xFF;
+		FileFormat[] formats = FormatTable[index];
+		if (formats == null) {
+			FormatTable[index] = new FileFormat[] {fileFormat};
+		} else {
+			boolean found = false;
+			for (int j = 0; j < formats.length; j++) {
+				if (formats[j] == fileFormat) found = true;
+			}
+			if (found) continue;
+			FileFormat[] newFormats = new FileFormat[formats.length + 1];
+			System.arraycopy(formats, 0, newFormats, 0, formats.length);
+			newFormats[formats.length] = fileFormat;
+			FormatTable[index] = newFormats;
+		}
+	}
+}
+
+/**
+ * Answer the file format of the specified input stream.
+ */
+static FileFormat getFileFormat(LEDataInputStream stream) {
+	byte[] header = new byte[HEADER_SIZE];
+	int count = 0;
+	try {
+		count = stream.read(header);
+		if (count > 0) {
+			byte[] bytes = header;
+			if (count < HEADER_SIZE) {
+				bytes = new byte[count];
+				System.arraycopy(header, 0, bytes, 0, count);
+			}
+			stream.unread(bytes);
+		}
+	} catch (IOException e) {
+		SWT.error(SWT.ERROR_IO, e);
+	}
+	if (count > 0) {
+		FileFormat[] formats;
+		synchronized (FileFormat.class) {
+			getFormats();
+			formats = FormatTable[header[0] & 0xFF];
+		}
+		if (formats != null) {
+			for (int i = 0; i < formats.length; i++) {
+				FileFormat fileFormat = formats[i];
+				byte[][] signatures = fileFormat.getSignatures();
+				for (int j = 0; j < signatures.length; j++) {
+					byte[] signature = signatures[j];
+					if (signature.length > count) continue;
+					int k = 0;
+					while (k < signature.length && signature[k] == header[k]) k++;
+					if (k < signature.length) continue;
+					boolean result = false;
+					try {
+						result = fileFormat.isFileFormat(header);
+					} catch (Exception e) {
+					}
+					if (result) return newFileFormat(fileFormat);
 					break;
 				}
-			} catch (ClassNotFoundException e) {
-				FORMATS[i] = null;
+			}
+		}
+	}
+	SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
+	return null;
+}
+
+/**
+ * Answer the registered formats, loading the formats of SWT the
+ * first time.  Formats that are not available are left out.
+ */
+static synchronized FileFormat[] getFormats() {
+	if (Formats == null) {
+		FileFormat[] formats = new FileFormat[FORMATS.length];
+		FormatTable = new FileFormat[256][];
+		for (int i = 0; i < FORMATS.length; i++) {
+			if (i > 0 && FORMATS[i].equals(FORMATS[i - 1])) {
+				formats[i] = formats[i - 1];
+				continue;
+			}
+			try {
+				Class clazz = Class.forName(FORMAT_PACKAGE + '.' + FORMATS[i] + FORMAT_SUFFIX);
+				formats[i] = (FileFormat) clazz.newInstance();
+				addFormat(formats[i], formats[i].getSignatures());
 			} catch (Exception e) {
 			}
 		}
+		Formats = formats;
+	}
+	return Formats;
+}
+
+/**
+ * Answer a new instance of the format to load or save an image,
+ * since formats keep the state of the stream they are reading
+ * or writing.
+ */
+static FileFormat newFileFormat(FileFormat fileFormat) {
+	FileFormat result = fileFormat.newInstance();
+	if (result == null) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
+	return result;
+}
+
+/**
+ * Answer the remaining bytes of the specified input stream.
+ */
+static byte[] readAll(InputStream inputStream) {
+	ByteArrayOutputStream stream = new ByteArrayOutputStream();
+	byte[] buffer = new byte[4096];
+	try {
+		int count;
+		while ((count = inputStream.read(buffer)) != -1) {
+			stream.write(buffer, 0, count);
+		}
+	} catch (IOException e) {
+		SWT.error(SWT.ERROR_IO, e);
 	}
-	if (!isSupported) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
+	return stream.toByteArray();
+}
+
+/**
+ * Read the specified input stream using the specified loader, and
+ * return the device independent image array represented by the stream.
+ */	
+public static ImageData[] load(InputStream is, ImageLoader loader) {
+	LEDataInputStream stream = new LEDataInputStream(is);
+	FileFormat fileFormat = getFileFormat(stream);
 	fileFormat.loader = loader;
 	return fileFormat.loadFromStream(stream);
 }
 
+/**
+ * Read the first image of the specified input stream using the specified
+ * loader, and deliver its rows to the listener in bands of scanlines that
+ * are decoded into the specified buffer.
+ * <p>
+ * The formats that can decode their rows in order stream them into the
+ * buffer, the others load the whole image and copy it into the buffer.
+ * </p>
+ */	
+public static void load(InputStream is, ImageLoader loader, byte[] buffer, ImageLoaderListener listener) {
+	LEDataInputStream stream = new LEDataInputStream(is);
+	FileFormat fileFormat = getFileFormat(stream);
+	fileFormat.loader = loader;
+	ImageBands bands = fileFormat.bands = new ImageBands(loader, buffer, listener);
+	ImageData[] images = fileFormat.loadFromStream(stream);
+	if (bands.image == null) {
+		if (images.length == 0) SWT.error(SWT.ERROR_INVALID_IMAGE);
+		bands.copy(images[0]);
+	} else {
+		bands.finish();
+	}
+}
+
 /**
  * Write the device independent image array stored in the specified loader
  * to the specified output stream using the specified file format.
  */	
 public static void save(OutputStream os, int format, ImageLoader loader) {
-	if (format < 0 || format >= FORMATS.length) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
-	if (FORMATS[format] == null) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
+	FileFormat[] formats = getFormats();
+	if (format < 0 || format >= formats.length) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
+	if (formats[format] == null) SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
 	if (loader.data == null || loader.data.length < 1) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 
 	LEDataOutputStream stream = new LEDataOutputStream(os);
-	FileFormat fileFormat = null;
-	try {
-		Class clazz = Class.forName(FORMAT_PACKAGE + '.' + FORMATS[format] + FORMAT_SUFFIX);
-		fileFormat = (FileFormat) clazz.newInstance();
-	} catch (Exception e) {
-		SWT.error(SWT.ERROR_UNSUPPORTED_FORMAT);
-	}
+	FileFormat fileFormat = newFileFormat(formats[format]);
 	if (format == SWT.IMAGE_BMP_RLE) {
 		switch (loader.data[0].depth) {
 			case 8: fileFormat.compression = 1; break;
@@ -110,7 +299,7 @@ public static void save(OutputStream os, int format, ImageLoader loader) {
 	fileFormat.unloadIntoStream(loader, stream);
 }
 
-abstract void unloadIntoByteStream(ImageLoader loader);
+protected abstract void unloadIntoByteStream(ImageLoader loader);
 
 /**
  * Write the device independent image array stored in the specified loader
@@ -16,6 +16,7 @@ import org.eclipse.swt.graphics.*;
 import java.io.*;
 
 public final class GIFFileFormat extends FileFormat {
+	static final byte[][] SIGNATURES = {{'G', 'I', 'F'}};
 	String signature;
 	int screenWidth, screenHeight, backgroundPixel, bitsPerPixel, defaultDepth;
 	int disposalMethod = 0;
@@ -47,22 +48,19 @@ public final class GIFFileFormat extends FileFormat {
 		return new PaletteData(colors);
 	}
 
-	boolean isFileFormat(LEDataInputStream stream) {
-		try {
-			byte[] signature = new byte[3];
-			stream.read(signature);
-			stream.unread(signature);
-			return signature[0] == 'G' && signature[1] == 'I' && signature[2] == 'F';
-		} catch (Exception e) {
-			return false;
-		}
+	protected byte[][] getSignatures() {
+		return SIGNATURES;
+	}
+
+	protected FileFormat newInstance() {
+		return new GIFFileFormat();
 	}
 
 	/**
 	 * Load the GIF image(s) stored in the input stream.
 	 * Return an array of ImageData representing the image(s).
 	 */
-	ImageData[] loadFromByteStream() {
+	protected ImageData[] loadFromByteStream() {
 		byte[] signature = new byte[3];
 		byte[] versionBytes = new byte[3];
 		byte[] block = new byte[7];
@@ -104,6 +102,10 @@ public final class GIFFileFormat extends FileFormat {
 		ImageData[] images = new ImageData[0];
 		while (id == GIF_IMAGE_BLOCK_ID) {
 			ImageData image = readImageBlock(palette);
+			if (bands != null) {
+				/* Only the first image is delivered in bands. */
+				return bands.image != null ? new ImageData[0] : new ImageData[] {image};
+			}
 			if (loader.hasListeners()) {
 				loader.notifyListeners(new ImageLoaderEvent(loader, image, 3, true));
 			}
@@ -389,24 +391,32 @@ public final class GIFFileFormat extends FileFormat {
 		if (initialCodeSize < 0) {
 			SWT.error(SWT.ERROR_INVALID_IMAGE);
 		}
-		ImageData image = ImageData.internal_new(
-			width,
-			height,
-			depth,
-			palette,
-			4,
-			null,
-			0,
-			null,
-			null,
-			-1,
-			transparentPixel,
-			SWT.IMAGE_GIF,
-			left,
-			top,
-			disposalMethod,
-			delayTime);	
+		/* The rows of interlaced images are not decoded in order. */
+		ImageBands imageBands = interlaced ? null : bands;
+		ImageData image;
+		if (imageBands != null) {
+			image = imageBands.start(width, height, depth, palette, 4, transparentPixel, SWT.IMAGE_GIF, false, false);
+		} else {
+			image = ImageData.internal_new(
+				width,
+				height,
+				depth,
+				palette,
+				4,
+				null,
+				0,
+				null,
+				null,
+				-1,
+				transparentPixel,
+				SWT.IMAGE_GIF,
+				left,
+				top,
+				disposalMethod,
+				delayTime);
+		}
 		LZWCodec codec = new LZWCodec();
+		codec.bands = imageBands;
 		codec.decode(inputStream, loader, image, interlaced, initialCodeSize);
 		return image;
 	}
@@ -429,7 +439,7 @@ public final class GIFFileFormat extends FileFormat {
 		return new PaletteData(colors);
 	}
 
-	void unloadIntoByteStream(ImageLoader loader) {
+	protected void unloadIntoByteStream(ImageLoader loader) {
 		
  		/* Step 1: Acquire GIF parameters. */
 		ImageData[] data = loader.data;
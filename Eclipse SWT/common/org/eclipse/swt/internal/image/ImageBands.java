@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.internal.image;
+
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.graphics.*;
+
+/**
+ * Delivers the rows of an image to a listener in bands of scanlines
+ * that are decoded into a buffer supplied by the caller.
+ * <p>
+ * A decoder starts the image, then writes each row it decodes at the
+ * row <code>line()</code> of the band image returned by <code>start()</code>
+ * and calls <code>nextLine()</code>.  When the band is full, it is sent
+ * to the listener and the buffer is reused for the next band.  Images
+ * stored bottom-up fill their bands from the bottom, and the bands are
+ * delivered from the bottom of the image to its top.
+ * </p>
+ */
+final class ImageBands {
+	ImageLoader loader;
+	ImageLoaderListener listener;
+	byte[] buffer, alphaBuffer, maskBuffer;
+	ImageData image;	// the rows of one band, over the buffers
+	RuntimeException exception;	// thrown by the listener
+	int height, rows, bytesPerLine, start, line, bandY, bandHeight, count;
+	boolean bottomUp;
+
+ImageBands(ImageLoader loader, byte[] buffer, ImageLoaderListener listener) {
+	this.loader = loader;
+	this.buffer = buffer;
+	this.listener = listener;
+}
+
+/**
+ * Delivers an image that was decoded in full.
+ */
+void copy(ImageData data) {
+	start(data.width, data.height, data.depth, data.palette, data.scanlinePad, data.transparentPixel, data.type, data.alphaData != null, false);
+	image.alpha = data.alpha;
+	int maskBytesPerLine = 0;
+	if (data.maskData != null) {
+		maskBytesPerLine = (((data.width + 7) / 8) + (data.maskPad - 1)) / data.maskPad * data.maskPad;
+		maskBuffer = new byte[maskBytesPerLine * rows];
+		image.maskPad = data.maskPad;
+		image.maskData = maskBuffer;
+	}
+	for (int y = 0; y < data.height; y++) {
+		int line = line();
+		System.arraycopy(data.data, y * data.bytesPerLine, buffer, line * bytesPerLine, bytesPerLine);
+		if (alphaBuffer != null) {
+			System.arraycopy(data.alphaData, y * data.width, alphaBuffer, line * data.width, data.width);
+		}
+		if (maskBuffer != null) {
+			System.arraycopy(data.maskData, y * maskBytesPerLine, maskBuffer, line * maskBytesPerLine, maskBytesPerLine);
+		}
+		nextLine();
+	}
+}
+
+/**
+ * Delivers the rows that the decoder did not write, cleared,
+ * when the image data ends before the last row.
+ */
+void finish() {
+	if (image == null) return;
+	while (start < height) {
+		int line = line();
+		for (int i = line * bytesPerLine, end = i + bytesPerLine; i < end; i++) {
+			buffer[i] = 0;
+		}
+		if (alphaBuffer != null) {
+			for (int i = line * image.width, end = i + image.width; i < end; i++) {
+				alphaBuffer[i] = 0;
+			}
+		}
+		nextLine();
+	}
+}
+
+/**
+ * Answer the row of the band image that the decoder writes next.
+ */
+int line() {
+	return bottomUp ? bandHeight - 1 - line : line;
+}
+
+/**
+ * Ends the row that the decoder wrote, and delivers the band
+ * when it is complete.
+ */
+void nextLine() {
+	if (++line < bandHeight) return;
+	start += bandHeight;
+	ImageData band = ImageData.internal_new(
+		image.width,
+		bandHeight,
+		image.depth,
+		image.palette,
+		image.scanlinePad,
+		buffer,
+		image.maskPad,
+		maskBuffer,
+		alphaBuffer,
+		image.alpha,
+		image.transparentPixel,
+		image.type,
+		0,
+		bandY,
+		0,
+		0);
+	ImageLoaderEvent event = new ImageLoaderEvent(loader, band, count++, start == height);
+	try {
+		listener.imageDataLoaded(event);
+	} catch (RuntimeException e) {
+		exception = e;
+		throw e;
+	}
+	startBand();
+}
+
+/**
+ * Starts the bands of an image and answers the image of one band,
+ * whose data is the buffer of the caller, for the decoder to write
+ * the rows into.  Throws an error if the buffer cannot hold a row.
+ */
+ImageData start(int width, int height, int depth, PaletteData palette, int scanlinePad, int transparentPixel, int type, boolean alpha, boolean bottomUp) {
+	bytesPerLine = (((width * depth + 7) / 8) + (scanlinePad - 1)) / scanlinePad * scanlinePad;
+	if (buffer.length < bytesPerLine) SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+	this.height = height;
+	this.bottomUp = bottomUp;
+	rows = Math.max(1, Math.min(height, buffer.length / bytesPerLine));
+	if (alpha) alphaBuffer = new byte[width * rows];
+	image = ImageData.internal_new(
+		width,
+		rows,
+		depth,
+		palette,
+		scanlinePad,
+		buffer,
+		0,
+		null,
+		alphaBuffer,
+		-1,
+		transparentPixel,
+		type,
+		0,
+		0,
+		0,
+		0);
+	loader.logicalScreenWidth = width;
+	loader.logicalScreenHeight = height;
+	startBand();
+	return image;
+}
+
+void startBand() {
+	line = 0;
+	bandHeight = Math.min(rows, height - start);
+	bandY = bottomUp ? height - start - bandHeight : start;
+}
+
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.internal.image;
+
+
+import java.io.*;
+import java.lang.ref.*;
+import java.util.Hashtable;
+
+import org.eclipse.swt.graphics.*;
+
+/**
+ * A process wide cache of decoded images, so that loading the same image
+ * again does not decode it again.
+ * <p>
+ * Images are found by the contents of their stream and the target size of
+ * the loader.  The most recently used images are kept until the size of
+ * their image data and of their streams exceeds the size of the cache.
+ * The images that do not fit are only kept through soft references, which
+ * the garbage collector clears when it needs memory.  Loaders are given a
+ * copy of the cached image data.
+ * </p><p>
+ * The cache is disabled unless its size is set, in bytes, by the
+ * <code>org.eclipse.swt.internal.image.ImageDataCache.size</code>
+ * system property or <code>setSize()</code>.  Images are not cached when
+ * the loader has listeners, since they are notified as the image is decoded.
+ * </p><p>
+ * Applications control the cache through the static methods of
+ * <code>ImageLoader</code>.
+ * </p>
+ *
+ * @see ImageLoader#setCacheSize(int)
+ */
+public final class ImageDataCache {
+	static int Size = Integer.getInteger("org.eclipse.swt.internal.image.ImageDataCache.size", 0).intValue(); //$NON-NLS-1$
+	static int Used, Hits, Misses;
+	static Hashtable Entries = new Hashtable();
+	static ReferenceQueue Queue = new ReferenceQueue();
+	static Entry First, Last;	// the images that are kept, the most recently used first
+
+	static class Key {
+		int hash, length, targetWidth, targetHeight;
+
+		Key(byte[] bytes, int targetWidth, int targetHeight) {
+			/* FNV-1a */
+			int hash = 0x811C9DC5;
+			for (int i = 0; i < bytes.length; i++) {
+				hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+			}
+			this.hash = hash;
+			this.length = bytes.length;
+			this.targetWidth = targetWidth;
+			this.targetHeight = targetHeight;
+		}
+
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) return false;
+			Key key = (Key)object;
+			return hash == key.hash && length == key.length && targetWidth == key.targetWidth && targetHeight == key.targetHeight;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	static class Entry {
+		Key key;
+		byte[] bytes;
+		ImageData[] data;
+		int logicalScreenWidth, logicalScreenHeight, backgroundPixel, repeatCount;
+		int size;
+		boolean kept;
+		Entry previous, next;
+	}
+
+	static class Reference extends SoftReference {
+		Key key;
+
+		Reference(Entry entry) {
+			super(entry, Queue);
+			key = entry.key;
+		}
+	}
+
+/**
+ * Removes all the images from the cache.
+ */
+public static synchronized void clear() {
+	Entries.clear();
+	First = Last = null;
+	Used = 0;
+}
+
+static ImageData[] copy(ImageData[] data) {
+	ImageData[] result = new ImageData[data.length];
+	for (int i = 0; i < data.length; i++) {
+		result[i] = (ImageData)data[i].clone();
+	}
+	return result;
+}
+
+static synchronized Entry get(Key key, byte[] bytes) {
+	purge();
+	Reference reference = (Reference)Entries.get(key);
+	Entry entry = reference != null ? (Entry)reference.get() : null;
+	if (entry != null && entry.bytes.length == bytes.length) {
+		int i = 0;
+		while (i < bytes.length && entry.bytes[i] == bytes[i]) i++;
+		if (i == bytes.length) {
+			Hits++;
+			if (entry.kept) unlink(entry);
+			link(entry);
+			trim();
+			return entry;
+		}
+	}
+	Misses++;
+	return null;
+}
+
+/**
+ * Answers the number of loads that found their image in the cache.
+ */
+public static synchronized int getHits() {
+	return Hits;
+}
+
+/**
+ * Answers the number of loads that decoded their image.
+ */
+public static synchronized int getMisses() {
+	return Misses;
+}
+
+/**
+ * Answers the size of the cache in bytes.
+ */
+public static synchronized int getSize() {
+	return Size;
+}
+
+/**
+ * Answers the number of bytes of the images that are kept.
+ */
+public static synchronized int getUsed() {
+	return Used;
+}
+
+static void link(Entry entry) {
+	entry.previous = null;
+	entry.next = First;
+	if (First != null) First.previous = entry;
+	First = entry;
+	if (Last == null) Last = entry;
+	entry.kept = true;
+	Used += entry.size;
+}
+
+/**
+ * Loads the images of the stream with the loader, or answers
+ * a copy of the image data that was cached when the same
+ * stream was loaded before.
+ */
+public static ImageData[] load(InputStream stream, ImageLoader loader) {
+	if (getSize() <= 0 || loader.hasListeners()) return FileFormat.load(stream, loader);
+	byte[] bytes = FileFormat.readAll(stream);
+	Key key = new Key(bytes, loader.targetWidth, loader.targetHeight);
+	Entry entry = get(key, bytes);
+	if (entry != null) {
+		loader.logicalScreenWidth = entry.logicalScreenWidth;
+		loader.logicalScreenHeight = entry.logicalScreenHeight;
+		loader.backgroundPixel = entry.backgroundPixel;
+		loader.repeatCount = entry.repeatCount;
+		return copy(entry.data);
+	}
+	ImageData[] data = FileFormat.load(new ByteArrayInputStream(bytes), loader);
+	entry = new Entry();
+	entry.key = key;
+	entry.bytes = bytes;
+	entry.data = copy(data);
+	entry.logicalScreenWidth = loader.logicalScreenWidth;
+	entry.logicalScreenHeight = loader.logicalScreenHeight;
+	entry.backgroundPixel = loader.backgroundPixel;
+	entry.repeatCount = loader.repeatCount;
+	int size = bytes.length;
+	for (int i = 0; i < data.length; i++) {
+		size += data[i].data.length;
+		if (data[i].maskData != null) size += data[i].maskData.length;
+		if (data[i].alphaData != null) size += data[i].alphaData.length;
+	}
+	entry.size = size;
+	put(entry);
+	return data;
+}
+
+/**
+ * Removes the images that the garbage collector cleared.
+ */
+static void purge() {
+	Reference reference;
+	while ((reference = (Reference)Queue.poll()) != null) {
+		if (Entries.get(reference.key) == reference) Entries.remove(reference.key);
+	}
+}
+
+static synchronized void put(Entry entry) {
+	if (entry.size > Size) return;
+	purge();
+	Reference reference = (Reference)Entries.put(entry.key, new Reference(entry));
+	if (reference != null) {
+		Entry oldEntry = (Entry)reference.get();
+		if (oldEntry != null && oldEntry.kept) unlink(oldEntry);
+	}
+	link(entry);
+	trim();
+}
+
+/**
+ * Sets the size of the cache in bytes.  A size of zero disables the cache.
+ */
+public static synchronized void setSize(int size) {
+	Size = Math.max(0, size);
+	trim();
+}
+
+/**
+ * Keeps the most recently used images that fit in the cache,
+ * and leaves the others to the soft references.
+ */
+static void trim() {
+	while (Used > Size && Last != null) {
+		unlink(Last);
+	}
+}
+
+static void unlink(Entry entry) {
+	if (entry.previous != null) {
+		entry.previous.next = entry.next;
+	} else {
+		First = entry.next;
+	}
+	if (entry.next != null) {
+		entry.next.previous = entry.previous;
+	} else {
+		Last = entry.previous;
+	}
+	entry.previous = entry.next = null;
+	entry.kept = false;
+	Used -= entry.size;
+}
+
+}
@@ -15,6 +15,7 @@ import org.eclipse.swt.graphics.*;
 import java.io.*;
 
 public final class JPEGFileFormat extends FileFormat {
+	static final byte[][] SIGNATURES = {{(byte)0xFF, (byte)0xD8}};
 	int restartInterval;
 	JPEGFrameHeader frameHeader;
 	int imageWidth, imageHeight;
@@ -1198,6 +1199,12 @@ void getDRI() {
 	}
 	restartInterval = dri.getRestartInterval();
 }
+protected byte[][] getSignatures() {
+	return SIGNATURES;
+}
+protected FileFormat newInstance() {
+	return new JPEGFileFormat();
+}
 void inverseDCT(int[] dataUnit) {
 	for (int row = 0; row < 8; row++) {
 		int rIndex = row * DCTSIZE;
@@ -1356,15 +1363,6 @@ void inverseDCT(int[] dataUnit) {
 		}
 	}
 }
-boolean isFileFormat(LEDataInputStream stream) {
-	try {
-		JPEGStartOfImage soi = new JPEGStartOfImage(stream);
-		stream.unread(soi.reference);
-		return soi.verify();  // we no longer check for appN
-	} catch (Exception e) {
-		return false;
-	}
-}
 boolean isZeroInColumn(int[] dataUnit, int col) {
 	return dataUnit[col + 8] == 0 && dataUnit[col + 16] == 0
 			&& dataUnit[col + 24] == 0 && dataUnit[col + 32] == 0
@@ -1377,9 +1375,13 @@ boolean isZeroInRow(int[] dataUnit, int rIndex) {
 			&& dataUnit[rIndex + 5] == 0 && dataUnit[rIndex + 6] == 0
 			&& dataUnit[rIndex + 7] == 0;
 }
-ImageData[] loadFromByteStream() {
+protected ImageData[] loadFromByteStream() {
 	//TEMPORARY CODE
 	if (System.getProperty("org.eclipse.swt.internal.image.JPEGFileFormat_3.2") == null) {
+		if (bands != null) {
+			JPEGDecoder.decompress(JPEGDecoder.read_header(inputStream, loader), bands);
+			return new ImageData[0];
+		}
 		return JPEGDecoder.loadFromByteStream(inputStream, loader);
 	}
 	JPEGStartOfImage soi = new JPEGStartOfImage(inputStream);
@@ -1757,7 +1759,7 @@ void storeData(int[] dataUnit, int iComp, int xmcu, int ymcu, int hi, int ihi, i
 		destIndex += compWidth;
 	}
 }
-void unloadIntoByteStream(ImageLoader loader) {
+protected void unloadIntoByteStream(ImageLoader loader) {
 	ImageData image = loader.data[0];
 	if (!new JPEGStartOfImage().writeToStream(outputStream)) {
 		SWT.error(SWT.ERROR_IO);
@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.internal.image;
+
+
+import java.io.*;
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.graphics.*;
+import org.eclipse.swt.internal.Compatibility;
+
+/**
+ * Decodes large sequential JPEG images that have restart markers
+ * on several threads.
+ * <p>
+ * The entropy coded data of a restart interval does not depend on the
+ * data before it, so the image is split into bands of MCU rows that start
+ * at restart markers.  Each band is decoded by a decoder of its own, from
+ * a stream made of the headers of the image followed by the restart
+ * intervals of the band.  A band is decoded together with the restart
+ * intervals around it, so that the upsampling of its first and last rows
+ * sees the same rows as when the whole image is decoded, and the result
+ * is identical to the one of the sequential decoder.
+ * </p><p>
+ * The number of threads is the number of processors, unless the
+ * <code>org.eclipse.swt.internal.image.JPEGDecoder.threads</code>
+ * system property sets it.  Images that cannot be split fall back to
+ * the sequential decoder.  The stream is only read into memory when its
+ * header describes an image that can be split.
+ * </p>
+ */
+final class JPEGParallelDecoder implements Runnable {
+	byte[] bytes;
+	ImageLoader loader;
+	int scaleDenom, dctMethod;
+	ImageData imageData;
+	Throwable error;
+
+	static final int THREADS = getThreads();
+	static final int MIN_PIXELS = 1 << 21;
+	static final int MIN_BAND_UNITS = 8;
+
+JPEGParallelDecoder(byte[] bytes, ImageLoader loader, int scaleDenom, int dctMethod) {
+	this.bytes = bytes;
+	this.loader = loader;
+	this.scaleDenom = scaleDenom;
+	this.dctMethod = dctMethod;
+}
+
+/**
+ * Answers whether the image described by the header may be decoded
+ * in parallel, before the rest of the stream is read.
+ */
+static boolean canDecompress(JPEGDecoder.jpeg_decompress_struct cinfo) {
+	if (cinfo.progressive_mode || cinfo.arith_code || cinfo.restart_interval == 0) return false;
+	if ((long)cinfo.image_width * cinfo.image_height < MIN_PIXELS) return false;
+	if (cinfo.comps_in_scan != cinfo.num_components) return false;
+	if (cinfo.comps_in_scan == 1 && (cinfo.max_h_samp_factor != 1 || cinfo.max_v_samp_factor != 1)) return false;
+	return true;
+}
+
+/**
+ * Decodes the image described by the header that was read from the bytes,
+ * or returns null when the image cannot be decoded in parallel.
+ */
+static ImageData decompress(JPEGDecoder.jpeg_decompress_struct cinfo, byte[] bytes, ImageLoader loader) {
+	if (!canDecompress(cinfo)) return null;
+	int mcuWidth = cinfo.max_h_samp_factor * JPEGDecoder.DCTSIZE;
+	int mcuHeight = cinfo.max_v_samp_factor * JPEGDecoder.DCTSIZE;
+	int mcusPerRow = (cinfo.image_width + mcuWidth - 1) / mcuWidth;
+	int mcuRows = (cinfo.image_height + mcuHeight - 1) / mcuHeight;
+	int interval = cinfo.restart_interval;
+	int intervals = (mcusPerRow * mcuRows + interval - 1) / interval;
+
+	/* Find the frame header and the end of the scan header */
+	int frameOffset = -1, scanEnd = -1, offset = 2;
+	while (scanEnd == -1) {
+		if (offset + 4 > bytes.length || (bytes[offset] & 0xFF) != 0xFF) return null;
+		int marker = 0xFF00 | (bytes[offset + 1] & 0xFF);
+		if (marker == 0xFFFF) {
+			offset++;
+			continue;
+		}
+		if (marker == 0xFF01 || (JPEGFileFormat.RST0 <= marker && marker <= JPEGFileFormat.EOI)) return null;
+		int length = ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+		switch (marker) {
+			case JPEGFileFormat.SOF0:
+			case JPEGFileFormat.SOF1:
+				frameOffset = offset;
+				break;
+			case JPEGFileFormat.SOS:
+				scanEnd = offset + 2 + length;
+				break;
+		}
+		offset += 2 + length;
+	}
+	if (frameOffset == -1) return null;
+
+	/* Find the entropy coded data of each restart interval */
+	int[] starts = new int[intervals], ends = new int[intervals];
+	int count = 0;
+	starts[0] = offset = scanEnd;
+	while (true) {
+		if (offset + 1 >= bytes.length) return null;
+		if (bytes[offset] != (byte)0xFF) {
+			offset++;
+			continue;
+		}
+		int marker = 0xFF00 | (bytes[offset + 1] & 0xFF);
+		if (marker == 0xFF00) {
+			offset += 2;
+			continue;
+		}
+		if (marker == 0xFFFF) {
+			offset++;
+			continue;
+		}
+		if (JPEGFileFormat.RST0 <= marker && marker <= JPEGFileFormat.RST7) {
+			if (count + 1 == intervals) return null;
+			ends[count++] = offset;
+			starts[count] = offset += 2;
+			continue;
+		}
+		if (marker != JPEGFileFormat.EOI || count + 1 != intervals) return null;
+		ends[count] = offset;
+		break;
+	}
+
+	/*
+	* Split the image into bands of whole restart intervals that start
+	* at the beginning of an MCU row.
+	*/
+	int a = interval, b = mcusPerRow;
+	while (b != 0) {
+		int r = a % b;
+		a = b;
+		b = r;
+	}
+	int unitRows = interval / a;
+	int units = (mcuRows + unitRows - 1) / unitRows;
+	int bandCount = Math.min(THREADS, units / MIN_BAND_UNITS);
+	if (bandCount < 2) return null;
+	int[] bandStarts = new int[bandCount + 1];
+	for (int i = 0; i <= bandCount; i++) {
+		bandStarts[i] = Math.min(mcuRows, (int)((long)units * i / bandCount) * unitRows);
+	}
+	int denom = cinfo.scale_denom;
+	if (cinfo.scale_num * 8 <= denom) {
+		denom = 8;
+	} else if (cinfo.scale_num * 4 <= denom) {
+		denom = 4;
+	} else if (cinfo.scale_num * 2 <= denom) {
+		denom = 2;
+	} else {
+		denom = 1;
+	}
+	JPEGParallelDecoder[] decoders = new JPEGParallelDecoder[bandCount];
+	int[] decodeStarts = new int[bandCount];
+	for (int i = 0; i < bandCount; i++) {
+		int start = Math.max(0, bandStarts[i] - unitRows);
+		int end = Math.min(mcuRows, bandStarts[i + 1] + unitRows);
+		int first = start * mcusPerRow / interval;
+		int last = end == mcuRows ? intervals : end * mcusPerRow / interval;
+		int height = Math.min(cinfo.image_height, end * mcuHeight) - start * mcuHeight;
+		int size = scanEnd + 2;
+		for (int j = first; j < last; j++) {
+			size += ends[j] - starts[j] + 2;
+		}
+		byte[] data = new byte[size];
+		System.arraycopy(bytes, 0, data, 0, scanEnd);
+		data[frameOffset + 5] = (byte)(height >> 8);
+		data[frameOffset + 6] = (byte)height;
+		int index = scanEnd;
+		for (int j = first; j < last; j++) {
+			if (j > first) {
+				data[index++] = (byte)0xFF;
+				data[index++] = (byte)(JPEGFileFormat.RST0 + ((j - first - 1) & 7));
+			}
+			System.arraycopy(bytes, starts[j], data, index, ends[j] - starts[j]);
+			index += ends[j] - starts[j];
+		}
+		data[index++] = (byte)0xFF;
+		data[index++] = (byte)JPEGFileFormat.EOI;
+		decodeStarts[i] = start;
+		decoders[i] = new JPEGParallelDecoder(data, loader, denom, cinfo.dct_method);
+	}
+
+	/* Decode the first band on this thread and the other bands on threads of their own */
+	Thread[] threads = new Thread[bandCount];
+	for (int i = 1; i < bandCount; i++) {
+		threads[i] = new Thread(decoders[i], "JPEG Decoder"); //$NON-NLS-1$
+		threads[i].start();
+	}
+	decoders[0].run();
+	boolean failed = decoders[0].error != null;
+	for (int i = 1; i < bandCount; i++) {
+		while (threads[i].isAlive()) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {}
+		}
+		failed |= decoders[i].error != null;
+	}
+	/* Let the sequential decoder report the errors */
+	if (failed) return null;
+
+	ImageData band = decoders[0].imageData;
+	int stride = band.bytesPerLine;
+	int outputHeight = (cinfo.image_height + denom - 1) / denom;
+	byte[] data = new byte[stride * outputHeight];
+	for (int i = 0; i < bandCount; i++) {
+		int start = bandStarts[i] * mcuHeight / denom;
+		int end = Math.min(outputHeight, bandStarts[i + 1] * mcuHeight / denom);
+		int bandStart = (bandStarts[i] - decodeStarts[i]) * mcuHeight / denom;
+		System.arraycopy(decoders[i].imageData.data, bandStart * stride, data, start * stride, (end - start) * stride);
+	}
+	return ImageData.internal_new(
+		band.width, outputHeight, band.depth, band.palette, band.scanlinePad, data,
+		0, null, null, -1, -1, SWT.IMAGE_JPEG, 0, 0, 0, 0);
+}
+
+static int getThreads() {
+	Integer threads = Integer.getInteger("org.eclipse.swt.internal.image.JPEGDecoder.threads"); //$NON-NLS-1$
+	if (threads != null) return threads.intValue();
+	return Compatibility.availableProcessors();
+}
+
+/**
+ * Keeps the bytes that are read from a stream while the header of the
+ * image is read, so that the whole stream is only read into memory when
+ * the image can be decoded in parallel.
+ */
+static final class HeaderInputStream extends InputStream {
+	InputStream inputStream;
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+	HeaderInputStream(InputStream inputStream) {
+		this.inputStream = inputStream;
+	}
+
+	public int read() throws IOException {
+		int b = inputStream.read();
+		if (b != -1 && bytes != null) bytes.write(b);
+		return b;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		int count = inputStream.read(b, off, len);
+		if (count > 0 && bytes != null) bytes.write(b, off, count);
+		return count;
+	}
+
+	/**
+	 * Answers the bytes of the whole stream.
+	 */
+	byte[] readAll() {
+		byte[] buffer = new byte[4096];
+		try {
+			while (read(buffer) != -1) {}
+		} catch (IOException e) {
+			SWT.error(SWT.ERROR_IO, e);
+		}
+		byte[] result = bytes.toByteArray();
+		bytes = null;
+		return result;
+	}
+
+	/**
+	 * Stops keeping the bytes that are read.
+	 */
+	void release() {
+		bytes = null;
+	}
+}
+
+public void run() {
+	try {
+		JPEGDecoder.jpeg_decompress_struct cinfo = JPEGDecoder.read_header(new ByteArrayInputStream(bytes), loader);
+		cinfo.scale_num = 1;
+		cinfo.scale_denom = scaleDenom;
+		cinfo.dct_method = dctMethod;
+		imageData = JPEGDecoder.decompress(cinfo, loader);
+	} catch (Throwable e) {
+		error = e;
+	}
+}
+
+}
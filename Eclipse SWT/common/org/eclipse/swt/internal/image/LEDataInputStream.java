@@ -13,7 +13,7 @@ package org.eclipse.swt.internal.image;
 
 import java.io.*;
 
-final class LEDataInputStream extends InputStream {
+public final class LEDataInputStream extends InputStream {
 	int position;
 	InputStream in;
 
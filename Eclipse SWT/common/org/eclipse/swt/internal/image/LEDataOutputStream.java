@@ -13,7 +13,7 @@ package org.eclipse.swt.internal.image;
 
 import java.io.*;
 
-final class LEDataOutputStream extends OutputStream {
+public final class LEDataOutputStream extends OutputStream {
 	OutputStream out;
 public LEDataOutputStream(OutputStream output) {
 	this.out = output;
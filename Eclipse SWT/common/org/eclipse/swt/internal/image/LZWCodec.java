@@ -25,6 +25,7 @@ final class LZWCodec {
 	LEDataOutputStream outputStream;
 	ImageData image;
 	ImageLoader loader;
+	ImageBands bands;
 	boolean interlaced;
 	static final int[] MASK_TABLE = new int[] {
 		0x1, 0x3, 0x7, 0xF, 0x1F, 0x3F, 0x7F,
@@ -236,7 +237,7 @@ void initializeForDecoding() {
 	prefix = new int[4096];
 	block = new byte[256];
 	imageWidth = image.width;
-	imageHeight = image.height;
+	imageHeight = bands != null ? bands.height : image.height;
 }
 /**
  * Initialize the receiver for encoding the given
@@ -388,13 +389,19 @@ void nextPutCode(int aCode) {
  * Copy a row of pixel values to the image.
  */
 void nextPutPixels(byte[] buf) {
+	int y = line;
+	if (bands != null) {
+		// The image holds the rows of one band.
+		if (line >= imageHeight) SWT.error(SWT.ERROR_INVALID_IMAGE);
+		y = bands.line();
+	}
 	if (image.depth == 8) {
 		// Slight optimization for depth = 8.
-		int start = line * image.bytesPerLine;
+		int start = y * image.bytesPerLine;
 		for (int i = 0; i < imageWidth; i++)
 			image.data[start + i] = buf[i];
 	} else {
-		image.setPixels(0, line, imageWidth, buf, 0);
+		image.setPixels(0, y, imageWidth, buf, 0);
 	}
 	if (interlaced) {
 		if (pass == 1) {
@@ -428,6 +435,7 @@ void nextPutPixels(byte[] buf) {
 		if (line >= imageHeight) line = 0;
 	} else {
 		line++;
+		if (bands != null) bands.nextLine();
 	}
 }
 /**
@@ -18,6 +18,7 @@ import org.eclipse.swt.internal.*;
 
 public final class PNGFileFormat extends FileFormat {
 	static final int SIGNATURE_LENGTH = 8;
+	static final byte[][] SIGNATURES = {{(byte)137, 80, 78, 71, 13, 10, 26, 10}};
 	static final int PRIME = 65521;
 	PngIhdrChunk headerChunk;
 	PngPlteChunk paletteChunk;
@@ -39,13 +40,20 @@ void readSignature() throws IOException {
 /**
  * Load the PNG image from the byte stream.
  */
-ImageData[] loadFromByteStream() {
+protected ImageData[] loadFromByteStream() {
 	try {
 		readSignature();
 		PngChunkReader chunkReader = new PngChunkReader(inputStream);
 		headerChunk = chunkReader.getIhdrChunk();
 		int width = headerChunk.getWidth(), height = headerChunk.getHeight();
 		if (width <= 0 || height <= 0) SWT.error(SWT.ERROR_INVALID_IMAGE);
+		/*
+		* The bands of a non-interlaced image are decoded one row
+		* at a time, so the image only holds the palette and the
+		* transparent pixel.
+		*/
+		boolean streamed = bands != null && headerChunk.getInterlaceMethod() == PngIhdrChunk.INTERLACE_METHOD_NONE;
+		if (streamed) height = 1;
 		int imageSize = getAlignedBytesPerRow() * height;
 		data = new byte[imageSize];		
 		imageData = ImageData.internal_new(
@@ -74,7 +82,8 @@ ImageData[] loadFromByteStream() {
 		while (chunkReader.hasMoreChunks()) {
 			readNextChunk(chunkReader);
 		}
-						
+		
+		if (streamed) return new ImageData[0];
 		return new ImageData[] {imageData};
 	} catch (IOException e) {
 		SWT.error(SWT.ERROR_INVALID_IMAGE);
@@ -141,27 +150,15 @@ void readNextChunk(PngChunkReader chunkReader) throws IOException {
 			}
 	}
 }
-void unloadIntoByteStream(ImageLoader loader) {
+protected void unloadIntoByteStream(ImageLoader loader) {
 	PngEncoder encoder = new PngEncoder(loader);
 	encoder.encode(outputStream);
 }
-boolean isFileFormat(LEDataInputStream stream) {
-	try {
-		byte[] signature = new byte[SIGNATURE_LENGTH];
-		stream.read(signature);
-		stream.unread(signature);
-		if ((signature[0] & 0xFF) != 137) return false; //137
-		if ((signature[1] & 0xFF) != 80) return false; //P
-		if ((signature[2] & 0xFF) != 78) return false; //N
-		if ((signature[3] & 0xFF) != 71) return false; //G
-		if ((signature[4] & 0xFF) != 13) return false; //<RETURN>
-		if ((signature[5] & 0xFF) != 10) return false; //<LINEFEED>
-		if ((signature[6] & 0xFF) != 26) return false; //<CTRL/Z>
-		if ((signature[7] & 0xFF) != 10) return false; //<LINEFEED>		
-		return true;
-	} catch (Exception e) {
-		return false;
-	}
+protected byte[][] getSignatures() {
+	return SIGNATURES;
+}
+protected FileFormat newInstance() {
+	return new PNGFileFormat();
 }
 /**
  * SWT does not support 16-bit depths. If this image uses
@@ -169,8 +166,14 @@ boolean isFileFormat(LEDataInputStream stream) {
  */
 byte[] validateBitDepth(byte[] data) {
 	if (headerChunk.getBitDepth() > 8) {
-		byte[] result = new byte[data.length / 2];
-		compress16BitDepthTo8BitDepth(data, 0, result, 0, result.length);
+		int height = headerChunk.getHeight();
+		int srcBytesPerLine = getAlignedBytesPerRow();
+		int destBytesPerLine = get8BitAlignedBytesPerRow();
+		int count = getBytesPerRow() / 2;
+		byte[] result = new byte[destBytesPerLine * height];
+		for (int y = 0; y < height; y++) {
+			compress16BitDepthTo8BitDepth(data, srcBytesPerLine * y, result, destBytesPerLine * y, count);
+		}
 		return result;
 	} else {
 		return data;
@@ -196,7 +199,7 @@ void setPixelData(byte[] data, ImageData imageData) {
 			* to an 8-bit depth image.
 			*/
 			int srcBytesPerLine = getAlignedBytesPerRow();
-			if (headerChunk.getBitDepth() > 8) srcBytesPerLine /= 2;
+			if (headerChunk.getBitDepth() > 8) srcBytesPerLine = get8BitAlignedBytesPerRow();
 
 			byte[] rgbData = new byte[destBytesPerLine * height];
 			byte[] alphaData = new byte[width * height];
@@ -230,7 +233,7 @@ void setPixelData(byte[] data, ImageData imageData) {
 			* If the image uses 16-bit depth, it is converted
 			* to an 8-bit depth image.
 			*/
-			if (headerChunk.getBitDepth() > 8) srcBytesPerLine /= 2;
+			if (headerChunk.getBitDepth() > 8) srcBytesPerLine = get8BitAlignedBytesPerRow();
 
 			byte[] rgbData = new byte[destBytesPerLine * height];
 			byte[] alphaData = new byte[width * height];
@@ -300,7 +303,11 @@ void readPixelData(PngIdatChunk chunk, PngChunkReader chunkReader) throws IOExce
 	}
 	int interlaceMethod = headerChunk.getInterlaceMethod();
 	if (interlaceMethod == PngIhdrChunk.INTERLACE_METHOD_NONE) {
-		readNonInterlacedImage(stream);
+		if (bands != null) {
+			readNonInterlacedBands(stream);
+		} else {
+			readNonInterlacedImage(stream);
+		}
 	} else {
 		readInterlacedImage(stream);
 	}
@@ -318,6 +325,13 @@ void readPixelData(PngIdatChunk chunk, PngChunkReader chunkReader) throws IOExce
 int getAlignedBytesPerRow() {
 	return ((getBytesPerRow(headerChunk.getWidth()) + 3) / 4) * 4;
 }
+/**
+ * Answer the number of bytes in a word-aligned row of pixel data
+ * once a 16-bit depth is converted to an 8-bit depth.
+ */
+int get8BitAlignedBytesPerRow() {
+	return ((getBytesPerRow(headerChunk.getWidth()) / 2 + 3) / 4) * 4;
+}
 /**
  * Answer the number of bytes in each row of the image
  * data. Each PNG row is byte-aligned, so images with bit
@@ -473,6 +487,99 @@ void readNonInterlacedImage(InputStream inputStream) throws IOException {
 	}
 	setImageDataValues(data, imageData);
 }
+/**
+ * Read the pixel data for a non-interlaced image from the
+ * data stream and deliver it in bands, one row at a time.
+ */
+void readNonInterlacedBands(InputStream inputStream) throws IOException {
+	int width = headerChunk.getWidth();
+	int height = headerChunk.getHeight();
+	int colorType = headerChunk.getColorType();
+	boolean hasAlpha = colorType == PngIhdrChunk.COLOR_TYPE_GRAYSCALE_WITH_ALPHA || colorType == PngIhdrChunk.COLOR_TYPE_RGB_WITH_ALPHA;
+	byte[] pixels = null;
+	if (colorType == PngIhdrChunk.COLOR_TYPE_PALETTE && alphaPalette != null) {
+		hasAlpha = true;
+		pixels = new byte[width];
+	}
+	ImageData band = bands.start(
+		width,
+		height,
+		imageData.depth,
+		imageData.palette,
+		imageData.scanlinePad,
+		imageData.transparentPixel,
+		SWT.IMAGE_PNG,
+		hasAlpha,
+		false);
+	int bytesPerRow = getBytesPerRow();
+	byte[] row1 = new byte[bytesPerRow];
+	byte[] row2 = new byte[bytesPerRow];
+	byte[] currentRow = row1;	
+	byte[] lastRow = row2;
+	for (int row = 0; row < height; row++) {
+		byte filterType = (byte)inputStream.read();
+		int read = 0;
+		while (read != bytesPerRow) {
+			read += inputStream.read(currentRow, read, bytesPerRow - read);
+		}
+		filterRow(currentRow, lastRow, filterType);
+		setPixelRow(currentRow, band, bands.line(), pixels);
+		bands.nextLine();
+		currentRow = (currentRow == row1) ? row2 : row1;
+		lastRow = (lastRow == row1) ? row2 : row1;
+	}
+}
+/**
+ * Convert one row of pixel data the way setImageDataValues()
+ * converts the whole image, and store it at the given line of
+ * the band image. The row is modified.
+ */
+void setPixelRow(byte[] row, ImageData band, int line, byte[] pixels) {
+	int count = row.length;
+	if (headerChunk.getBitDepth() > 8) {
+		count /= 2;
+		compress16BitDepthTo8BitDepth(row, 0, row, 0, count);
+	}
+	int width = band.width;
+	byte[] rgbData = band.data;
+	byte[] alphaData = band.alphaData;
+	int destIndex = band.bytesPerLine * line;
+	int destAlphaIndex = width * line;
+	switch (headerChunk.getColorType()) {
+		case PngIhdrChunk.COLOR_TYPE_GRAYSCALE_WITH_ALPHA:
+			for (int x = 0, srcIndex = 0; x < width; x++) {
+				byte grey = row[srcIndex];
+				rgbData[destIndex + 0] = grey;
+				rgbData[destIndex + 1] = grey;
+				rgbData[destIndex + 2] = grey;
+				alphaData[destAlphaIndex] = row[srcIndex + 1];
+				srcIndex += 2;
+				destIndex += 3;
+				destAlphaIndex++;
+			}
+			break;
+		case PngIhdrChunk.COLOR_TYPE_RGB_WITH_ALPHA:
+			for (int x = 0, srcIndex = 0; x < width; x++) {
+				rgbData[destIndex + 0] = row[srcIndex + 0];
+				rgbData[destIndex + 1] = row[srcIndex + 1];
+				rgbData[destIndex + 2] = row[srcIndex + 2];
+				alphaData[destAlphaIndex] = row[srcIndex + 3];
+				srcIndex += 4;
+				destIndex += 3;
+				destAlphaIndex++;
+			}
+			break;
+		default:
+			System.arraycopy(row, 0, rgbData, destIndex, Math.min(count, band.bytesPerLine));
+			if (pixels != null) {
+				band.getPixels(0, line, width, pixels, 0);
+				for (int x = 0; x < width; x++) {
+					alphaData[destAlphaIndex + x] = alphaPalette[pixels[x] & 0xFF];
+				}
+			}
+			break;
+	}
+}
 /**
  * SWT does not support 16-bit depth color formats.
  * Convert the 16-bit data to 8-bit data.
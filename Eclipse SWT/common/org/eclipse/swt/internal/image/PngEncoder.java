@@ -12,7 +12,6 @@ package org.eclipse.swt.internal.image;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.ImageData;
@@ -20,7 +19,23 @@ import org.eclipse.swt.graphics.ImageLoader;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.internal.Compatibility;
 
-final class PngEncoder extends Object {
+/**
+ * Encodes the first image of a loader in the PNG format.
+ * <p>
+ * The rows of direct images are filtered with the filter that gives the
+ * smallest sum of absolute differences for each row, and the rows of
+ * indexed images are not filtered.  The filtered rows of large images are
+ * filtered and compressed on several threads.  They are compressed in
+ * independent parts of 128K that use the 32K of data before them as the
+ * preset dictionary, and that are concatenated into a single zlib stream.
+ * </p><p>
+ * The number of threads is the number of processors, unless the
+ * <code>org.eclipse.swt.internal.image.PngEncoder.threads</code> system
+ * property sets it.  The parts are compressed on a single thread when the
+ * class library cannot flush a deflater.
+ * </p>
+ */
+final class PngEncoder extends Object implements Runnable {
 
 	static final byte SIGNATURE[] = {(byte) '\211', (byte) 'P', (byte) 'N', (byte) 'G', (byte) '\r', (byte) '\n', (byte) '\032', (byte) '\n'};
 	static final byte TAG_IHDR[] = {(byte) 'I', (byte) 'H', (byte) 'D', (byte) 'R'};
@@ -42,6 +57,43 @@ final class PngEncoder extends Object {
 	int filterMethod = 0;
 	int interlaceMethod = 0;
 	
+	int level, bytesPerPixel, rowLength;
+	boolean adaptive;
+	byte[] filtered;
+	
+	Part[] parts;
+	int nextPart;
+	boolean deflating;
+	Throwable error;
+	
+	static final int THREADS = getThreads();
+	static final int PART_SIZE = 1 << 17;
+	static final int DICTIONARY_SIZE = 1 << 15;
+	static final int MIN_PARALLEL_SIZE = 1 << 20;
+	static final int BASE = 65521;
+	static final int NMAX = 3800;	// the sums of this many bytes fit in a signed int
+	
+	static final int FILTER_NONE = 0;
+	static final int FILTER_SUB = 1;
+	static final int FILTER_UP = 2;
+	static final int FILTER_AVERAGE = 3;
+	static final int FILTER_PAETH = 4;
+	
+	/**
+	 * A range of rows to filter or of bytes to compress,
+	 * and the result of compressing them.
+	 */
+	static class Part {
+		int start, end;
+		byte[] compressed;
+		int adler;
+		
+		Part(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+	
 public PngEncoder(ImageLoader loader) {
 
 	this.loader = loader;
@@ -65,6 +117,63 @@ public PngEncoder(ImageLoader loader) {
 	}
 	
 	if (!(colorType == 2 || colorType == 3 || colorType == 6)) SWT.error(SWT.ERROR_INVALID_IMAGE);
+	
+	this.level = (0 <= loader.compression && loader.compression <= 9) ? loader.compression : -1;
+	this.bytesPerPixel = colorType == 3 ? 1 : colorType == 2 ? 3 : 4;
+	this.rowLength = 1 + width * bytesPerPixel;
+	this.adaptive = colorType != 3 && level != 0;
+
+}
+
+static int adler32(byte[] bytes, int offset, int length) {
+
+	int low = 1, high = 0;
+	
+	while (length > 0) {
+	
+		int count = Math.min(length, NMAX);
+		length -= count;
+		
+		while (count-- > 0) {
+		
+			low += bytes[offset++] & 0xff;
+			high += low;
+		
+		}
+		
+		low %= BASE;
+		high %= BASE;
+	
+	}
+	
+	return (high << 16) | low;
+
+}
+
+/**
+ * Answer the checksum of two blocks of data from
+ * their checksums and the length of the second block.
+ */
+static int combineAdler32(int adler1, int adler2, int length2) {
+
+	int remainder = length2 % BASE;
+	long low = adler1 & 0xffff;
+	long high = (remainder * low) % BASE;
+	low += (adler2 & 0xffff) + BASE - 1;
+	high += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + BASE - remainder;
+	if (low >= BASE) low -= BASE;
+	if (low >= BASE) low -= BASE;
+	if (high >= (BASE << 1)) high -= (BASE << 1);
+	if (high >= BASE) high -= BASE;
+	return (int) ((high << 16) | low);
+
+}
+
+static int getThreads() {
+
+	Integer threads = Integer.getInteger("org.eclipse.swt.internal.image.PngEncoder.threads"); //$NON-NLS-1$
+	if (threads != null) return threads.intValue();
+	return Compatibility.availableProcessors();
 
 }
 
@@ -158,18 +267,18 @@ void writeTransparency() {
 	
 		case SWT.TRANSPARENCY_ALPHA:
 			
-			int pixelValue, alphaValue;
-			
 			byte[] alphas = new byte[data.palette.getRGBs().length];
+			byte[] linePixels = new byte[width];
+			byte[] lineAlphas = new byte[width];
 			
 			for (int y = 0; y < height; y++) {
 			
+				data.getPixels(0, y, width, linePixels, 0);
+				data.getAlphas(0, y, width, lineAlphas, 0);
+				
 				for (int x = 0; x < width; x++) {
 				
-					pixelValue = data.getPixel(x, y);
-					alphaValue = data.getAlpha(x, y);
-					
-					alphas[pixelValue] = (byte) alphaValue;
+					alphas[linePixels[x] & 0xff] = lineAlphas[x];
 				
 				}
 			
@@ -229,77 +338,212 @@ void writeTransparency() {
 
 }
 
-void writeImageData() throws IOException {
+/**
+ * Filter the rows from start to end into the filtered data.
+ */
+void filter(int start, int end) {
 
-	ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
-	OutputStream os = Compatibility.newDeflaterOutputStream(baos);
-	if (os == null) os = baos;
+	int length = rowLength - 1;
+	byte[] previous = new byte[length];
+	byte[] current = new byte[length];
+	int[] pixels = colorType == 3 ? null : new int[width];
+	byte[] alphas = colorType == 6 ? new byte[width] : null;
 	
-	if (colorType == 3) {
+	if (start > 0 && adaptive) getRow(start - 1, previous, pixels, alphas);
 	
-		byte[] lineData = new byte[width];
+	for (int y = start; y < end; y++) {
+	
+		getRow(y, current, pixels, alphas);
+		int offset = y * rowLength;
 		
-		for (int y = 0; y < height; y++) {
-			
-			int filter = 0;
-			os.write(filter);
+		int filter = adaptive ? selectFilter(current, previous) : FILTER_NONE;
+		filtered[offset++] = (byte) filter;
+		
+		int bpp = bytesPerPixel;
+		switch (filter) {
+		
+			case FILTER_NONE:
+				System.arraycopy(current, 0, filtered, offset, length);
+				break;
 			
-			data.getPixels(0, y, width, lineData, 0);
+			case FILTER_SUB:
+				for (int i = 0; i < length; i++) {
+					int a = i >= bpp ? current[i - bpp] : 0;
+					filtered[offset + i] = (byte) (current[i] - a);
+				}
+				break;
 			
-			for (int x = 0; x < lineData.length; x++) {
+			case FILTER_UP:
+				for (int i = 0; i < length; i++) {
+					filtered[offset + i] = (byte) (current[i] - previous[i]);
+				}
+				break;
 			
-				os.write(lineData[x]);
+			case FILTER_AVERAGE:
+				for (int i = 0; i < length; i++) {
+					int a = i >= bpp ? current[i - bpp] & 0xff : 0;
+					filtered[offset + i] = (byte) (current[i] - ((a + (previous[i] & 0xff)) >> 1));
+				}
+				break;
 			
-			}
+			case FILTER_PAETH:
+				for (int i = 0; i < length; i++) {
+					int a = 0, c = 0;
+					if (i >= bpp) {
+						a = current[i - bpp] & 0xff;
+						c = previous[i - bpp] & 0xff;
+					}
+					filtered[offset + i] = (byte) (current[i] - paeth(a, previous[i] & 0xff, c));
+				}
+				break;
 		
 		}
+		
+		byte[] temp = previous;
+		previous = current;
+		current = temp;
 	
 	}
+
+}
+
+/**
+ * Convert the pixels of a row to the bytes of the PNG row.
+ */
+void getRow(int y, byte[] row, int[] pixels, byte[] alphas) {
+
+	if (colorType == 3) {
 	
-	else {
+		data.getPixels(0, y, width, row, 0);
+		return;
 	
-		int[] lineData = new int[width];
-		byte[] alphaData = null;
-		if (colorType == 6) {
-			alphaData = new byte[width];
-		}
+	}
+	
+	int bpp = bytesPerPixel;
+	int redMask = data.palette.redMask;
+	int greenMask = data.palette.greenMask;
+	int blueMask = data.palette.blueMask;
+	int redIndex = getByteIndex(redMask);
+	int greenIndex = getByteIndex(greenMask);
+	int blueIndex = getByteIndex(blueMask);
+	
+	if (redIndex != -1 && greenIndex != -1 && blueIndex != -1) {
+	
+		/* Copy the channels of byte aligned pixels directly */
+		byte[] bytes = data.data;
+		int pixelBytes = data.depth / 8;
+		int index = y * data.bytesPerLine;
+		
+		for (int i = 0, end = width * bpp; i < end; i += bpp) {
+		
+			row[i] = bytes[index + redIndex];
+			row[i + 1] = bytes[index + greenIndex];
+			row[i + 2] = bytes[index + blueIndex];
+			index += pixelBytes;
 		
-		int redMask = data.palette.redMask;
+		}
+	
+	}
+	
+	else {
+	
 		int redShift = data.palette.redShift;
-		int greenMask = data.palette.greenMask;
 		int greenShift = data.palette.greenShift;
 		int blueShift = data.palette.blueShift;
-		int blueMask = data.palette.blueMask;
 		
-		for (int y = 0; y < height; y++) {
+		data.getPixels(0, y, width, pixels, 0);
+		
+		for (int x = 0, i = 0; x < width; x++, i += bpp) {
+		
+			int pixel = pixels[x];
+			
+			int r = pixel & redMask;
+			r = (redShift < 0) ? r >>> -redShift : r << redShift;
+			int g = pixel & greenMask;
+			g = (greenShift < 0) ? g >>> -greenShift : g << greenShift;
+			int b = pixel & blueMask;
+			b = (blueShift < 0) ? b >>> -blueShift : b << blueShift;
+			
+			row[i] = (byte) r;
+			row[i + 1] = (byte) g;
+			row[i + 2] = (byte) b;
+		
+		}
+	
+	}
+	
+	if (colorType == 6) {
+	
+		data.getAlphas(0, y, width, alphas, 0);
+		
+		for (int x = 0, i = 3; x < width; x++, i += 4) {
+		
+			row[i] = alphas[x];
+		
+		}
+	
+	}
+
+}
+
+/**
+ * Answer the index of the byte of a pixel that holds the
+ * channel of the mask, or -1 if the channel is not a byte.
+ */
+int getByteIndex(int mask) {
+
+	int depth = data.depth;
+	if (depth != 24 && depth != 32) return -1;
+	int shift;
+	switch (mask) {
+		case 0xff: shift = 0; break;
+		case 0xff00: shift = 1; break;
+		case 0xff0000: shift = 2; break;
+		case 0xff000000: shift = 3; break;
+		default: return -1;
+	}
+	int index = depth / 8 - 1 - shift;
+	return index >= 0 ? index : -1;
+
+}
+
+synchronized Part nextPart() {
+
+	return nextPart < parts.length ? parts[nextPart++] : null;
+
+}
+
+static int paeth(int a, int b, int c) {
+
+	int p = a + b - c;
+	int pa = Math.abs(p - a);
+	int pb = Math.abs(p - b);
+	int pc = Math.abs(p - c);
+	if (pa <= pb && pa <= pc) return a;
+	if (pb <= pc) return b;
+	return c;
+
+}
+
+public void run() {
+
+	try {
+	
+		Part part;
+		while ((part = nextPart()) != null) {
 		
-			int filter = 0;
-			os.write(filter);
+			if (deflating) {
 			
-			data.getPixels(0, y, width, lineData, 0);
+				int length = part.end - part.start;
+				int dictionaryLength = Math.min(part.start, DICTIONARY_SIZE);
+				part.compressed = Compatibility.deflate(filtered, part.start, length, dictionaryLength, level, part.end == filtered.length);
+				part.adler = adler32(filtered, part.start, length);
 			
-			if (colorType == 6) {
-				data.getAlphas(0, y, width, alphaData, 0);
 			}
 			
-			for (int x = 0; x < lineData.length; x++) {
+			else {
 			
-				int pixel = lineData[x];
-				
-				int r = pixel & redMask;
-				r = (redShift < 0) ? r >>> -redShift : r << redShift;
-				int g = pixel & greenMask;
-				g = (greenShift < 0) ? g >>> -greenShift : g << greenShift;
-				int b = pixel & blueMask;
-				b = (blueShift < 0) ? b >>> -blueShift : b << blueShift;
-				
-				os.write(r);
-				os.write(g);
-				os.write(b);
-				
-				if (colorType == 6) {
-					os.write(alphaData[x]);
-				}
+				filter(part.start, part.end);
 			
 			}
 		
@@ -307,19 +551,181 @@ void writeImageData() throws IOException {
 	
 	}
 	
-	os.flush();
-	os.close();
+	catch (Throwable e) {
+	
+		error = e;
+	
+	}
+
+}
+
+/**
+ * Run the parts from the first one on this thread
+ * and on threads of their own.
+ */
+void runParts(Part[] parts, int first, boolean deflating) {
+
+	this.parts = parts;
+	this.nextPart = first;
+	this.deflating = deflating;
+	
+	int count = Math.min(THREADS, parts.length - first);
+	Thread[] threads = new Thread[count];
+	for (int i = 1; i < count; i++) {
+		threads[i] = new Thread(this, "PNG Encoder"); //$NON-NLS-1$
+		threads[i].start();
+	}
+	run();
+	for (int i = 1; i < count; i++) {
+		while (threads[i].isAlive()) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {}
+		}
+	}
+	
+	if (error instanceof RuntimeException) throw (RuntimeException) error;
+	if (error instanceof Error) throw (Error) error;
+
+}
+
+/**
+ * Answer the filter of the row that gives the smallest
+ * sum of the absolute values of the filtered bytes.
+ */
+int selectFilter(byte[] current, byte[] previous) {
+
+	int bpp = bytesPerPixel;
+	int none = 0, sub = 0, up = 0, average = 0, paeth = 0;
+	
+	for (int i = 0, length = rowLength - 1; i < length; i++) {
+	
+		int x = current[i] & 0xff;
+		int b = previous[i] & 0xff;
+		int a = 0, c = 0;
+		if (i >= bpp) {
+			a = current[i - bpp] & 0xff;
+			c = previous[i - bpp] & 0xff;
+		}
+		
+		none += Math.abs((byte) x);
+		sub += Math.abs((byte) (x - a));
+		up += Math.abs((byte) (x - b));
+		average += Math.abs((byte) (x - ((a + b) >> 1)));
+		paeth += Math.abs((byte) (x - paeth(a, b, c)));
 	
-	byte[] compressed = baos.toByteArray();
-	if (os == baos) {
-		PngDeflater deflater = new PngDeflater();
-		compressed = deflater.deflate(compressed);
 	}
 	
+	int filter = FILTER_NONE, min = none;
+	if (sub < min) { filter = FILTER_SUB; min = sub; }
+	if (up < min) { filter = FILTER_UP; min = up; }
+	if (average < min) { filter = FILTER_AVERAGE; min = average; }
+	if (paeth < min) { filter = FILTER_PAETH; min = paeth; }
+	return filter;
+
+}
+
+void writeImageData() throws IOException {
+
+	filtered = new byte[rowLength * height];
+	boolean parallel = THREADS > 1 && filtered.length >= MIN_PARALLEL_SIZE;
+	
+	if (parallel) {
+	
+		int count = Math.min(THREADS, height);
+		Part[] parts = new Part[count];
+		for (int i = 0; i < count; i++) {
+			parts[i] = new Part((int) ((long) height * i / count), (int) ((long) height * (i + 1) / count));
+		}
+		runParts(parts, 0, false);
+	
+	}
+	
+	else {
+	
+		filter(0, height);
+	
+	}
+	
+	byte[] compressed = null;
+	
+	if (parallel) {
+	
+		/* Compress the first part on this thread to find out if the class library can flush a deflater */
+		int count = (filtered.length + PART_SIZE - 1) / PART_SIZE;
+		Part[] parts = new Part[count];
+		for (int i = 0; i < count; i++) {
+			parts[i] = new Part(i * PART_SIZE, Math.min(filtered.length, (i + 1) * PART_SIZE));
+		}
+		parts[0].compressed = Compatibility.deflate(filtered, 0, PART_SIZE, 0, level, false);
+		
+		if (parts[0].compressed != null) {
+		
+			parts[0].adler = adler32(filtered, 0, PART_SIZE);
+			runParts(parts, 1, true);
+			
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(filtered.length / 2);
+			int adler = 1;
+			for (int i = 0; i < count; i++) {
+				if (parts[i].compressed == null) SWT.error(SWT.ERROR_IO);
+				baos.write(parts[i].compressed, 0, parts[i].compressed.length);
+				adler = combineAdler32(adler, parts[i].adler, parts[i].end - parts[i].start);
+			}
+			compressed = wrap(baos.toByteArray(), adler);
+		
+		}
+	
+	}
+	
+	if (compressed == null) {
+	
+		byte[] deflated = Compatibility.deflate(filtered, 0, filtered.length, 0, level, true);
+		
+		if (deflated != null) {
+		
+			compressed = wrap(deflated, adler32(filtered, 0, filtered.length));
+		
+		}
+		
+		else {
+		
+			PngDeflater deflater = new PngDeflater();
+			compressed = deflater.deflate(filtered);
+		
+		}
+	
+	}
+	
+	filtered = null;
+	
 	writeChunk(TAG_IDAT, compressed);
 
 }
 
+/**
+ * Add the zlib header and checksum to deflated data.
+ */
+byte[] wrap(byte[] deflated, int adler) {
+
+	int flags;
+	switch (level) {
+		case 0: case 1: flags = 0; break;
+		case 2: case 3: case 4: case 5: flags = 1; break;
+		case 7: case 8: case 9: flags = 3; break;
+		default: flags = 2; break;
+	}
+	flags <<= 6;
+	flags += 31 - ((0x78 << 8) + flags) % 31;
+	
+	ByteArrayOutputStream baos = new ByteArrayOutputStream(deflated.length + 6);
+	baos.write(0x78); // window size = 0x70 (32768), compression method = 0x08
+	baos.write(flags);
+	baos.write(deflated, 0, deflated.length);
+	writeInt(baos, adler);
+	return baos.toByteArray();
+
+}
+
 void writeEnd() {
 
 	writeChunk(TAG_IEND, null);
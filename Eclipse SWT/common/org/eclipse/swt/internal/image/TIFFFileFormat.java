@@ -20,24 +20,17 @@ import java.io.*;
  * Extension T4-encoding CCITT T.4 1D
  */
 public final class TIFFFileFormat extends FileFormat {
+	static final byte[][] SIGNATURES = {{0x49, 0x49, 42, 0}, {0x4d, 0x4d, 0, 42}};
 
-boolean isFileFormat(LEDataInputStream stream) {
-	try {
-		byte[] header = new byte[4];
-		stream.read(header);
-		stream.unread(header);
-		if (header[0] != header[1]) return false;
-		if (!(header[0] == 0x49 && header[2] == 42 && header[3] == 0) &&
-			!(header[0] == 0x4d && header[2] == 0 && header[3] == 42)) {
-			return false;
-		} 	
-		return true;
-	} catch (Exception e) {
-		return false;
-	}
+protected byte[][] getSignatures() {
+	return SIGNATURES;
+}
+
+protected FileFormat newInstance() {
+	return new TIFFFileFormat();
 }
 
-ImageData[] loadFromByteStream() {	
+protected ImageData[] loadFromByteStream() {	
 	byte[] header = new byte[8];
 	boolean isLittleEndian;
 	ImageData[] images = new ImageData[0];
@@ -64,7 +57,7 @@ ImageData[] loadFromByteStream() {
 	return images;
 }
 
-void unloadIntoByteStream(ImageLoader loader) {
+protected void unloadIntoByteStream(ImageLoader loader) {
 	/* We do not currently support writing multi-page tiff,
 	 * so we use the first image data in the loader's array. */
 	ImageData image = loader.data[0];
@@ -18,6 +18,7 @@ import java.io.*;
 public final class WinBMPFileFormat extends FileFormat {
 	static final int BMPFileHeaderSize = 14;
 	static final int BMPHeaderFixedSize = 40;
+	static final byte[][] SIGNATURES = {{0x42, 0x4D}};
 	int importantColors;
 	Point pelsPerMeter = new Point(0, 0);
 
@@ -320,15 +321,36 @@ int decompressRLE8Data(byte[] src, int numBytes, int stride, byte[] dest, int de
 	}
 	return 1;
 }
-boolean isFileFormat(LEDataInputStream stream) {
+protected byte[][] getSignatures() {
+	return SIGNATURES;
+}
+protected FileFormat newInstance() {
+	return new WinBMPFileFormat();
+}
+protected boolean isFileFormat(byte[] header) {
+	int infoHeaderSize = (header[14] & 0xFF) | ((header[15] & 0xFF) << 8) | ((header[16] & 0xFF) << 16) | ((header[17] & 0xFF) << 24);
+	return infoHeaderSize >= BMPHeaderFixedSize;
+}
+/**
+ * Deliver the rows of an uncompressed image in bands, in
+ * the order they are stored in the file.
+ */
+void loadBands(byte[] infoHeader, PaletteData palette) {
+	int width = (infoHeader[4] & 0xFF) | ((infoHeader[5] & 0xFF) << 8) | ((infoHeader[6] & 0xFF) << 16) | ((infoHeader[7] & 0xFF) << 24);
+	int height = (infoHeader[8] & 0xFF) | ((infoHeader[9] & 0xFF) << 8) | ((infoHeader[10] & 0xFF) << 16) | ((infoHeader[11] & 0xFF) << 24);
+	int bitCount = (infoHeader[14] & 0xFF) | ((infoHeader[15] & 0xFF) << 8);
+	boolean bottomUp = height > 0;
+	if (height < 0) height = -height;
+	ImageData band = bands.start(width, height, bitCount, palette, 4, -1, SWT.IMAGE_BMP, false, bottomUp);
+	int stride = band.bytesPerLine;
 	try {
-		byte[] header = new byte[18];
-		stream.read(header);
-		stream.unread(header);
-		int infoHeaderSize = (header[14] & 0xFF) | ((header[15] & 0xFF) << 8) | ((header[16] & 0xFF) << 16) | ((header[17] & 0xFF) << 24);
-		return header[0] == 0x42 && header[1] == 0x4D && infoHeaderSize >= BMPHeaderFixedSize;
-	} catch (Exception e) {
-		return false;
+		for (int i = 0; i < height; i++) {
+			if (inputStream.read(bands.buffer, bands.line() * stride, stride) != stride)
+				SWT.error(SWT.ERROR_INVALID_IMAGE);
+			bands.nextLine();
+		}
+	} catch (IOException e) {
+		SWT.error(SWT.ERROR_IO, e);
 	}
 }
 byte[] loadData(byte[] infoHeader) {
@@ -382,7 +404,7 @@ int[] loadFileHeader() {
 		SWT.error(SWT.ERROR_INVALID_IMAGE);
 	return header;
 }
-ImageData[] loadFromByteStream() {
+protected ImageData[] loadFromByteStream() {
 	int[] fileHeader = loadFileHeader();
 	byte[] infoHeader = new byte[BMPHeaderFixedSize];
 	try {
@@ -404,6 +426,10 @@ ImageData[] loadFromByteStream() {
 			SWT.error(SWT.ERROR_IO, e);
 		}
 	}
+	if (bands != null && (this.compression == 0 || this.compression == 3)) {
+		loadBands(infoHeader, palette);
+		return new ImageData[0];
+	}
 	byte[] data = loadData(infoHeader);
 	this.importantColors = (infoHeader[36] & 0xFF) | ((infoHeader[37] & 0xFF) << 8) | ((infoHeader[38] & 0xFF) << 16) | ((infoHeader[39] & 0xFF) << 24);
 	int xPelsPerMeter = (infoHeader[24] & 0xFF) | ((infoHeader[25] & 0xFF) << 8) | ((infoHeader[26] & 0xFF) << 16) | ((infoHeader[27] & 0xFF) << 24);
@@ -587,7 +613,7 @@ int unloadDataNoCompression(ImageData image, OutputStream out) {
  * Unload a DeviceIndependentImage using Windows .BMP format into the given
  * byte stream.
  */
-void unloadIntoByteStream(ImageLoader loader) {
+protected void unloadIntoByteStream(ImageLoader loader) {
 	ImageData image = loader.data[0];
 	byte[] rgbs;
 	int numCols;
@@ -16,6 +16,7 @@ import org.eclipse.swt.graphics.*;
 import java.io.*;
 
 public final class WinICOFileFormat extends FileFormat {
+	static final byte[][] SIGNATURES = {{0, 0, 1, 0}};
 	
 byte[] bitInvertData(byte[] data, int startIndex, int endIndex) {
 	// Destructively bit invert data in the given byte array.
@@ -50,15 +51,11 @@ int iconSize(ImageData i) {
 	int paletteSize = i.palette.colors != null ? i.palette.colors.length * 4 : 0;
 	return WinBMPFileFormat.BMPHeaderFixedSize + paletteSize + dataSize;
 }
-boolean isFileFormat(LEDataInputStream stream) {
-	try {
-		byte[] header = new byte[4];
-		stream.read(header);
-		stream.unread(header);
-		return header[0] == 0 && header[1] == 0 && header[2] == 1 && header[3] == 0;
-	} catch (Exception e) {
-		return false;
-	}
+protected byte[][] getSignatures() {
+	return SIGNATURES;
+}
+protected FileFormat newInstance() {
+	return new WinICOFileFormat();
 }
 boolean isValidIcon(ImageData i) {
 	switch (i.depth) {
@@ -111,7 +108,7 @@ int loadFileHeader(LEDataInputStream byteStream, boolean hasHeader) {
 		SWT.error(SWT.ERROR_INVALID_IMAGE);
 	return numIcons;
 }
-ImageData[] loadFromByteStream() {
+protected ImageData[] loadFromByteStream() {
 	int numIcons = loadFileHeader(inputStream);
 	int[][] headers = loadIconHeaders(numIcons);
 	ImageData[] icons = new ImageData[headers.length];
@@ -261,7 +258,7 @@ void unloadIconHeader(ImageData i) {
 		SWT.error(SWT.ERROR_IO, e);
 	}
 }
-void unloadIntoByteStream(ImageLoader loader) {
+protected void unloadIntoByteStream(ImageLoader loader) {
 	/* We do not currently support writing multi-image ico,
 	 * so we use the first image data in the loader's array. */
 	ImageData image = loader.data[0];
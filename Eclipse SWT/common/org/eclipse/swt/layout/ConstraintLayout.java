@@ -0,0 +1,507 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.layout;
+
+import java.util.*;
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.graphics.*;
+import org.eclipse.swt.widgets.*;
+
+/**
+ * Instances of this class control the position and size of the
+ * children of a composite control with linear constraints between
+ * the edges, sizes and centers of the children and of the composite.
+ * <p>
+ * Each constraint relates an attribute of a control to an attribute of
+ * another control, or of the composite, multiplied by a factor and
+ * offset by a constant.  The following example code places
+ * <code>button1</code> 10 pixels from the left and top edges of the
+ * composite and makes <code>text1</code> fill the space to the right
+ * of it:
+ * <pre>
+ *		ConstraintLayout layout = new ConstraintLayout ();
+ *		layout.add (button1, ConstraintLayout.LEFT, ConstraintLayout.EQUAL, null, ConstraintLayout.LEFT, 10);
+ *		layout.add (button1, ConstraintLayout.TOP, ConstraintLayout.EQUAL, null, ConstraintLayout.TOP, 10);
+ *		layout.add (text1, ConstraintLayout.LEFT, ConstraintLayout.EQUAL, button1, ConstraintLayout.RIGHT, 5);
+ *		layout.add (text1, ConstraintLayout.RIGHT, ConstraintLayout.EQUAL, null, ConstraintLayout.RIGHT, -10);
+ *		layout.add (text1, ConstraintLayout.TOP, ConstraintLayout.EQUAL, button1, ConstraintLayout.TOP, 0);
+ *		shell.setLayout (layout);
+ * </pre>
+ * </p>
+ * <p>
+ * Constraints that are not required are satisfied as well as possible
+ * according to their strength.  The width and height of each child are
+ * kept to its preferred size with a <code>MEDIUM</code> strength.  A
+ * required constraint that conflicts with the other required constraints
+ * is ignored.
+ * </p>
+ * <p>
+ * The constraints are solved with an incremental simplex solver whose
+ * tableau is kept from one layout to the next.  When the composite is
+ * resized or the preferred size of a child changes, only the new values
+ * are given to the solver, which updates the solution from the previous
+ * one.  The tableau is built again when the constraints or the children
+ * of the composite change.
+ * </p>
+ *
+ * @see <a href="http://www.eclipse.org/swt/">Sample code and further information</a>
+ *
+ * @since 3.6
+ */
+public final class ConstraintLayout extends Layout {
+	/**
+	 * The left edge of a control.
+	 */
+	public static final int LEFT = 1;
+
+	/**
+	 * The right edge of a control.
+	 */
+	public static final int RIGHT = 2;
+
+	/**
+	 * The top edge of a control.
+	 */
+	public static final int TOP = 3;
+
+	/**
+	 * The bottom edge of a control.
+	 */
+	public static final int BOTTOM = 4;
+
+	/**
+	 * The width of a control.
+	 */
+	public static final int WIDTH = 5;
+
+	/**
+	 * The height of a control.
+	 */
+	public static final int HEIGHT = 6;
+
+	/**
+	 * The horizontal center of a control.
+	 */
+	public static final int CENTER_X = 7;
+
+	/**
+	 * The vertical center of a control.
+	 */
+	public static final int CENTER_Y = 8;
+
+	/**
+	 * The attribute is equal to the other attribute.
+	 */
+	public static final int EQUAL = 0;
+
+	/**
+	 * The attribute is less than or equal to the other attribute.
+	 */
+	public static final int LESS_OR_EQUAL = 1;
+
+	/**
+	 * The attribute is greater than or equal to the other attribute.
+	 */
+	public static final int GREATER_OR_EQUAL = 2;
+
+	/**
+	 * The strength of the constraints that are the first to be broken.
+	 */
+	public static final int WEAK = 1;
+
+	/**
+	 * The strength of the constraints that are broken before the strong ones,
+	 * which is the strength of the preferred sizes of the children.
+	 */
+	public static final int MEDIUM = 2;
+
+	/**
+	 * The strength of the constraints that are only broken for required ones.
+	 */
+	public static final int STRONG = 3;
+
+	/**
+	 * The strength of the constraints that must be satisfied.
+	 */
+	public static final int REQUIRED = 4;
+
+	Vector constraints = new Vector ();
+	Composite composite;
+	Control [] children;
+	SizeCache [] sizes;
+	Solution layoutSolution, sizeSolution;
+
+	static final double MINIMUM = 0.001;
+
+	static class Constraint {
+		Control control, other;
+		int attribute, relation, otherAttribute, offset, strength;
+		double multiplier;
+	}
+
+	/*
+	* The tableau of the constraints, with the variables of the
+	* left, top, width and height of each child, and of the width
+	* and height of the client area of the composite.
+	*/
+	static class Solution {
+		ConstraintSolver solver = new ConstraintSolver ();
+		ConstraintSolver.Symbol width, height;
+		ConstraintSolver.Symbol [] lefts, tops, widths, heights;
+		double clientWidth = -1, clientHeight = -1;
+		int [] preferredWidths, preferredHeights;
+	}
+
+/**
+ * Constructs a new instance of this class.
+ */
+public ConstraintLayout () {
+}
+
+/**
+ * Adds a required constraint that makes an attribute of a control equal,
+ * less than or greater than an attribute of another control plus an offset.
+ *
+ * @param control the control, or null for the composite
+ * @param attribute the attribute of the control
+ * @param relation the relation of the attributes, one of <code>EQUAL</code>, <code>LESS_OR_EQUAL</code> or <code>GREATER_OR_EQUAL</code>
+ * @param other the other control, or null for the composite
+ * @param otherAttribute the attribute of the other control, or <code>SWT.NONE</code> to relate the attribute to the offset
+ * @param offset the offset in pixels
+ *
+ * @see #add(Control, int, int, Control, int, double, int, int)
+ */
+public void add (Control control, int attribute, int relation, Control other, int otherAttribute, int offset) {
+	add (control, attribute, relation, other, otherAttribute, 1, offset, REQUIRED);
+}
+
+/**
+ * Adds a constraint that makes an attribute of a control equal, less than
+ * or greater than an attribute of another control multiplied by the
+ * multiplier plus an offset.
+ *
+ * @param control the control, or null for the composite
+ * @param attribute the attribute of the control
+ * @param relation the relation of the attributes, one of <code>EQUAL</code>, <code>LESS_OR_EQUAL</code> or <code>GREATER_OR_EQUAL</code>
+ * @param other the other control, or null for the composite
+ * @param otherAttribute the attribute of the other control, or <code>SWT.NONE</code> to relate the attribute to the offset
+ * @param multiplier the multiplier of the other attribute
+ * @param offset the offset in pixels
+ * @param strength the strength of the constraint, one of <code>WEAK</code>, <code>MEDIUM</code>, <code>STRONG</code> or <code>REQUIRED</code>
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_INVALID_ARGUMENT - if an attribute, the relation or the strength is not valid</li>
+ * </ul>
+ */
+public void add (Control control, int attribute, int relation, Control other, int otherAttribute, double multiplier, int offset, int strength) {
+	if (attribute < LEFT || attribute > CENTER_Y) SWT.error (SWT.ERROR_INVALID_ARGUMENT);
+	if (otherAttribute != SWT.NONE && (otherAttribute < LEFT || otherAttribute > CENTER_Y)) SWT.error (SWT.ERROR_INVALID_ARGUMENT);
+	if (relation < EQUAL || relation > GREATER_OR_EQUAL) SWT.error (SWT.ERROR_INVALID_ARGUMENT);
+	if (strength < WEAK || strength > REQUIRED) SWT.error (SWT.ERROR_INVALID_ARGUMENT);
+	Constraint constraint = new Constraint ();
+	constraint.control = control;
+	constraint.attribute = attribute;
+	constraint.relation = relation;
+	constraint.other = other;
+	constraint.otherAttribute = otherAttribute;
+	constraint.multiplier = multiplier;
+	constraint.offset = offset;
+	constraint.strength = strength;
+	constraints.addElement (constraint);
+	layoutSolution = sizeSolution = null;
+}
+
+/*
+* Adds the constraint to the tableau, skipping the constraints
+* of controls that are not children of the composite.
+*/
+void add (Solution solution, Constraint constraint) {
+	int index = indexOf (constraint.control);
+	int otherIndex = indexOf (constraint.other);
+	if (index == -1 || otherIndex == -1) return;
+	ConstraintSolver.Symbol [] variables = new ConstraintSolver.Symbol [4];
+	double [] coefficients = new double [4];
+	int count = terms (solution, index, constraint.attribute, 1, variables, coefficients, 0);
+	if (constraint.otherAttribute != SWT.NONE) {
+		count = terms (solution, otherIndex, constraint.otherAttribute, -constraint.multiplier, variables, coefficients, count);
+	}
+	if (count < variables.length) {
+		ConstraintSolver.Symbol [] newVariables = new ConstraintSolver.Symbol [count];
+		System.arraycopy (variables, 0, newVariables, 0, count);
+		variables = newVariables;
+		double [] newCoefficients = new double [count];
+		System.arraycopy (coefficients, 0, newCoefficients, 0, count);
+		coefficients = newCoefficients;
+	}
+	solution.solver.addConstraint (variables, coefficients, -constraint.offset, constraint.relation, strength (constraint.strength));
+}
+
+Solution build (boolean size) {
+	Solution solution = new Solution ();
+	ConstraintSolver solver = solution.solver;
+	int count = children.length;
+	solution.lefts = new ConstraintSolver.Symbol [count];
+	solution.tops = new ConstraintSolver.Symbol [count];
+	solution.widths = new ConstraintSolver.Symbol [count];
+	solution.heights = new ConstraintSolver.Symbol [count];
+	solution.preferredWidths = new int [count];
+	solution.preferredHeights = new int [count];
+	solution.width = solver.createVariable ();
+	solution.height = solver.createVariable ();
+	addRequired (solver, solution.width, GREATER_OR_EQUAL);
+	addRequired (solver, solution.height, GREATER_OR_EQUAL);
+	for (int i=0; i<count; i++) {
+		solution.lefts [i] = solver.createVariable ();
+		solution.tops [i] = solver.createVariable ();
+		solution.widths [i] = solver.createVariable ();
+		solution.heights [i] = solver.createVariable ();
+		addRequired (solver, solution.widths [i], GREATER_OR_EQUAL);
+		addRequired (solver, solution.heights [i], GREATER_OR_EQUAL);
+	}
+	for (int i=0; i<constraints.size (); i++) {
+		add (solution, (Constraint) constraints.elementAt (i));
+	}
+	if (size) {
+		/*
+		* Compute the smallest size of the client area that holds
+		* the children, pulling its width and height to zero.
+		*/
+		for (int i=0; i<count; i++) {
+			ConstraintSolver.Symbol [] variables = new ConstraintSolver.Symbol [] {solution.lefts [i], solution.widths [i], solution.width};
+			solver.addConstraint (variables, new double [] {1, 1, -1}, 0, ConstraintSolver.LESS_OR_EQUAL, strength (STRONG));
+			variables = new ConstraintSolver.Symbol [] {solution.tops [i], solution.heights [i], solution.height};
+			solver.addConstraint (variables, new double [] {1, 1, -1}, 0, ConstraintSolver.LESS_OR_EQUAL, strength (STRONG));
+		}
+		solver.addConstraint (new ConstraintSolver.Symbol [] {solution.width}, new double [] {1}, 0, ConstraintSolver.EQUAL, MINIMUM);
+		solver.addConstraint (new ConstraintSolver.Symbol [] {solution.height}, new double [] {1}, 0, ConstraintSolver.EQUAL, MINIMUM);
+	} else {
+		solver.addEditVariable (solution.width, strength (STRONG));
+		solver.addEditVariable (solution.height, strength (STRONG));
+	}
+	for (int i=0; i<count; i++) {
+		solver.addEditVariable (solution.widths [i], strength (MEDIUM));
+		solver.addEditVariable (solution.heights [i], strength (MEDIUM));
+	}
+	return solution;
+}
+
+static void addRequired (ConstraintSolver solver, ConstraintSolver.Symbol variable, int relation) {
+	solver.addConstraint (new ConstraintSolver.Symbol [] {variable}, new double [] {1}, 0, relation, ConstraintSolver.REQUIRED);
+}
+
+protected Point computeSize (Composite composite, int wHint, int hHint, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, false);
+	try {
+		if (!isCurrent (composite)) update (composite);
+		if (sizeSolution == null) sizeSolution = build (true);
+		suggestSizes (sizeSolution, flushCache);
+		int width = (int) Math.round (sizeSolution.solver.valueOf (sizeSolution.width));
+		int height = (int) Math.round (sizeSolution.solver.valueOf (sizeSolution.height));
+		if (wHint != SWT.DEFAULT) width = wHint;
+		if (hHint != SWT.DEFAULT) height = hHint;
+		return new Point (width, height);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+protected boolean flushCache (Control control) {
+	int index = indexOf (control);
+	if (index > 0) {
+		LayoutStatistics.flush (control);
+		sizes [index - 1].flush ();
+	}
+	return true;
+}
+
+/*
+* Answers the index of the control in the children plus one,
+* zero for the composite, or -1 when it is not a child.
+*/
+int indexOf (Control control) {
+	if (control == null) return 0;
+	if (children == null) return -1;
+	for (int i=0; i<children.length; i++) {
+		if (children [i] == control) return i + 1;
+	}
+	return -1;
+}
+
+boolean isCurrent (Composite composite) {
+	if (composite != this.composite) return false;
+	Control [] children = composite.getChildren ();
+	if (children.length != this.children.length) return false;
+	for (int i=0; i<children.length; i++) {
+		if (children [i] != this.children [i]) return false;
+	}
+	return true;
+}
+
+protected void layout (Composite composite, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, true);
+	try {
+		if (!isCurrent (composite)) update (composite);
+		if (layoutSolution == null) layoutSolution = build (false);
+		Rectangle rect = composite.getClientArea ();
+		ConstraintSolver solver = layoutSolution.solver;
+		if (rect.width != layoutSolution.clientWidth) {
+			solver.suggestValue (layoutSolution.width, layoutSolution.clientWidth = rect.width);
+		}
+		if (rect.height != layoutSolution.clientHeight) {
+			solver.suggestValue (layoutSolution.height, layoutSolution.clientHeight = rect.height);
+		}
+		suggestSizes (layoutSolution, flushCache);
+		for (int i=0; i<children.length; i++) {
+			int x = (int) Math.round (solver.valueOf (layoutSolution.lefts [i]));
+			int y = (int) Math.round (solver.valueOf (layoutSolution.tops [i]));
+			int width = (int) Math.round (solver.valueOf (layoutSolution.widths [i]));
+			int height = (int) Math.round (solver.valueOf (layoutSolution.heights [i]));
+			children [i].setBounds (rect.x + x, rect.y + y, Math.max (0, width), Math.max (0, height));
+		}
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+/**
+ * Removes the constraints of a control.
+ *
+ * @param control the control, or null for the composite
+ */
+public void remove (Control control) {
+	for (int i=constraints.size () - 1; i>=0; i--) {
+		Constraint constraint = (Constraint) constraints.elementAt (i);
+		if (constraint.control == control || (constraint.other == control && constraint.otherAttribute != SWT.NONE)) {
+			constraints.removeElementAt (i);
+		}
+	}
+	layoutSolution = sizeSolution = null;
+}
+
+/**
+ * Removes all the constraints.
+ */
+public void removeAll () {
+	constraints.removeAllElements ();
+	layoutSolution = sizeSolution = null;
+}
+
+static double strength (int strength) {
+	switch (strength) {
+		case WEAK: return 1;
+		case MEDIUM: return 1000;
+		case STRONG: return 1000000;
+	}
+	return ConstraintSolver.REQUIRED;
+}
+
+/*
+* Suggests the preferred sizes of the children that changed
+* since they were last given to the tableau.
+*/
+void suggestSizes (Solution solution, boolean flushCache) {
+	ConstraintSolver solver = solution.solver;
+	for (int i=0; i<children.length; i++) {
+		Point size = sizes [i].computeSize (children [i], SWT.DEFAULT, SWT.DEFAULT, flushCache);
+		if (size.x != solution.preferredWidths [i]) {
+			solver.suggestValue (solution.widths [i], solution.preferredWidths [i] = size.x);
+		}
+		if (size.y != solution.preferredHeights [i]) {
+			solver.suggestValue (solution.heights [i], solution.preferredHeights [i] = size.y);
+		}
+	}
+}
+
+/*
+* Appends the terms of an attribute of the control at the index,
+* zero for the composite, multiplied by the factor.
+*/
+int terms (Solution solution, int index, int attribute, double factor, ConstraintSolver.Symbol [] variables, double [] coefficients, int count) {
+	ConstraintSolver.Symbol left = null, top = null, width, height;
+	if (index == 0) {
+		width = solution.width;
+		height = solution.height;
+	} else {
+		left = solution.lefts [index - 1];
+		top = solution.tops [index - 1];
+		width = solution.widths [index - 1];
+		height = solution.heights [index - 1];
+	}
+	double half = factor / 2;
+	switch (attribute) {
+		case LEFT:
+			if (left != null) count = term (left, factor, variables, coefficients, count);
+			break;
+		case RIGHT:
+			if (left != null) count = term (left, factor, variables, coefficients, count);
+			count = term (width, factor, variables, coefficients, count);
+			break;
+		case CENTER_X:
+			if (left != null) count = term (left, factor, variables, coefficients, count);
+			count = term (width, half, variables, coefficients, count);
+			break;
+		case WIDTH:
+			count = term (width, factor, variables, coefficients, count);
+			break;
+		case TOP:
+			if (top != null) count = term (top, factor, variables, coefficients, count);
+			break;
+		case BOTTOM:
+			if (top != null) count = term (top, factor, variables, coefficients, count);
+			count = term (height, factor, variables, coefficients, count);
+			break;
+		case CENTER_Y:
+			if (top != null) count = term (top, factor, variables, coefficients, count);
+			count = term (height, half, variables, coefficients, count);
+			break;
+		case HEIGHT:
+			count = term (height, factor, variables, coefficients, count);
+			break;
+	}
+	return count;
+}
+
+static int term (ConstraintSolver.Symbol variable, double coefficient, ConstraintSolver.Symbol [] variables, double [] coefficients, int count) {
+	for (int i=0; i<count; i++) {
+		if (variables [i] == variable) {
+			coefficients [i] += coefficient;
+			return count;
+		}
+	}
+	variables [count] = variable;
+	coefficients [count] = coefficient;
+	return count + 1;
+}
+
+/**
+ * Returns a string containing a concise, human-readable
+ * description of the receiver.
+ *
+ * @return a string representation of the layout
+ */
+public String toString () {
+	return "ConstraintLayout {constraints="+constraints.size ()+"}";
+}
+
+void update (Composite composite) {
+	Control [] children = composite.getChildren ();
+	SizeCache [] sizes = new SizeCache [children.length];
+	for (int i=0; i<children.length; i++) {
+		int index = indexOf (children [i]);
+		sizes [i] = index > 0 ? this.sizes [index - 1] : new SizeCache ();
+	}
+	this.composite = composite;
+	this.children = children;
+	this.sizes = sizes;
+	layoutSolution = sizeSolution = null;
+}
+}
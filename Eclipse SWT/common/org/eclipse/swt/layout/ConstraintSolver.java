@@ -0,0 +1,457 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.layout;
+
+import java.util.*;
+
+/**
+ * An incremental solver of linear equalities and inequalities with
+ * strengths, based on the Cassowary algorithm.
+ * <p>
+ * The constraints are kept in a simplex tableau whose objective is to
+ * minimize the errors of the constraints that are not required, weighted
+ * by their strength.  Adding a constraint only pivots the rows that it
+ * touches.  The value of an edit variable is changed by changing the
+ * constant of its edit constraint and restoring the feasibility of the
+ * tableau with the dual simplex, so a new value only costs the pivots
+ * it needs.
+ * </p>
+ */
+class ConstraintSolver {
+	Hashtable rows = new Hashtable ();	// Symbol -> Row, the rows of the basic symbols
+	Hashtable edits = new Hashtable ();	// Symbol -> Edit
+	Vector infeasible = new Vector ();
+	Row objective = new Row (0), artificial;
+	int nextId;
+
+	static final int EXTERNAL = 0;
+	static final int SLACK = 1;
+	static final int ERROR = 2;
+	static final int DUMMY = 3;
+
+	static final int EQUAL = 0;
+	static final int LESS_OR_EQUAL = 1;
+	static final int GREATER_OR_EQUAL = 2;
+
+	static final double REQUIRED = 1001001000;
+	static final double EPSILON = 1.0e-8;
+
+	static class Symbol {
+		int id, type;
+
+		Symbol (int id, int type) {
+			this.id = id;
+			this.type = type;
+		}
+	}
+
+	/*
+	* The markers of a constraint identify its row in the tableau, the
+	* slack or the positive error for the marker and the negative error
+	* of an equality for the other.
+	*/
+	static class Tag {
+		Symbol marker, other;
+	}
+
+	static class Edit {
+		Tag tag;
+		double constant;
+	}
+
+	/*
+	* A row is the value of its basic symbol, which is its constant
+	* plus the sum of its symbols multiplied by their coefficients.
+	*/
+	static class Row {
+		Symbol [] symbols = new Symbol [4];
+		double [] coefficients = new double [4];
+		int count;
+		double constant;
+
+		Row (double constant) {
+			this.constant = constant;
+		}
+
+		Row (Row row) {
+			symbols = new Symbol [row.symbols.length];
+			coefficients = new double [row.coefficients.length];
+			System.arraycopy (row.symbols, 0, symbols, 0, row.count);
+			System.arraycopy (row.coefficients, 0, coefficients, 0, row.count);
+			count = row.count;
+			constant = row.constant;
+		}
+
+		double coefficientFor (Symbol symbol) {
+			int index = indexOf (symbol);
+			return index == -1 ? 0 : coefficients [index];
+		}
+
+		int indexOf (Symbol symbol) {
+			for (int i=0; i<count; i++) {
+				if (symbols [i] == symbol) return i;
+			}
+			return -1;
+		}
+
+		void insert (Symbol symbol, double coefficient) {
+			int index = indexOf (symbol);
+			if (index != -1) {
+				coefficients [index] += coefficient;
+				if (nearZero (coefficients [index])) removeAt (index);
+				return;
+			}
+			if (nearZero (coefficient)) return;
+			if (count == symbols.length) {
+				Symbol [] newSymbols = new Symbol [count * 2];
+				System.arraycopy (symbols, 0, newSymbols, 0, count);
+				symbols = newSymbols;
+				double [] newCoefficients = new double [count * 2];
+				System.arraycopy (coefficients, 0, newCoefficients, 0, count);
+				coefficients = newCoefficients;
+			}
+			symbols [count] = symbol;
+			coefficients [count++] = coefficient;
+		}
+
+		void insert (Row row, double coefficient) {
+			constant += row.constant * coefficient;
+			for (int i=0; i<row.count; i++) {
+				insert (row.symbols [i], row.coefficients [i] * coefficient);
+			}
+		}
+
+		void remove (Symbol symbol) {
+			int index = indexOf (symbol);
+			if (index != -1) removeAt (index);
+		}
+
+		void removeAt (int index) {
+			count--;
+			symbols [index] = symbols [count];
+			coefficients [index] = coefficients [count];
+			symbols [count] = null;
+		}
+
+		void reverseSign () {
+			constant = -constant;
+			for (int i=0; i<count; i++) {
+				coefficients [i] = -coefficients [i];
+			}
+		}
+
+		/*
+		* Solves the row, which equals zero, for the symbol,
+		* making the row the value of the symbol.
+		*/
+		void solveFor (Symbol symbol) {
+			int index = indexOf (symbol);
+			double coefficient = -1 / coefficients [index];
+			removeAt (index);
+			constant *= coefficient;
+			for (int i=0; i<count; i++) {
+				coefficients [i] *= coefficient;
+			}
+		}
+
+		/*
+		* Solves the row, which is the value of lhs, for rhs.
+		*/
+		void solveFor (Symbol lhs, Symbol rhs) {
+			insert (lhs, -1);
+			solveFor (rhs);
+		}
+
+		void substitute (Symbol symbol, Row row) {
+			int index = indexOf (symbol);
+			if (index != -1) {
+				double coefficient = coefficients [index];
+				removeAt (index);
+				insert (row, coefficient);
+			}
+		}
+	}
+
+static boolean nearZero (double value) {
+	return value < 0 ? -value < EPSILON : value < EPSILON;
+}
+
+/**
+ * Adds the constraint whose expression is the sum of the variables
+ * multiplied by their coefficients plus the constant, and which relates
+ * the expression to zero.  Returns the tag of the constraint, or null
+ * when it is required and cannot be satisfied.
+ */
+Tag addConstraint (Symbol [] variables, double [] coefficients, double constant, int relation, double strength) {
+	Tag tag = new Tag ();
+	Row row = createRow (variables, coefficients, constant, relation, strength, tag);
+	Symbol subject = chooseSubject (row, tag);
+	if (subject == null && allDummies (row)) {
+		if (!nearZero (row.constant)) return null;
+		subject = tag.marker;
+	}
+	if (subject == null) {
+		if (!addWithArtificialVariable (row)) return null;
+	} else {
+		row.solveFor (subject);
+		substitute (subject, row);
+		rows.put (subject, row);
+	}
+	optimize (objective);
+	return tag;
+}
+
+/**
+ * Adds an edit variable, whose value can then be suggested.
+ * An edit variable cannot be required.
+ */
+void addEditVariable (Symbol variable, double strength) {
+	Edit edit = new Edit ();
+	edit.tag = addConstraint (new Symbol [] {variable}, new double [] {1}, 0, EQUAL, Math.min (strength, REQUIRED - 1));
+	edits.put (variable, edit);
+}
+
+/*
+* Adds a row that has no subject by minimizing an artificial variable
+* that is its value.  Answers whether the row could be satisfied.
+*/
+boolean addWithArtificialVariable (Row row) {
+	Symbol symbol = createSymbol (SLACK);
+	rows.put (symbol, new Row (row));
+	artificial = new Row (row);
+	optimize (artificial);
+	boolean success = nearZero (artificial.constant);
+	artificial = null;
+	Row basic = (Row) rows.remove (symbol);
+	if (basic != null) {
+		if (basic.count == 0) return success;
+		Symbol entering = null;
+		for (int i=0; i<basic.count; i++) {
+			Symbol candidate = basic.symbols [i];
+			if (candidate.type == SLACK || candidate.type == ERROR) {
+				if (entering == null || candidate.id < entering.id) entering = candidate;
+			}
+		}
+		if (entering == null) return false;
+		basic.solveFor (symbol, entering);
+		substitute (entering, basic);
+		rows.put (entering, basic);
+	}
+	Enumeration elements = rows.elements ();
+	while (elements.hasMoreElements ()) {
+		((Row) elements.nextElement ()).remove (symbol);
+	}
+	objective.remove (symbol);
+	return success;
+}
+
+static boolean allDummies (Row row) {
+	for (int i=0; i<row.count; i++) {
+		if (row.symbols [i].type != DUMMY) return false;
+	}
+	return true;
+}
+
+/*
+* Chooses the symbol that the row of a new constraint is solved
+* for, which is an external variable if there is one, or else a
+* slack or error symbol of the constraint with a negative
+* coefficient.
+*/
+static Symbol chooseSubject (Row row, Tag tag) {
+	for (int i=0; i<row.count; i++) {
+		if (row.symbols [i].type == EXTERNAL) return row.symbols [i];
+	}
+	if (tag.marker.type == SLACK || tag.marker.type == ERROR) {
+		if (row.coefficientFor (tag.marker) < 0) return tag.marker;
+	}
+	if (tag.other != null && (tag.other.type == SLACK || tag.other.type == ERROR)) {
+		if (row.coefficientFor (tag.other) < 0) return tag.other;
+	}
+	return null;
+}
+
+Row createRow (Symbol [] variables, double [] coefficients, double constant, int relation, double strength, Tag tag) {
+	Row row = new Row (constant);
+	for (int i=0; i<variables.length; i++) {
+		if (nearZero (coefficients [i])) continue;
+		Row basic = (Row) rows.get (variables [i]);
+		if (basic != null) {
+			row.insert (basic, coefficients [i]);
+		} else {
+			row.insert (variables [i], coefficients [i]);
+		}
+	}
+	if (relation == EQUAL) {
+		if (strength < REQUIRED) {
+			Symbol plus = createSymbol (ERROR), minus = createSymbol (ERROR);
+			tag.marker = plus;
+			tag.other = minus;
+			row.insert (plus, -1);
+			row.insert (minus, 1);
+			objective.insert (plus, strength);
+			objective.insert (minus, strength);
+		} else {
+			Symbol dummy = createSymbol (DUMMY);
+			tag.marker = dummy;
+			row.insert (dummy, 1);
+		}
+	} else {
+		double coefficient = relation == LESS_OR_EQUAL ? 1 : -1;
+		Symbol slack = createSymbol (SLACK);
+		tag.marker = slack;
+		row.insert (slack, coefficient);
+		if (strength < REQUIRED) {
+			Symbol error = createSymbol (ERROR);
+			tag.other = error;
+			row.insert (error, -coefficient);
+			objective.insert (error, strength);
+		}
+	}
+	if (row.constant < 0) row.reverseSign ();
+	return row;
+}
+
+Symbol createSymbol (int type) {
+	return new Symbol (nextId++, type);
+}
+
+/**
+ * Answers a new variable.
+ */
+Symbol createVariable () {
+	return createSymbol (EXTERNAL);
+}
+
+/*
+* Restores the feasibility of the rows whose constant became
+* negative, keeping the tableau optimal.
+*/
+void dualOptimize () {
+	while (infeasible.size () > 0) {
+		Symbol leaving = (Symbol) infeasible.lastElement ();
+		infeasible.removeElementAt (infeasible.size () - 1);
+		Row row = (Row) rows.get (leaving);
+		if (row == null || row.constant >= 0) continue;
+		Symbol entering = null;
+		double ratio = Double.MAX_VALUE;
+		for (int i=0; i<row.count; i++) {
+			Symbol symbol = row.symbols [i];
+			double coefficient = row.coefficients [i];
+			if (coefficient > 0 && symbol.type != DUMMY) {
+				double r = objective.coefficientFor (symbol) / coefficient;
+				if (entering == null || r < ratio || (r == ratio && symbol.id < entering.id)) {
+					ratio = r;
+					entering = symbol;
+				}
+			}
+		}
+		if (entering == null) return;
+		rows.remove (leaving);
+		row.solveFor (leaving, entering);
+		substitute (entering, row);
+		rows.put (entering, row);
+	}
+}
+
+/*
+* Pivots the tableau until the objective is minimal, entering the
+* symbol of lowest id with a negative coefficient in the objective.
+*/
+void optimize (Row objective) {
+	while (true) {
+		Symbol entering = null;
+		for (int i=0; i<objective.count; i++) {
+			Symbol symbol = objective.symbols [i];
+			if (objective.coefficients [i] < 0 && symbol.type != DUMMY) {
+				if (entering == null || symbol.id < entering.id) entering = symbol;
+			}
+		}
+		if (entering == null) return;
+		Symbol leaving = null;
+		double ratio = Double.MAX_VALUE;
+		Enumeration keys = rows.keys ();
+		while (keys.hasMoreElements ()) {
+			Symbol symbol = (Symbol) keys.nextElement ();
+			if (symbol.type == EXTERNAL) continue;
+			Row row = (Row) rows.get (symbol);
+			double coefficient = row.coefficientFor (entering);
+			if (coefficient < 0) {
+				double r = -row.constant / coefficient;
+				if (leaving == null || r < ratio || (r == ratio && symbol.id < leaving.id)) {
+					ratio = r;
+					leaving = symbol;
+				}
+			}
+		}
+		/* The objective is unbounded, which cannot happen since errors are positive */
+		if (leaving == null) return;
+		Row row = (Row) rows.remove (leaving);
+		row.solveFor (leaving, entering);
+		substitute (entering, row);
+		rows.put (entering, row);
+	}
+}
+
+void substitute (Symbol symbol, Row row) {
+	Enumeration keys = rows.keys ();
+	while (keys.hasMoreElements ()) {
+		Symbol basic = (Symbol) keys.nextElement ();
+		Row basicRow = (Row) rows.get (basic);
+		basicRow.substitute (symbol, row);
+		if (basic.type != EXTERNAL && basicRow.constant < 0) infeasible.addElement (basic);
+	}
+	objective.substitute (symbol, row);
+	if (artificial != null) artificial.substitute (symbol, row);
+}
+
+/**
+ * Suggests the value of an edit variable.
+ */
+void suggestValue (Symbol variable, double value) {
+	Edit edit = (Edit) edits.get (variable);
+	if (edit == null || edit.tag == null) return;
+	double delta = value - edit.constant;
+	if (delta == 0) return;
+	edit.constant = value;
+	Row row = (Row) rows.get (edit.tag.marker);
+	if (row != null) {
+		row.constant -= delta;
+		if (row.constant < 0) infeasible.addElement (edit.tag.marker);
+	} else {
+		row = (Row) rows.get (edit.tag.other);
+		if (row != null) {
+			row.constant += delta;
+			if (row.constant < 0) infeasible.addElement (edit.tag.other);
+		} else {
+			Enumeration keys = rows.keys ();
+			while (keys.hasMoreElements ()) {
+				Symbol basic = (Symbol) keys.nextElement ();
+				Row basicRow = (Row) rows.get (basic);
+				double coefficient = basicRow.coefficientFor (edit.tag.marker);
+				if (coefficient != 0) {
+					basicRow.constant += delta * coefficient;
+					if (basicRow.constant < 0 && basic.type != EXTERNAL) infeasible.addElement (basic);
+				}
+			}
+		}
+	}
+	dualOptimize ();
+}
+
+/**
+ * Answers the value of a variable in the current solution.
+ */
+double valueOf (Symbol variable) {
+	Row row = (Row) rows.get (variable);
+	return row != null ? row.constant : 0;
+}
+}
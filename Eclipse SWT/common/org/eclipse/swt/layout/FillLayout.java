@@ -105,6 +105,15 @@ public FillLayout (int type) {
 }
 
 protected Point computeSize (Composite composite, int wHint, int hHint, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, false);
+	try {
+		return computeLayoutSize (composite, wHint, hHint, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+Point computeLayoutSize (Composite composite, int wHint, int hHint, boolean flushCache) {
 	Control [] children = composite.getChildren ();
 	int count = children.length;
 	int maxWidth = 0, maxHeight = 0;
@@ -168,7 +177,10 @@ Point computeChildSize (Control control, int wHint, int hHint, boolean flushCach
 
 protected boolean flushCache (Control control) {
 	Object data = control.getLayoutData();
-	if (data != null) ((FillData)data).flushCache();
+	if (data != null) {
+		LayoutStatistics.flush (control);
+		((FillData)data).flushCache();
+	}
 	return true;
 }
 
@@ -180,6 +192,15 @@ String getName () {
 }
 
 protected void layout (Composite composite, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, true);
+	try {
+		layoutChildren (composite, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+void layoutChildren (Composite composite, boolean flushCache) {
 	Rectangle rect = composite.getClientArea ();
 	Control [] children = composite.getChildren ();
 	int count = children.length;
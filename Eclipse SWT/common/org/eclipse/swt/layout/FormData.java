@@ -85,8 +85,7 @@ public final class FormData {
 	public FormAttachment bottom;
 	
 	int cacheWidth = -1, cacheHeight = -1;
-	int defaultWhint, defaultHhint, defaultWidth = -1, defaultHeight = -1;
-	int currentWhint, currentHhint, currentWidth = -1, currentHeight = -1;
+	SizeCache sizes = new SizeCache ();
 	FormAttachment cacheLeft, cacheRight, cacheTop, cacheBottom;
 	boolean isVisited, needed;
 	
@@ -111,34 +110,18 @@ public FormData (int width, int height) {
 }
 
 void computeSize (Control control, int wHint, int hHint, boolean flushCache) {
-	if (cacheWidth != -1 && cacheHeight != -1) return;
-	if (wHint == this.width && hHint == this.height) {
-		if (defaultWidth == -1 || defaultHeight == -1 || wHint != defaultWhint || hHint != defaultHhint) {
-			Point size =  control.computeSize (wHint, hHint, flushCache);
-			defaultWhint = wHint;
-			defaultHhint = hHint;
-			defaultWidth = size.x;
-			defaultHeight = size.y;
-		}
-		cacheWidth = defaultWidth;
-		cacheHeight = defaultHeight;
+	if (cacheWidth != -1 && cacheHeight != -1) {
+		LayoutStatistics.cacheHit (control);
 		return;
 	}
-	if (currentWidth == -1 || currentHeight == -1 || wHint != currentWhint || hHint != currentHhint) {
-		Point size =  control.computeSize (wHint, hHint, flushCache);
-		currentWhint = wHint;
-		currentHhint = hHint;
-		currentWidth = size.x;
-		currentHeight = size.y;
-	}
-	cacheWidth = currentWidth;
-	cacheHeight = currentHeight;
+	Point size = sizes.computeSize (control, wHint, hHint, flushCache);
+	cacheWidth = size.x;
+	cacheHeight = size.y;
 }
 
 void flushCache () {
 	cacheWidth = cacheHeight = -1;
-	defaultHeight = defaultWidth = -1;
-	currentHeight = currentWidth = -1;
+	sizes.flush ();
 }
 
 int getWidth (Control control, boolean flushCache) {
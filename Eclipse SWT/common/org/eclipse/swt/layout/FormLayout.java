@@ -238,6 +238,15 @@ int computeHeight (Control control, FormData data, boolean flushCache) {
 }
 
 protected Point computeSize (Composite composite, int wHint, int hHint, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, false);
+	try {
+		return computeLayoutSize (composite, wHint, hHint, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+Point computeLayoutSize (Composite composite, int wHint, int hHint, boolean flushCache) {
 	Point size = layout (composite, false, 0, 0, wHint, hHint, flushCache);
 	if (wHint != SWT.DEFAULT) size.x = wHint;
 	if (hHint != SWT.DEFAULT) size.y = hHint;
@@ -246,7 +255,10 @@ protected Point computeSize (Composite composite, int wHint, int hHint, boolean
 
 protected boolean flushCache (Control control) {
 	Object data = control.getLayoutData ();
-	if (data != null) ((FormData) data).flushCache ();
+	if (data != null) {
+		LayoutStatistics.flush (control);
+		((FormData) data).flushCache ();
+	}
 	return true;
 }
 
@@ -278,6 +290,15 @@ int computeWidth (Control control, FormData data, boolean flushCache) {
 }
 
 protected void layout (Composite composite, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, true);
+	try {
+		layoutChildren (composite, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+void layoutChildren (Composite composite, boolean flushCache) {
 	Rectangle rect = composite.getClientArea ();
 	int x = rect.x + marginLeft + marginWidth;
 	int y = rect.y + marginTop + marginHeight;
@@ -292,7 +313,10 @@ Point layout (Composite composite, boolean move, int x, int y, int width, int he
 		Control child = children [i];
 		FormData data = (FormData) child.getLayoutData ();
 		if (data == null) child.setLayoutData (data = new FormData ());
-		if (flushCache) data.flushCache ();
+		if (flushCache) {
+			LayoutStatistics.flush (child);
+			data.flushCache ();
+		}
 		data.cacheLeft = data.cacheRight = data.cacheTop = data.cacheBottom = null;
 	}
 	boolean [] flush = null;
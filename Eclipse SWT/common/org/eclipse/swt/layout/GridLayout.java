@@ -159,6 +159,15 @@ public GridLayout (int numColumns, boolean makeColumnsEqualWidth) {
 }
 
 protected Point computeSize (Composite composite, int wHint, int hHint, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, false);
+	try {
+		return computeLayoutSize (composite, wHint, hHint, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+Point computeLayoutSize (Composite composite, int wHint, int hHint, boolean flushCache) {
 	Point size = layout (composite, false, 0, 0, wHint, hHint, flushCache);
 	if (wHint != SWT.DEFAULT) size.x = wHint;
 	if (hHint != SWT.DEFAULT) size.y = hHint;
@@ -167,7 +176,10 @@ protected Point computeSize (Composite composite, int wHint, int hHint, boolean
 
 protected boolean flushCache (Control control) {
 	Object data = control.getLayoutData ();
-	if (data != null) ((GridData) data).flushCache ();
+	if (data != null) {
+		LayoutStatistics.flush (control);
+		((GridData) data).flushCache ();
+	}
 	return true;
 }
 
@@ -189,6 +201,15 @@ GridData getData (Control [][] grid, int row, int column, int rowCount, int colu
 }
 
 protected void layout (Composite composite, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, true);
+	try {
+		layoutChildren (composite, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+void layoutChildren (Composite composite, boolean flushCache) {
 	Rectangle rect = composite.getClientArea ();
 	layout (composite, true, rect.x, rect.y, rect.width, rect.height, flushCache);
 }
@@ -213,7 +234,10 @@ Point layout (Composite composite, boolean move, int x, int y, int width, int he
 		Control child = children [i];
 		GridData data = (GridData) child.getLayoutData ();
 		if (data == null) child.setLayoutData (data = new GridData ());
-		if (flushCache) data.flushCache ();
+		if (flushCache) {
+			LayoutStatistics.flush (child);
+			data.flushCache ();
+		}
 		data.computeSize (child, data.widthHint, data.heightHint, flushCache);
 		if (data.grabExcessHorizontalSpace && data.minimumWidth > 0) {
 			if (data.cacheWidth < data.minimumWidth) {
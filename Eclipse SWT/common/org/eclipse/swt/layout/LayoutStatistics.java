@@ -0,0 +1,369 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.layout;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import org.eclipse.swt.*;
+import org.eclipse.swt.graphics.*;
+import org.eclipse.swt.widgets.*;
+
+/**
+ * Instances of this class record the time that the layouts of this
+ * package spend laying out a composite, and how the children of the
+ * composite were measured.
+ * <p>
+ * Statistics are only recorded while they are enabled, either with
+ * <code>setEnabled()</code> or the
+ * <code>org.eclipse.swt.layout.LayoutStatistics.enabled</code> system
+ * property.  The statistics of a composite can be read from its fields,
+ * or all of them dumped as a tree that follows the nesting of the
+ * composites.  Statistics are recorded and read in the user-interface
+ * thread, and the statistics of a composite are forgotten when it is
+ * disposed.
+ * </p>
+ *
+ * @see <a href="http://www.eclipse.org/swt/">Sample code and further information</a>
+ *
+ * @since 3.6
+ */
+public final class LayoutStatistics {
+	/**
+	 * the composite that was laid out
+	 */
+	public Composite composite;
+
+	/**
+	 * the name of the layout of the composite
+	 */
+	public String layout;
+
+	/**
+	 * the number of times the composite was laid out
+	 */
+	public int layoutCount;
+
+	/**
+	 * the number of times the size of the composite was computed
+	 */
+	public int sizeCount;
+
+	/**
+	 * the time in nanoseconds spent laying out the composite and
+	 * computing its size, including the time of the composites
+	 * it contains
+	 */
+	public long time;
+
+	/**
+	 * the time in nanoseconds spent laying out the composite and
+	 * computing its size, excluding the time of the composites
+	 * it contains
+	 */
+	public long selfTime;
+
+	/**
+	 * the number of times the layout asked a child for its size
+	 */
+	public int computeSizeCount;
+
+	/**
+	 * the number of sizes of the children that were found in the caches
+	 * of the layout data
+	 */
+	public int cacheHits;
+
+	/**
+	 * the number of sizes of the children that were not found in the
+	 * caches of the layout data and were asked to the child
+	 */
+	public int cacheMisses;
+
+	/**
+	 * the number of times the caches of the layout data of the
+	 * children were flushed
+	 */
+	public int cacheFlushes;
+
+	static boolean Enabled = Boolean.getBoolean ("org.eclipse.swt.layout.LayoutStatistics.enabled"); //$NON-NLS-1$
+	static Hashtable Statistics = new Hashtable ();
+	static LayoutStatistics [] Stack = new LayoutStatistics [16];
+	static long [] Starts = new long [16], ChildTimes = new long [16];
+	static int Depth;
+	static Listener DisposeListener = new Listener () {
+		public void handleEvent (Event event) {
+			Statistics.remove (event.widget);
+		}
+	};
+	static Method NanoTime;
+	static {
+		/* System.nanoTime() is not available in all class libraries */
+		try {
+			NanoTime = System.class.getMethod ("nanoTime", new Class [0]); //$NON-NLS-1$
+		} catch (Throwable e) {}
+	}
+
+LayoutStatistics (Composite composite) {
+	this.composite = composite;
+	layout = getName (composite.getLayout ());
+}
+
+/**
+ * Starts a layout or a size computation of the composite, and answers
+ * its statistics, or null when the statistics are not enabled.
+ */
+static LayoutStatistics begin (Composite composite, boolean move) {
+	if (!Enabled) return null;
+	LayoutStatistics statistics = get (composite);
+	if (move) {
+		statistics.layoutCount++;
+	} else {
+		statistics.sizeCount++;
+	}
+	if (Depth == Stack.length) {
+		LayoutStatistics [] newStack = new LayoutStatistics [Depth * 2];
+		System.arraycopy (Stack, 0, newStack, 0, Depth);
+		Stack = newStack;
+		long [] newStarts = new long [Depth * 2];
+		System.arraycopy (Starts, 0, newStarts, 0, Depth);
+		Starts = newStarts;
+		long [] newChildTimes = new long [Depth * 2];
+		System.arraycopy (ChildTimes, 0, newChildTimes, 0, Depth);
+		ChildTimes = newChildTimes;
+	}
+	Stack [Depth] = statistics;
+	ChildTimes [Depth] = 0;
+	Starts [Depth++] = nanoTime ();
+	return statistics;
+}
+
+/**
+ * Records that the size of the control was found in the cache of
+ * its layout data.
+ */
+static void cacheHit (Control control) {
+	if (!Enabled) return;
+	LayoutStatistics statistics = get (control.getParent ());
+	statistics.cacheHits++;
+}
+
+/**
+ * Asks the control for its size when it was not found in the cache
+ * of its layout data, and records it.
+ */
+static Point computeSize (Control control, int wHint, int hHint, boolean flushCache) {
+	if (Enabled) {
+		LayoutStatistics statistics = get (control.getParent ());
+		statistics.computeSizeCount++;
+		statistics.cacheMisses++;
+	}
+	return control.computeSize (wHint, hHint, flushCache);
+}
+
+/**
+ * Ends the layout or the size computation that answered the statistics.
+ */
+static void end (LayoutStatistics statistics) {
+	if (statistics == null || Depth == 0) return;
+	int index = --Depth;
+	long time = nanoTime () - Starts [index];
+	statistics.time += time;
+	statistics.selfTime += time - ChildTimes [index];
+	Stack [index] = null;
+	if (index > 0) ChildTimes [index - 1] += time;
+}
+
+/**
+ * Records that the cache of the layout data of the control was flushed.
+ */
+static void flush (Control control) {
+	if (!Enabled) return;
+	LayoutStatistics statistics = get (control.getParent ());
+	statistics.cacheFlushes++;
+}
+
+static LayoutStatistics get (Composite composite) {
+	if (Depth > 0 && Stack [Depth - 1].composite == composite) return Stack [Depth - 1];
+	LayoutStatistics statistics = (LayoutStatistics) Statistics.get (composite);
+	if (statistics == null) {
+		statistics = new LayoutStatistics (composite);
+		if (!composite.isDisposed ()) {
+			composite.addListener (SWT.Dispose, DisposeListener);
+			Statistics.put (composite, statistics);
+		}
+	}
+	return statistics;
+}
+
+static String getName (Object object) {
+	if (object == null) return null;
+	String string = object.getClass ().getName ();
+	int index = string.lastIndexOf ('.');
+	if (index == -1) return string;
+	return string.substring (index + 1, string.length ());
+}
+
+/**
+ * Returns the statistics of all the composites that were laid out since
+ * the statistics were reset and are not disposed.
+ *
+ * @return the statistics of the composites
+ */
+public static LayoutStatistics [] getStatistics () {
+	LayoutStatistics [] array = new LayoutStatistics [Statistics.size ()];
+	Enumeration elements = Statistics.elements ();
+	for (int i=0; i<array.length; i++) {
+		array [i] = (LayoutStatistics) elements.nextElement ();
+	}
+	return array;
+}
+
+/**
+ * Returns the statistics of the composite, or null when it was not
+ * laid out since the statistics were reset.
+ *
+ * @param composite the composite
+ * @return the statistics of the composite or null
+ */
+public static LayoutStatistics getStatistics (Composite composite) {
+	return (LayoutStatistics) Statistics.get (composite);
+}
+
+/**
+ * Returns whether statistics are recorded.
+ *
+ * @return <code>true</code> when the statistics are recorded
+ */
+public static boolean isEnabled () {
+	return Enabled;
+}
+
+static long nanoTime () {
+	if (NanoTime != null) {
+		try {
+			return ((Long) NanoTime.invoke (null, new Object [0])).longValue ();
+		} catch (Throwable e) {
+			NanoTime = null;
+		}
+	}
+	return System.currentTimeMillis () * 1000000;
+}
+
+/**
+ * Returns a string containing the statistics of all the composites,
+ * one per line, each one indented under the nearest composite that
+ * contains it and sorted by time.
+ *
+ * @return the statistics of the composites as a tree
+ */
+public static String dump () {
+	LayoutStatistics [] statistics = getStatistics ();
+	sort (statistics);
+	Hashtable children = new Hashtable ();
+	Vector roots = new Vector ();
+	for (int i=0; i<statistics.length; i++) {
+		Composite parent = statistics [i].composite.getParent ();
+		while (parent != null && !Statistics.containsKey (parent)) {
+			parent = parent.getParent ();
+		}
+		if (parent == null) {
+			roots.addElement (statistics [i]);
+		} else {
+			Vector list = (Vector) children.get (parent);
+			if (list == null) children.put (parent, list = new Vector ());
+			list.addElement (statistics [i]);
+		}
+	}
+	StringBuffer buffer = new StringBuffer ();
+	for (int i=0; i<roots.size (); i++) {
+		dump ((LayoutStatistics) roots.elementAt (i), children, 0, buffer);
+	}
+	return buffer.toString ();
+}
+
+static void dump (LayoutStatistics statistics, Hashtable children, int level, StringBuffer buffer) {
+	for (int i=0; i<level; i++) buffer.append ("  "); //$NON-NLS-1$
+	buffer.append (statistics.toString ());
+	buffer.append ('\n');
+	Vector list = (Vector) children.get (statistics.composite);
+	if (list == null) return;
+	for (int i=0; i<list.size (); i++) {
+		dump ((LayoutStatistics) list.elementAt (i), children, level + 1, buffer);
+	}
+}
+
+/**
+ * Forgets the statistics of all the composites.
+ */
+public static void reset () {
+	Enumeration elements = Statistics.elements ();
+	while (elements.hasMoreElements ()) {
+		LayoutStatistics statistics = (LayoutStatistics) elements.nextElement ();
+		statistics.composite.removeListener (SWT.Dispose, DisposeListener);
+	}
+	Statistics.clear ();
+	for (int i=0; i<Depth; i++) {
+		Composite composite = Stack [i].composite;
+		if (!composite.isDisposed () && !Statistics.containsKey (composite)) {
+			composite.addListener (SWT.Dispose, DisposeListener);
+			Statistics.put (composite, Stack [i]);
+		}
+	}
+}
+
+/**
+ * Sets whether statistics are recorded.
+ *
+ * @param enabled <code>true</code> to record the statistics
+ */
+public static void setEnabled (boolean enabled) {
+	Enabled = enabled;
+}
+
+static void sort (LayoutStatistics [] statistics) {
+	for (int i=1; i<statistics.length; i++) {
+		LayoutStatistics value = statistics [i];
+		int j = i;
+		while (j > 0 && statistics [j - 1].time < value.time) {
+			statistics [j] = statistics [j - 1];
+			j--;
+		}
+		statistics [j] = value;
+	}
+}
+
+/**
+ * Returns a string containing a concise, human-readable
+ * description of the receiver.
+ *
+ * @return a string representation of the statistics
+ */
+public String toString () {
+	String string = layout+" "+composite+" {";
+	string += "layouts="+layoutCount+" ";
+	string += "sizes="+sizeCount+" ";
+	string += "time="+toMillis (time)+"ms ";
+	string += "self="+toMillis (selfTime)+"ms ";
+	string += "computeSize="+computeSizeCount+" ";
+	string += "hits="+cacheHits+" ";
+	string += "misses="+cacheMisses+" ";
+	string += "flushes="+cacheFlushes;
+	string += "}";
+	return string;
+}
+
+static String toMillis (long time) {
+	long micros = time / 1000;
+	String fraction = String.valueOf (1000 + micros % 1000);
+	return (micros / 1000)+"."+fraction.substring (1);
+}
+}
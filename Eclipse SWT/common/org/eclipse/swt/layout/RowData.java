@@ -68,6 +68,8 @@ public final class RowData {
 	 */
 	public boolean exclude = false;
 	
+	SizeCache sizes = new SizeCache ();
+	
 /**
  * Constructs a new instance of RowData using
  * default values.
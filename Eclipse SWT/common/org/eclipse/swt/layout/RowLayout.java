@@ -199,6 +199,15 @@ public RowLayout (int type) {
 }
 
 protected Point computeSize (Composite composite, int wHint, int hHint, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, false);
+	try {
+		return computeLayoutSize (composite, wHint, hHint, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+Point computeLayoutSize (Composite composite, int wHint, int hHint, boolean flushCache) {
 	Point extent;
 	if (type == SWT.HORIZONTAL) {
 		extent = layoutHorizontal (composite, false, (wHint != SWT.DEFAULT) && wrap, wHint, flushCache);
@@ -211,16 +220,18 @@ protected Point computeSize (Composite composite, int wHint, int hHint, boolean
 }
 
 Point computeSize (Control control, boolean flushCache) {
-	int wHint = SWT.DEFAULT, hHint = SWT.DEFAULT;
 	RowData data = (RowData) control.getLayoutData ();
-	if (data != null) {
-		wHint = data.width;
-		hHint = data.height;
-	}
-	return control.computeSize (wHint, hHint, flushCache);
+	if (data == null) control.setLayoutData (data = new RowData ());
+	if (flushCache) flushCache (control);
+	return data.sizes.computeSize (control, data.width, data.height, flushCache);
 }
 
 protected boolean flushCache (Control control) {
+	Object data = control.getLayoutData ();
+	if (data != null) {
+		LayoutStatistics.flush (control);
+		((RowData) data).sizes.flush ();
+	}
 	return true;
 }
 
@@ -232,6 +243,15 @@ String getName () {
 }
 
 protected void layout (Composite composite, boolean flushCache) {
+	LayoutStatistics statistics = LayoutStatistics.begin (composite, true);
+	try {
+		layoutChildren (composite, flushCache);
+	} finally {
+		LayoutStatistics.end (statistics);
+	}
+}
+
+void layoutChildren (Composite composite, boolean flushCache) {
 	Rectangle clientArea = composite.getClientArea ();
 	if (type == SWT.HORIZONTAL) {
 		layoutHorizontal (composite, true, wrap, clientArea.width, flushCache);
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.layout;
+
+import org.eclipse.swt.graphics.*;
+import org.eclipse.swt.widgets.*;
+
+/**
+ * Caches the sizes that a control computed for the last few pairs
+ * of width and height hints, so that a layout that tries several
+ * widths for a control, such as a wrapping label, does not ask the
+ * control again for a width that it already tried.
+ * <p>
+ * The least recently used size is dropped when the cache is full.  The
+ * layout data of a control owns its cache, which is flushed with the
+ * cache of the layout data when the control or one of its descendants
+ * changed.
+ * </p>
+ */
+class SizeCache {
+	int [] entries;	// wHint, hHint, width and height, the most recently used first
+	int count;
+
+	static final int SIZE = 8;
+
+Point computeSize (Control control, int wHint, int hHint, boolean flushCache) {
+	if (entries == null) entries = new int [SIZE * 4];
+	for (int i=0; i<count; i++) {
+		int index = i * 4;
+		if (entries [index] == wHint && entries [index + 1] == hHint) {
+			int width = entries [index + 2], height = entries [index + 3];
+			if (i != 0) {
+				System.arraycopy (entries, 0, entries, 4, index);
+				entries [0] = wHint;
+				entries [1] = hHint;
+				entries [2] = width;
+				entries [3] = height;
+			}
+			LayoutStatistics.cacheHit (control);
+			return new Point (width, height);
+		}
+	}
+	Point size = LayoutStatistics.computeSize (control, wHint, hHint, flushCache);
+	if (count < SIZE) count++;
+	System.arraycopy (entries, 0, entries, 4, (count - 1) * 4);
+	entries [0] = wHint;
+	entries [1] = hHint;
+	entries [2] = size.x;
+	entries [3] = size.y;
+	return size;
+}
+
+void flush () {
+	count = 0;
+}
+}
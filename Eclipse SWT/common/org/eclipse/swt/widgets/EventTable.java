@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2009 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,133 +19,221 @@ import org.eclipse.swt.internal.SWTEventListener;
  * look up mechanism that maps an event type
  * to a listener.  Multiple listeners for the
  * same event type are supported.
+ * <p>
+ * The listeners of each event type are kept in their
+ * own array, which is never modified once it is shared.
+ * Hooking or unhooking a listener replaces the array of
+ * its event type, so that sending an event iterates the
+ * listeners of the event type only and does not need to
+ * allocate or compact.  A listener that is unhooked while
+ * an event is being sent is not notified of the event, so
+ * the arrays that are being sent are remembered and the
+ * listener is cleared from them as well.
+ * A listener that is hooked while an event is being sent
+ * is notified of the events sent after it was hooked.
+ * </p>
+ * <p>
+ * The arrays of the event types below <code>DIRECT_SIZE</code>,
+ * which include the event types defined in <code>SWT</code>,
+ * are indexed by event type, so that finding them does not
+ * search.  The arrays of the other event types are kept in
+ * a list that is searched.
+ * </p>
  */
 
 class EventTable {
-	int [] types;
-	Listener [] listeners;
-	int level;
+	Listener [][] listeners;	// indexed by event type, for the event types below DIRECT_SIZE
+	int [] types;	// the other event types
+	Listener [][] typeListeners;
+	int count;
+	Listener [][] sending;	// the arrays of the events being sent, innermost last
+	int [] sendingTypes;
+	int sendingCount;
 	static final int GROW_SIZE = 4;
-	
-public Listener [] getListeners (int eventType) {
-	if (types == null) return new Listener [0];
-	int count = 0;
-	for (int i=0; i<types.length; i++) {
-		if (types [i] == eventType) count++;
-	}
-	if (count == 0) return new Listener [0];
-	Listener [] result = new Listener [count];
-	count = 0;
-	for (int i=0; i<types.length; i++) {
-		if (types [i] == eventType) {
-			result [count++] = listeners [i];
-		}
+	static final int DIRECT_SIZE = 64;
+
+Listener [] get (int eventType) {
+	if (0 <= eventType && eventType < DIRECT_SIZE) {
+		return listeners != null && eventType < listeners.length ? listeners [eventType] : null;
+	}
+	int index = indexOf (eventType);
+	return index == -1 ? null : typeListeners [index];
+}
+
+int indexOf (int eventType) {
+	for (int i=0; i<count; i++) {
+		if (types [i] == eventType) return i;
 	}
+	return -1;
+}
+
+public Listener [] getListeners (int eventType) {
+	Listener [] array = get (eventType);
+	if (array == null) return new Listener [0];
+	Listener [] result = new Listener [array.length];
+	System.arraycopy (array, 0, result, 0, array.length);
 	return result;
 }
 
 public void hook (int eventType, Listener listener) {
-	if (types == null) types = new int [GROW_SIZE];
-	if (listeners == null) listeners = new Listener [GROW_SIZE];
-	int length = types.length, index = length - 1;
-	while (index >= 0) {
-		if (types [index] != 0) break;
-		--index;
-	}
-	index++;
-	if (index == length) {
-		int [] newTypes = new int [length + GROW_SIZE];
-		System.arraycopy (types, 0, newTypes, 0, length);
-		types = newTypes;
-		Listener [] newListeners = new Listener [length + GROW_SIZE];
-		System.arraycopy (listeners, 0, newListeners, 0, length);
-		listeners = newListeners;
+	Listener [] array = get (eventType);
+	if (array == null) {
+		set (eventType, new Listener [] {listener});
+		return;
 	}
-	types [index] = eventType;
-	listeners [index] = listener;
+	Listener [] newArray = new Listener [array.length + 1];
+	System.arraycopy (array, 0, newArray, 0, array.length);
+	newArray [array.length] = listener;
+	set (eventType, newArray);
 }
 
 public boolean hooks (int eventType) {
-	if (types == null) return false;
-	for (int i=0; i<types.length; i++) {
-		if (types [i] == eventType) return true;
-	}
-	return false;
+	return get (eventType) != null;
 }
 
 public void sendEvent (Event event) {
-	if (types == null) return;
-	level += level >= 0 ? 1 : -1;
+	int eventType = event.type;
+	Listener [] array = get (eventType);
+	if (array == null) return;
+	if (sending == null) {
+		sending = new Listener [GROW_SIZE][];
+		sendingTypes = new int [GROW_SIZE];
+	}
+	if (sendingCount == sending.length) {
+		Listener [][] newSending = new Listener [sendingCount + GROW_SIZE][];
+		System.arraycopy (sending, 0, newSending, 0, sendingCount);
+		sending = newSending;
+		int [] newTypes = new int [sendingCount + GROW_SIZE];
+		System.arraycopy (sendingTypes, 0, newTypes, 0, sendingCount);
+		sendingTypes = newTypes;
+	}
+	sending [sendingCount] = array;
+	sendingTypes [sendingCount] = eventType;
+	sendingCount++;
 	try {
-		for (int i=0; i<types.length; i++) {
+		for (int i=0; i<array.length; i++) {
 			if (event.type == SWT.None) return;
-			if (types [i] == event.type) {
-				Listener listener = listeners [i];
-				if (listener != null) listener.handleEvent (event);
-			}
+			Listener listener = array [i];
+			if (listener != null) listener.handleEvent (event);
 		}
 	} finally {
-		boolean compact = level < 0;
-		level -= level >= 0 ? 1 : -1;
-		if (compact && level == 0) {
-			int index = 0;
-			for (int i=0; i<types.length; i++) {
-				if (types [i] != 0) {
-					types [index] = types [i];
-					listeners [index] = listeners [i];
-					index++;
-				}
-			}
-			for (int i=index; i<types.length; i++) {
-				types [i] = 0;
-				listeners [i] = null;
-			}
+		sending [--sendingCount] = null;
+	}
+}
+
+/*
+ * Replaces the listeners of the event type, removing the
+ * event type when the array is null.
+ */
+void set (int eventType, Listener [] array) {
+	if (0 <= eventType && eventType < DIRECT_SIZE) {
+		if (listeners == null || eventType >= listeners.length) {
+			if (array == null) return;
+			int length = Math.min (DIRECT_SIZE, (eventType / GROW_SIZE + 1) * GROW_SIZE);
+			Listener [][] newListeners = new Listener [length][];
+			if (listeners != null) System.arraycopy (listeners, 0, newListeners, 0, listeners.length);
+			listeners = newListeners;
 		}
+		listeners [eventType] = array;
+		return;
+	}
+	int index = indexOf (eventType);
+	if (array == null) {
+		if (index == -1) return;
+		System.arraycopy (types, index + 1, types, index, count - index - 1);
+		System.arraycopy (typeListeners, index + 1, typeListeners, index, count - index - 1);
+		count--;
+		types [count] = 0;
+		typeListeners [count] = null;
+		return;
+	}
+	if (index != -1) {
+		typeListeners [index] = array;
+		return;
+	}
+	if (types == null) {
+		types = new int [GROW_SIZE];
+		typeListeners = new Listener [GROW_SIZE][];
 	}
+	if (count == types.length) {
+		int [] newTypes = new int [count + GROW_SIZE];
+		System.arraycopy (types, 0, newTypes, 0, count);
+		types = newTypes;
+		Listener [][] newListeners = new Listener [count + GROW_SIZE][];
+		System.arraycopy (typeListeners, 0, newListeners, 0, count);
+		typeListeners = newListeners;
+	}
+	types [count] = eventType;
+	typeListeners [count] = array;
+	count++;
 }
 
 public int size () {
-	if (types == null) return 0;
-	int count = 0;
-	for (int i=0; i<types.length; i++) {
-		if (types [i] != 0) count++;
+	int size = 0;
+	if (listeners != null) {
+		for (int i=0; i<listeners.length; i++) {
+			if (listeners [i] != null) size += listeners [i].length;
+		}
+	}
+	for (int i=0; i<count; i++) {
+		size += typeListeners [i].length;
 	}
-	return count;
+	return size;
 }
 
-void remove (int index) {
-	if (level == 0) {
-		int end = types.length - 1;
-		System.arraycopy (types, index + 1, types, index, end - index);
-		System.arraycopy (listeners, index + 1, listeners, index, end - index);
-		index = end;
+void remove (int eventType, Listener [] array, int position) {
+	Listener listener = array [position];
+	int length = array.length - 1;
+	if (length == 0) {
+		set (eventType, null);
 	} else {
-		if (level > 0) level = -level;
+		Listener [] newArray = new Listener [length];
+		System.arraycopy (array, 0, newArray, 0, position);
+		System.arraycopy (array, position + 1, newArray, position, length - position);
+		set (eventType, newArray);
+	}
+	/* Stop notifying the listener of the events being sent */
+	array [position] = null;
+	for (int i=0; i<sendingCount; i++) {
+		Listener [] sent = sending [i];
+		if (sent == array || sendingTypes [i] != eventType) continue;
+		int j = 0;
+		while (j < i && sending [j] != sent) j++;
+		if (j < i) continue;
+		/*
+		* The array was replaced by hooking a listener while it was
+		* being sent.  The first occurrence of the listener that was
+		* not already cleared is the one that was unhooked.
+		*/
+		for (j=0; j<sent.length; j++) {
+			if (sent [j] == listener) {
+				sent [j] = null;
+				break;
+			}
+		}
 	}
-	types [index] = 0;
-	listeners [index] = null;
 }
 
 public void unhook (int eventType, Listener listener) {
-	if (types == null) return;
-	for (int i=0; i<types.length; i++) {
-		if (types [i] == eventType && listeners [i] == listener) {
-			remove (i);
+	Listener [] array = get (eventType);
+	if (array == null) return;
+	for (int i=0; i<array.length; i++) {
+		if (array [i] == listener) {
+			remove (eventType, array, i);
 			return;
 		}
 	}
 }
 
 public void unhook (int eventType, SWTEventListener listener) {
-	if (types == null) return;
-	for (int i=0; i<types.length; i++) {
-		if (types [i] == eventType) {
-			if (listeners [i] instanceof TypedListener) {
-				TypedListener typedListener = (TypedListener) listeners [i];
-				if (typedListener.getEventListener () == listener) {
-					remove (i);
-					return;
-				}
+	Listener [] array = get (eventType);
+	if (array == null) return;
+	for (int i=0; i<array.length; i++) {
+		if (array [i] instanceof TypedListener) {
+			TypedListener typedListener = (TypedListener) array [i];
+			if (typedListener.getEventListener () == listener) {
+				remove (eventType, array, i);
+				return;
 			}
 		}
 	}
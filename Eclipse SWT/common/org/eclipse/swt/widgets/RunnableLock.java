@@ -21,7 +21,9 @@ package org.eclipse.swt.widgets;
 class RunnableLock {
 	Runnable runnable;
 	Thread thread;
+	Object key;
 	Throwable throwable;
+	long time;
 	
 RunnableLock (Runnable runnable) {
 	this.runnable = runnable;
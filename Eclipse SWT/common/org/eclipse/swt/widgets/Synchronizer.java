@@ -11,6 +11,8 @@
 package org.eclipse.swt.widgets;
 
 
+import java.util.Hashtable;
+
 import org.eclipse.swt.*;
 import org.eclipse.swt.graphics.*;
 import org.eclipse.swt.internal.Compatibility;
@@ -35,13 +37,19 @@ import org.eclipse.swt.internal.Compatibility;
  */
 public class Synchronizer {
 	Display display;
-	int messageCount;
+	int messageStart, messageCount;
 	RunnableLock [] messages;
+	Hashtable keys;
 	Object messageLock = new Object ();
 	Thread syncThread;
+	int batchTime;
 	static final int GROW_SIZE = 4;
 	static final int MESSAGE_LIMIT = 64;
 
+	/* Statistics */
+	int maxMessageCount;
+	long runCount, latencyTotal, latencyMax;
+
 	//TEMPORARY CODE
 	static final boolean IS_CARBON = "carbon".equals (SWT.getPlatform ());
 	static final boolean IS_GTK = "gtk".equals (SWT.getPlatform ());
@@ -58,13 +66,30 @@ public Synchronizer (Display display) {
 void addLast (RunnableLock lock) {
 	boolean wake = false;
 	synchronized (messageLock) {
+		if (lock.key != null) {
+			if (keys == null) keys = new Hashtable ();
+			RunnableLock pending = (RunnableLock) keys.get (lock.key);
+			if (pending != null) {
+				pending.runnable = lock.runnable;
+				return;
+			}
+			keys.put (lock.key, lock);
+		}
 		if (messages == null) messages = new RunnableLock [GROW_SIZE];
 		if (messageCount == messages.length) {
-			RunnableLock[] newMessages = new RunnableLock [messageCount + GROW_SIZE];
-			System.arraycopy (messages, 0, newMessages, 0, messageCount);
+			RunnableLock[] newMessages = new RunnableLock [messageCount * 2];
+			int count = messageCount - messageStart;
+			System.arraycopy (messages, messageStart, newMessages, 0, count);
+			System.arraycopy (messages, 0, newMessages, count, messageStart);
 			messages = newMessages;
+			messageStart = 0;
 		}
-		messages [messageCount++] = lock;
+		int index = messageStart + messageCount;
+		if (index >= messages.length) index -= messages.length;
+		lock.time = System.currentTimeMillis ();
+		messages [index] = lock;
+		messageCount++;
+		if (messageCount > maxMessageCount) maxMessageCount = messageCount;
 		wake = messageCount == 1;
 	}	
 	if (wake) display.wakeThread ();
@@ -92,7 +117,103 @@ protected void asyncExec (Runnable runnable) {
 	addLast (new RunnableLock (runnable));
 }
 
-int getMessageCount () {
+/**
+ * Causes the <code>run()</code> method of the runnable to
+ * be invoked by the user-interface thread at the next 
+ * reasonable opportunity, unless a runnable with the same
+ * key is already waiting to be invoked. In that case, the
+ * waiting runnable is replaced by the new one, which runs
+ * in its place. The caller of this method continues 
+ * to run in parallel, and is not notified when the
+ * runnable has completed.
+ *
+ * @param key the key identifying the update
+ * @param runnable code to run on the user-interface thread or <code>null</code>
+ *
+ * @see #asyncExec(Runnable)
+ * 
+ * @since 3.6
+ */
+protected void asyncExec (Object key, Runnable runnable) {
+	if (key == null) SWT.error (SWT.ERROR_NULL_ARGUMENT);
+	RunnableLock lock = new RunnableLock (runnable);
+	lock.key = key;
+	addLast (lock);
+}
+
+/**
+ * Returns the maximum time in milliseconds that the user-interface
+ * thread spends running queued runnables each time it runs them.
+ *
+ * @return the batch time
+ *
+ * @see #setBatchTime
+ * 
+ * @since 3.6
+ */
+public int getBatchTime () {
+	return batchTime;
+}
+
+/**
+ * Returns the average time in milliseconds that the runnables
+ * run so far waited in the queue before they ran.
+ *
+ * @return the average latency in milliseconds
+ *
+ * @see #getMaxLatency
+ * 
+ * @since 3.6
+ */
+public long getAverageLatency () {
+	synchronized (messageLock) {
+		return runCount == 0 ? 0 : latencyTotal / runCount;
+	}
+}
+
+/**
+ * Returns the longest time in milliseconds that a runnable
+ * waited in the queue before it ran.
+ *
+ * @return the maximum latency in milliseconds
+ *
+ * @see #getAverageLatency
+ * 
+ * @since 3.6
+ */
+public long getMaxLatency () {
+	synchronized (messageLock) {
+		return latencyMax;
+	}
+}
+
+/**
+ * Returns the largest number of runnables that have been
+ * waiting in the queue at the same time.
+ *
+ * @return the maximum queue depth
+ *
+ * @see #getMessageCount
+ * 
+ * @since 3.6
+ */
+public int getMaxMessageCount () {
+	synchronized (messageLock) {
+		return maxMessageCount;
+	}
+}
+
+/**
+ * Returns the number of runnables that are waiting in the
+ * queue to be run.
+ *
+ * @return the queue depth
+ *
+ * @see #getMaxMessageCount
+ * 
+ * @since 3.6
+ */
+public int getMessageCount () {
 	synchronized (messageLock) {
 		return messageCount;
 	}
@@ -101,6 +222,7 @@ int getMessageCount () {
 void releaseSynchronizer () {
 	display = null;
 	messages = null;
+	keys = null;
 	messageLock = null;
 	syncThread = null;
 }
@@ -108,10 +230,16 @@ void releaseSynchronizer () {
 RunnableLock removeFirst () {
 	synchronized (messageLock) {
 		if (messageCount == 0) return null;
-		RunnableLock lock = messages [0];
-		System.arraycopy (messages, 1, messages, 0, --messageCount);
-		messages [messageCount] = null;
-		if (messageCount == 0) {
+		RunnableLock lock = messages [messageStart];
+		messages [messageStart] = null;
+		if (lock.key != null) keys.remove (lock.key);
+		long latency = System.currentTimeMillis () - lock.time;
+		if (latency > latencyMax) latencyMax = latency;
+		latencyTotal += latency;
+		runCount++;
+		if (++messageStart == messages.length) messageStart = 0;
+		if (--messageCount == 0) {
+			messageStart = 0;
 			if (messages.length > MESSAGE_LIMIT) messages = null;
 		}
 		return lock;
@@ -124,6 +252,12 @@ boolean runAsyncMessages () {
 
 boolean runAsyncMessages (boolean all) {
 	boolean run = false;
+	int count = 0;
+	long end = 0;
+	if (!all && batchTime > 0) {
+		count = getMessageCount ();
+		end = System.currentTimeMillis () + batchTime;
+	}
 	do {
 		RunnableLock lock = removeFirst ();
 		if (lock == null) return run;
@@ -140,10 +274,32 @@ boolean runAsyncMessages (boolean all) {
 				lock.notifyAll ();
 			}
 		}
-	} while (all);
+	} while (all || (--count > 0 && System.currentTimeMillis () < end));
 	return run;
 }
 
+/**
+ * Sets the maximum time in milliseconds that the user-interface
+ * thread spends running queued runnables each time it runs them.
+ * <p>
+ * By default, the user-interface thread runs a single runnable
+ * before it handles the next event. When the batch time is positive,
+ * it runs the runnables that were queued, until the batch time
+ * has elapsed. Runnables queued while the batch runs wait for
+ * the next batch, so that a flood of runnables does not prevent
+ * input events from being handled.
+ * </p>
+ *
+ * @param time the batch time in milliseconds or zero
+ *
+ * @see #getBatchTime
+ * 
+ * @since 3.6
+ */
+public void setBatchTime (int time) {
+	batchTime = Math.max (0, time);
+}
+
 /**
  * Causes the <code>run()</code> method of the runnable to
  * be invoked by the user-interface thread at the next 
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.widgets;
+
+
+/**
+ * Instances of this class keep the timers of a display in a
+ * hierarchical timer wheel, so that any number of timers can be
+ * driven by a single native timer.
+ * <p>
+ * Each level of the wheel has 256 slots.  A timer that expires in
+ * less than 256 milliseconds is kept in the slot of the first level
+ * that matches its expiration time.  Timers that expire later are kept
+ * in the higher levels, where each slot covers 256 times the duration
+ * of a slot of the level below.  When the time reaches the start of a
+ * slot of a higher level, the timers of that slot are moved down to
+ * the lower levels.  Adding and removing a timer is O(1).
+ * </p>
+ * <p>
+ * Timers that have expired are kept in a list, in the order they
+ * expired, until their runnables are taken one at a time to be run,
+ * so that a runnable can still cancel or reschedule the timers that
+ * expired with it.  A repeating timer is put back in the wheel for its
+ * next period when its runnable is taken, and stays there until it is
+ * cancelled.
+ * </p>
+ * <p>
+ * The time of the wheel is counted in milliseconds from the creation of
+ * the wheel and never goes back, even when the system clock does.
+ * </p>
+ */
+class TimerWheel {
+	Timer [][] slots = new Timer [LEVELS][SLOTS];
+	int [] counts = new int [LEVELS];
+	Timer [] table = new Timer [16];
+	Timer expired, lastExpired;	// the timers that have expired and not run yet
+	int size;
+	long time;	// the next millisecond to process
+	long now, clock;	// the current time of the wheel and the system time it was last read
+
+	static final int LEVELS = 4;
+	static final int BITS = 8;
+	static final int SLOTS = 1 << BITS;
+	static final int MASK = SLOTS - 1;
+
+	static class Timer {
+		Runnable runnable;
+		long expires;
+		int period;	// zero for the timers that do not repeat
+		int level, slot;	// level is -1 for the expired timers
+		Timer previous, next, hashNext;
+	}
+
+TimerWheel () {
+	clock = System.currentTimeMillis ();
+}
+
+void add (Timer timer) {
+	long delta = timer.expires - time;
+	int level = 0;
+	while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) level++;
+	int slot = (int) (timer.expires >>> (BITS * level)) & MASK;
+	timer.level = level;
+	timer.slot = slot;
+	timer.previous = null;
+	timer.next = slots [level][slot];
+	if (timer.next != null) timer.next.previous = timer;
+	slots [level][slot] = timer;
+	counts [level]++;
+}
+
+/**
+ * Cancels the timer of the runnable. Returns false when the
+ * runnable has no timer.
+ */
+boolean cancel (Runnable runnable) {
+	Timer timer = find (runnable);
+	if (timer == null) return false;
+	unlink (timer);
+	unhash (timer);
+	return true;
+}
+
+void cascade (int level) {
+	int slot = (int) (time >>> (BITS * level)) & MASK;
+	Timer timer = slots [level][slot];
+	slots [level][slot] = null;
+	while (timer != null) {
+		Timer next = timer.next;
+		counts [level]--;
+		add (timer);
+		timer = next;
+	}
+}
+
+/**
+ * Moves the timers that have expired to the list of expired timers,
+ * in the order they expired.
+ */
+void expire () {
+	long target = now ();
+	while (time <= target) {
+		for (int level = LEVELS - 1; level > 0; --level) {
+			if ((time & ((1L << (BITS * level)) - 1)) == 0) cascade (level);
+		}
+		int slot = (int) time & MASK;
+		Timer timer = slots [0][slot];
+		slots [0][slot] = null;
+		/*
+		* The timers of a slot are linked in the reverse order they were
+		* added, so insert each one before the ones already moved from
+		* the slot.
+		*/
+		Timer mark = lastExpired;
+		while (timer != null) {
+			Timer next = timer.next;
+			counts [0]--;
+			timer.level = -1;
+			timer.previous = mark;
+			timer.next = mark != null ? mark.next : expired;
+			if (timer.next != null) {
+				timer.next.previous = timer;
+			} else {
+				lastExpired = timer;
+			}
+			if (mark != null) {
+				mark.next = timer;
+			} else {
+				expired = timer;
+			}
+			timer = next;
+		}
+		int level = 0;
+		while (level < LEVELS && counts [level] == 0) level++;
+		if (level == 0) {
+			time++;
+		} else if (level == LEVELS) {
+			time = target + 1;
+		} else {
+			int shift = BITS * level;
+			time = Math.min (((time >>> shift) + 1) << shift, target + 1);
+		}
+	}
+}
+
+Timer find (Runnable runnable) {
+	Timer timer = table [hash (runnable)];
+	while (timer != null && timer.runnable != runnable) timer = timer.hashNext;
+	return timer;
+}
+
+int hash (Runnable runnable) {
+	return (System.identityHashCode (runnable) & 0x7FFFFFFF) % table.length;
+}
+
+/**
+ * Returns the next time the wheel must be advanced, or -1 when
+ * there are no timers.  This is the expiration time of the first
+ * timer to expire or the time its timers need to be moved down
+ * to a lower level, whichever comes first.
+ */
+long nextTime () {
+	if (size == 0) return -1;
+	long result = -1;
+	for (int level = 0; level < LEVELS; level++) {
+		if (counts [level] == 0) continue;
+		/*
+		* The slot of the current time holds the timers of the next
+		* revolution, unless the time is at the start of the slot.
+		*/
+		int shift = BITS * level;
+		long index = time >>> shift;
+		int i = (time & ((1L << shift) - 1)) == 0 ? 0 : 1;
+		while (slots [level][(int) (index + i) & MASK] == null) i++;
+		long next = (index + i) << shift;
+		if (level == 0) next = time + i;
+		if (result == -1 || next < result) result = next;
+	}
+	return result;
+}
+
+/**
+ * Returns the current time of the wheel.
+ */
+long now () {
+	long current = System.currentTimeMillis ();
+	if (current > clock) now += current - clock;
+	clock = current;
+	return now;
+}
+
+/**
+ * Removes the first expired timer and returns its runnable, or null
+ * when there are no expired timers.  A repeating timer is scheduled
+ * again one period after it expired, or right away when that time
+ * has passed.
+ */
+Runnable poll () {
+	Timer timer = expired;
+	if (timer == null) return null;
+	unlink (timer);
+	if (timer.period > 0) {
+		timer.expires = Math.max (timer.expires + timer.period, time);
+		add (timer);
+	} else {
+		unhash (timer);
+	}
+	return timer.runnable;
+}
+
+/**
+ * Runs the runnable after the given delay, and then every period
+ * milliseconds when the period is positive, replacing the timer the
+ * runnable already has, even when it has expired and not run yet.
+ * Returns the time when the runnable runs.
+ */
+long schedule (int delay, int period, Runnable runnable) {
+	Timer timer = find (runnable);
+	if (timer != null) {
+		unlink (timer);
+	} else {
+		timer = new Timer ();
+		timer.runnable = runnable;
+		if (size * 4 >= table.length * 3) {
+			Timer [] oldTable = table;
+			table = new Timer [oldTable.length * 2];
+			for (int i = 0; i < oldTable.length; i++) {
+				Timer entry = oldTable [i];
+				while (entry != null) {
+					Timer hashNext = entry.hashNext;
+					int index = hash (entry.runnable);
+					entry.hashNext = table [index];
+					table [index] = entry;
+					entry = hashNext;
+				}
+			}
+		}
+		int index = hash (runnable);
+		timer.hashNext = table [index];
+		table [index] = timer;
+		size++;
+	}
+	timer.expires = Math.max (now () + delay, time);
+	timer.period = period;
+	add (timer);
+	return timer.expires;
+}
+
+void unhash (Timer timer) {
+	int index = hash (timer.runnable);
+	Timer entry = table [index], previous = null;
+	while (entry != timer) {
+		previous = entry;
+		entry = entry.hashNext;
+	}
+	if (previous == null) {
+		table [index] = timer.hashNext;
+	} else {
+		previous.hashNext = timer.hashNext;
+	}
+	timer.hashNext = null;
+	size--;
+}
+
+void unlink (Timer timer) {
+	if (timer.level == -1) {
+		if (timer.previous != null) {
+			timer.previous.next = timer.next;
+		} else {
+			expired = timer.next;
+		}
+		if (timer.next != null) {
+			timer.next.previous = timer.previous;
+		} else {
+			lastExpired = timer.previous;
+		}
+		timer.previous = timer.next = null;
+		return;
+	}
+	if (timer.previous != null) {
+		timer.previous.next = timer.next;
+	} else {
+		slots [timer.level][timer.slot] = timer.next;
+	}
+	if (timer.next != null) timer.next.previous = timer.previous;
+	timer.previous = timer.next = null;
+	counts [timer.level]--;
+}
+
+}
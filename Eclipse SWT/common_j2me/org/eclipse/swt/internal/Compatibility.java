@@ -203,6 +203,31 @@ public static OutputStream newDeflaterOutputStream(OutputStream stream) throws I
 	return null;
 }
 
+/**
+ * Compress bytes with the deflate method if such things are supported,
+ * and answer the compressed data without a zlib header and checksum.
+ * <p>
+ * The <code>dictionaryLength</code> bytes that precede the bytes to
+ * compress are used as the preset dictionary.  Unless it is the last
+ * part of a stream, the compressed data does not end the stream and
+ * ends on a byte boundary, so that the data of the parts of a stream
+ * that are compressed separately can be concatenated.
+ * </p>
+ * 
+ * @param data the bytes to compress
+ * @param offset the offset of the first byte to compress
+ * @param length the number of bytes to compress
+ * @param dictionaryLength the number of bytes before offset to use as the dictionary
+ * @param level the compression level from 0 to 9, or -1 for the default level
+ * @param last whether the bytes are the last part of the stream
+ * @return the compressed data or <code>null</code>
+ * 
+ * @since 3.6
+ */
+public static byte[] deflate(byte[] data, int offset, int length, int dictionaryLength, int level, boolean last) {
+	return null;
+}
+
 /**
  * Open a file if such things are supported.
  * 
@@ -403,6 +428,19 @@ public static String getMessage(String key, Object[] args) {
 	return key;
 }
 
+/**
+ * Answers the number of processors available to the virtual machine,
+ * or 1 when the class library cannot tell.
+ * <p>
+ * Note that this is not available on CLDC.
+ * </p>
+ *
+ * @return the number of available processors
+ */
+public static int availableProcessors() {
+	return 1;
+}
+
 /**
  * Interrupt the current thread. 
  * <p>
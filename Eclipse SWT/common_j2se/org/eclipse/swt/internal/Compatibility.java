@@ -12,9 +12,11 @@ package org.eclipse.swt.internal;
 
  
 import java.io.*;
+import java.lang.reflect.Method;
 import java.text.MessageFormat;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.zip.Deflater;
 import java.util.zip.InflaterInputStream;
 import java.util.zip.DeflaterOutputStream;
 
@@ -171,6 +173,67 @@ public static OutputStream newDeflaterOutputStream(OutputStream stream) throws I
 	return new DeflaterOutputStream(stream);
 }
 
+/**
+ * Compress bytes with the deflate method if such things are supported,
+ * and answer the compressed data without a zlib header and checksum.
+ * <p>
+ * The <code>dictionaryLength</code> bytes that precede the bytes to
+ * compress are used as the preset dictionary.  Unless it is the last
+ * part of a stream, the compressed data does not end the stream and
+ * ends on a byte boundary, so that the data of the parts of a stream
+ * that are compressed separately can be concatenated.  Parts that are
+ * not the last one can only be compressed on class libraries that can
+ * flush a deflater.
+ * </p>
+ * 
+ * @param data the bytes to compress
+ * @param offset the offset of the first byte to compress
+ * @param length the number of bytes to compress
+ * @param dictionaryLength the number of bytes before offset to use as the dictionary
+ * @param level the compression level from 0 to 9, or -1 for the default level
+ * @param last whether the bytes are the last part of the stream
+ * @return the compressed data or <code>null</code>
+ * 
+ * @since 3.6
+ */
+public static byte[] deflate(byte[] data, int offset, int length, int dictionaryLength, int level, boolean last) {
+	Method method = null;
+	if (!last) {
+		/* Deflater.deflate(byte[], int, int, int) is not available in all class libraries */
+		try {
+			method = Deflater.class.getMethod("deflate", new Class[] {byte[].class, int.class, int.class, int.class}); //$NON-NLS-1$
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+	Deflater deflater = new Deflater(level, true);
+	try {
+		if (dictionaryLength > 0) deflater.setDictionary(data, offset - dictionaryLength, dictionaryLength);
+		deflater.setInput(data, offset, length);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(length / 2 + 64);
+		byte[] buffer = new byte[Math.max(512, Math.min(length, 1 << 16))];
+		if (last) {
+			deflater.finish();
+			while (!deflater.finished()) {
+				stream.write(buffer, 0, deflater.deflate(buffer));
+			}
+		} else {
+			/* SYNC_FLUSH */
+			Object[] args = new Object[] {buffer, new Integer(0), new Integer(buffer.length), new Integer(2)};
+			int count;
+			do {
+				count = ((Integer)method.invoke(deflater, args)).intValue();
+				stream.write(buffer, 0, count);
+			} while (count == buffer.length);
+		}
+		return stream.toByteArray();
+	} catch (Exception e) {
+		return null;
+	} finally {
+		deflater.end();
+	}
+}
+
 /**
  * Open a file if such things are supported.
  * 
@@ -337,6 +400,25 @@ public static String getMessage(String key, Object[] args) {
 	return answer;
 }
 
+/**
+ * Answers the number of processors available to the virtual machine,
+ * or 1 when the class library cannot tell.
+ * <p>
+ * Note that this is not available on CLDC.
+ * </p>
+ *
+ * @return the number of available processors
+ */
+public static int availableProcessors() {
+	/* Runtime.availableProcessors() is not available in all class libraries */
+	try {
+		Method method = Runtime.class.getMethod("availableProcessors", new Class[0]); //$NON-NLS-1$
+		return ((Integer)method.invoke(Runtime.getRuntime(), new Object[0])).intValue();
+	} catch (Throwable e) {
+		return 1;
+	}
+}
+
 /**
  * Interrupt the current thread. 
  * <p>
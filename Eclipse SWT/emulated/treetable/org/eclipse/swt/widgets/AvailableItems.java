@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.widgets;
+
+
+/**
+ * Instances of this class keep the available items of a tree, which are
+ * the items whose ancestors are all expanded, in the order they are shown.
+ * <p>
+ * The items are the nodes of a treap ordered by their index, in which each
+ * node counts the items of its subtree, so that finding the item at an
+ * index, finding the index of an item, and inserting or removing a range
+ * of items take a logarithmic time in the number of available items.  The
+ * links of the nodes are kept in the items, and the index of an item is
+ * found by walking up from its node.
+ * </p>
+ */
+class AvailableItems {
+	TreeItem root;
+	TreeItem splitLeft, splitRight;	/* results of split () */
+	int seed = 0x2545F491;
+
+/*
+ * Builds a treap of the items in O(count), keeping the items of the
+ * right spine on a stack.
+ */
+TreeItem build (TreeItem[] items, int start, int count) {
+	TreeItem[] stack = new TreeItem [count];
+	int top = 0;
+	for (int i = 0; i < count; i++) {
+		TreeItem item = items [start + i];
+		item.availablePriority = nextPriority ();
+		item.availableRight = item.availableParent = null;
+		TreeItem last = null;
+		while (top > 0 && stack [top - 1].availablePriority < item.availablePriority) {
+			last = stack [--top];
+		}
+		setLeft (item, last);
+		if (top > 0) setRight (stack [top - 1], item);
+		stack [top++] = item;
+	}
+	TreeItem result = stack [0];
+	result.availableParent = null;
+	updateSizes (result);
+	return result;
+}
+static void clear (TreeItem node) {
+	while (node != null) {
+		clear (node.availableLeft);
+		TreeItem right = node.availableRight;
+		node.availableLeft = node.availableRight = node.availableParent = null;
+		node.availableSize = 0;
+		node = right;
+	}
+}
+TreeItem get (int index) {
+	TreeItem node = root;
+	while (node != null) {
+		int leftSize = size (node.availableLeft);
+		if (index < leftSize) {
+			node = node.availableLeft;
+		} else {
+			if (index == leftSize) return node;
+			index -= leftSize + 1;
+			node = node.availableRight;
+		}
+	}
+	return null;
+}
+/*
+ * Returns the available items from start, inclusive, to end, exclusive.
+ */
+TreeItem[] getItems (int start, int end) {
+	TreeItem[] result = new TreeItem [Math.max (0, end - start)];
+	if (result.length == 0) return result;
+	TreeItem node = get (start);
+	for (int i = 0; i < result.length; i++) {
+		result [i] = node;
+		node = next (node);
+	}
+	return result;
+}
+/*
+ * Returns the index of the item in the available items, or -1 if
+ * it is not available.
+ */
+int indexOf (TreeItem item) {
+	if (item.availableSize == 0) return -1;
+	int index = size (item.availableLeft);
+	TreeItem node = item;
+	TreeItem parent;
+	while ((parent = node.availableParent) != null) {
+		if (node == parent.availableRight) index += size (parent.availableLeft) + 1;
+		node = parent;
+	}
+	return index;
+}
+void insert (int index, TreeItem item) {
+	item.availablePriority = nextPriority ();
+	item.availableLeft = item.availableRight = item.availableParent = null;
+	item.availableSize = 1;
+	insertNode (index, item);
+}
+/*
+ * Inserts count items of the array, from start, at the index.
+ */
+void insert (int index, TreeItem[] items, int start, int count) {
+	if (count == 0) return;
+	insertNode (index, build (items, start, count));
+}
+void insertNode (int index, TreeItem node) {
+	split (root, index);
+	TreeItem right = splitRight;
+	root = merge (merge (splitLeft, node), right);
+	root.availableParent = null;
+}
+TreeItem merge (TreeItem left, TreeItem right) {
+	if (left == null) return right;
+	if (right == null) return left;
+	if (left.availablePriority > right.availablePriority) {
+		setRight (left, merge (left.availableRight, right));
+		left.availableSize = size (left.availableLeft) + size (left.availableRight) + 1;
+		return left;
+	}
+	setLeft (right, merge (left, right.availableLeft));
+	right.availableSize = size (right.availableLeft) + size (right.availableRight) + 1;
+	return right;
+}
+/*
+ * Returns the available item that follows the node, or null if it is the last one.
+ */
+static TreeItem next (TreeItem node) {
+	if (node.availableRight != null) {
+		node = node.availableRight;
+		while (node.availableLeft != null) node = node.availableLeft;
+		return node;
+	}
+	TreeItem parent;
+	while ((parent = node.availableParent) != null && node == parent.availableRight) {
+		node = parent;
+	}
+	return parent;
+}
+int nextPriority () {
+	/* xorshift */
+	seed ^= seed << 13;
+	seed ^= seed >>> 17;
+	seed ^= seed << 5;
+	return seed;
+}
+/*
+ * Returns the available item that precedes the node, or null if it is the first one.
+ */
+static TreeItem previous (TreeItem node) {
+	if (node.availableLeft != null) {
+		node = node.availableLeft;
+		while (node.availableRight != null) node = node.availableRight;
+		return node;
+	}
+	TreeItem parent;
+	while ((parent = node.availableParent) != null && node == parent.availableLeft) {
+		node = parent;
+	}
+	return parent;
+}
+/*
+ * Removes count available items from the index.
+ */
+void remove (int index, int count) {
+	if (count == 0) return;
+	split (root, index);
+	TreeItem left = splitLeft;
+	split (splitRight, count);
+	TreeItem removed = splitLeft;
+	root = merge (left, splitRight);
+	if (root != null) root.availableParent = null;
+	clear (removed);
+}
+void removeAll () {
+	clear (root);
+	root = null;
+}
+static void setLeft (TreeItem node, TreeItem left) {
+	node.availableLeft = left;
+	if (left != null) left.availableParent = node;
+}
+static void setRight (TreeItem node, TreeItem right) {
+	node.availableRight = right;
+	if (right != null) right.availableParent = node;
+}
+int size () {
+	return size (root);
+}
+static int size (TreeItem node) {
+	return node == null ? 0 : node.availableSize;
+}
+/*
+ * Splits the treap of the node into splitLeft, which holds its first
+ * index items, and splitRight, which holds the others.
+ */
+void split (TreeItem node, int index) {
+	if (node == null) {
+		splitLeft = splitRight = null;
+		return;
+	}
+	int leftSize = size (node.availableLeft);
+	if (index <= leftSize) {
+		split (node.availableLeft, index);
+		setLeft (node, splitRight);
+		node.availableSize = size (node.availableLeft) + size (node.availableRight) + 1;
+		node.availableParent = null;
+		splitRight = node;
+	} else {
+		split (node.availableRight, index - leftSize - 1);
+		setRight (node, splitLeft);
+		node.availableSize = size (node.availableLeft) + size (node.availableRight) + 1;
+		node.availableParent = null;
+		splitLeft = node;
+	}
+}
+static int updateSizes (TreeItem node) {
+	if (node == null) return 0;
+	return node.availableSize = updateSizes (node.availableLeft) + updateSizes (node.availableRight) + 1;
+}
+}
@@ -77,7 +77,7 @@ public class Tree extends Composite {
 	TreeColumn[] columns = new TreeColumn [0];
 	TreeColumn[] orderedColumns;
 	TreeItem[] items = NO_ITEMS;
-	TreeItem[] availableItems = NO_ITEMS;
+	AvailableItems availableItems = new AvailableItems ();
 	TreeItem[] selectedItems = NO_ITEMS;
 	TreeItem focusItem, anchorItem, insertMarkItem;
 	TreeItem lastClickedItem;
@@ -301,7 +301,7 @@ boolean checkData (TreeItem item, boolean redraw) {
 		event.index = parentItem == null ? indexOf (item) : parentItem.indexOf (item);
 		sendEvent (SWT.SetData, event);
 		if (isDisposed () || item.isDisposed ()) return false;
-		if (redraw) redrawItem (item.availableIndex, false);
+		if (redraw) redrawItem (item.getAvailableIndex (), false);
 	}
 	return true;
 }
@@ -396,9 +396,9 @@ public void clear (int index, boolean recursive) {
 		int descendentCount = availableDescendents == null ?
 			item.computeAvailableDescendentCount () :
 			availableDescendents.length;
-		redrawItems (item.availableIndex, item.availableIndex + descendentCount - 1, false);
+		redrawItems (item.getAvailableIndex (), item.getAvailableIndex () + descendentCount - 1, false);
 	} else {
-		redrawItem (item.availableIndex, false);
+		redrawItem (item.getAvailableIndex (), false);
 	}
 }
 /**
@@ -459,7 +459,7 @@ public void clearAll (boolean recursive) {
 		redrawItems (0, availableItemsCount - 1, false);
 	} else {
 		for (int i = 0; i < items.length; i++) {
-			redrawItem (items [i].availableIndex, false);
+			redrawItem (items [i].getAvailableIndex (), false);
 		}
 	}
 }
@@ -484,8 +484,8 @@ public Point computeSize (int wHint, int hHint, boolean changed) {
 		width = wHint;
 	} else {
 		if (columns.length == 0) {
-			for (int i = 0; i < availableItemsCount; i++) {
-				Rectangle itemBounds = availableItems [i].getBounds (false);
+			for (TreeItem item = availableItems.get (0); item != null; item = AvailableItems.next (item)) {
+				Rectangle itemBounds = item.getBounds (false);
 				width = Math.max (width, itemBounds.x + itemBounds.width);
 			}
 		} else {
@@ -559,32 +559,11 @@ void createItem (TreeItem item, int index) {
 	if (index == items.length - 1) {
 		startIndex = availableItemsCount;		/* last item */
 	} else {
-		startIndex = items [index + 1].availableIndex;
+		startIndex = items [index + 1].getAvailableIndex ();
 	}
-
-	if (availableItemsCount == availableItems.length) {
-		int grow = drawCount <= 0 ? 4 : Math.max (4, availableItems.length * 3 / 2);
-		TreeItem[] newAvailableItems = new TreeItem [availableItems.length + grow];
-		System.arraycopy (availableItems, 0, newAvailableItems, 0, availableItems.length);
-		availableItems = newAvailableItems;
-	}
-	if (startIndex != availableItemsCount) {
-		/* new item is not at end of list, so shift other items right to create space for it */
-		System.arraycopy (
-			availableItems,
-			startIndex,
-			availableItems,
-			startIndex + 1,
-			availableItemsCount - startIndex);
-	}
-	availableItems [startIndex] = item;
+	availableItems.insert (startIndex, item);
 	availableItemsCount++;
 
-	/* update the availableIndex for items bumped down by this new item */
-	for (int i = startIndex; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
-	}
-
 	/* update scrollbars */
 	updateVerticalBar ();
 	Rectangle bounds = item.getBounds (false);
@@ -594,7 +573,7 @@ void createItem (TreeItem item, int index) {
 	 * If new item is above viewport then adjust topIndex and the vertical
 	 * scrollbar so that the current viewport items will not change.
 	 */
-	if (item.availableIndex < topIndex) {
+	if (startIndex < topIndex) {
 		topIndex++;
 		ScrollBar vBar = getVerticalBar ();
 		if (vBar != null) vBar.setSelection (topIndex);
@@ -611,7 +590,7 @@ void createItem (TreeItem item, int index) {
 	}
 	int redrawIndex = index;
 	if (redrawIndex > 0 && item.isLastChild ()) redrawIndex--;
-	redrawFromItemDownwards (items [redrawIndex].availableIndex);
+	redrawFromItemDownwards (items [redrawIndex].getAvailableIndex ());
 }
 /**
  * Deselects an item in the receiver.  If the item was already
@@ -635,7 +614,7 @@ public void deselect (TreeItem item) {
 	if (item == null) error (SWT.ERROR_NULL_ARGUMENT);
 	if (item.isDisposed ()) error (SWT.ERROR_INVALID_ARGUMENT);
 	deselectItem (item);
-	redrawItem (item.availableIndex, true);
+	redrawItem (item.getAvailableIndex (), true);
 }
 /**
  * Deselects all selected items in the receiver.
@@ -650,7 +629,7 @@ public void deselectAll () {
 	TreeItem[] oldSelection = selectedItems;
 	selectedItems = NO_ITEMS;
 	for (int i = 0; i < oldSelection.length; i++) {
-		redrawItem (oldSelection [i].availableIndex, true);
+		redrawItem (oldSelection [i].getAvailableIndex (), true);
 	}
 }
 void deselectItem (TreeItem item) {
@@ -741,38 +720,13 @@ void destroyItem (TreeColumn column) {
 void destroyItem (TreeItem item) {
 	if (item == focusItem) reassignFocus ();
 
-	/* availableItems array */
-	int availableIndex = item.availableIndex; 
+	/* availableItems tree */
+	int availableIndex = item.getAvailableIndex (); 
 	if (availableIndex != -1) {
 		Rectangle bounds = item.getBounds (false);
 		int rightX = bounds.x + bounds.width;
-
-		if (availableIndex != availableItemsCount - 1) {
-			/* item is not at end of available items list, so must shift items left to reclaim its slot */
-			System.arraycopy (
-				availableItems,
-				availableIndex + 1,
-				availableItems,
-				availableIndex,
-				availableItemsCount - availableIndex - 1);
-			availableItems [availableItemsCount - 1] = null;
-		} else {
-			availableItems [availableIndex] = null;	/* last item, so no array copy needed */
-		}
+		availableItems.remove (availableIndex, 1);
 		availableItemsCount--;
-
-		if (drawCount <= 0 && availableItems.length - availableItemsCount == 4) {
-			/* shrink the available items array */
-			TreeItem[] newAvailableItems = new TreeItem [availableItemsCount];
-			System.arraycopy (availableItems, 0, newAvailableItems, 0, newAvailableItems.length);
-			availableItems = newAvailableItems;
-		}
-
-		/* update the availableIndex on affected items */
-		for (int i = availableIndex; i < availableItemsCount; i++) {
-			availableItems [i].availableIndex = i;
-		}
-		item.availableIndex = -1;
 		int oldTopIndex = topIndex;
 		updateVerticalBar ();
 		updateHorizontalBar (0, -rightX);
@@ -1075,7 +1029,7 @@ public TreeItem getItem (Point point) {
 	if (point == null) error (SWT.ERROR_NULL_ARGUMENT);
 	int index = (point.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if (!(0 <= index && index < availableItemsCount)) return null;		/* below the last item */
-	TreeItem result = availableItems [index];
+	TreeItem result = availableItems.get (index);
 	if (!result.getHitBounds ().contains (point)) return null;	/* considers the x value */
 	return result;
 }
@@ -1160,7 +1114,7 @@ public TreeItem[] getItems () {
  * Returns the current y-coordinate that the specified item should have. 
  */
 int getItemY (TreeItem item) {
-	int index = item.availableIndex;
+	int index = item.getAvailableIndex ();
 	if (index == -1) return -1;
 	return (index - topIndex) * itemHeight + getHeaderHeight ();
 }
@@ -1328,7 +1282,7 @@ public int getSortDirection () {
 public TreeItem getTopItem () {
 	checkWidget ();
 	if (availableItemsCount == 0) return null;
-	return availableItems [topIndex];
+	return availableItems.get (topIndex);
 }
 Image getUncheckedImage () {
 	return (Image) display.getData (ID_UNCHECKED);
@@ -1887,7 +1841,7 @@ void makeAvailable (TreeItem item) {
 	int parentItemCount = item.parentItem.items.length; 
 	int index = 0;
 	if (parentItemCount == 1) {		/* this is the only child of parentItem */
-		index = item.parentItem.availableIndex + 1;
+		index = item.parentItem.getAvailableIndex () + 1;
 	} else {
 		/* determine this item's index in its parent */
 		int itemIndex = 0;
@@ -1899,30 +1853,18 @@ void makeAvailable (TreeItem item) {
 			}
 		}
 		if (itemIndex != parentItemCount - 1) {	/* this is not the last child */
-			index = items [itemIndex + 1].availableIndex;
+			index = items [itemIndex + 1].getAvailableIndex ();
 		} else {	/* this is the last child */
+			/* follow to the last available descendent of the previous item */
 			TreeItem previousItem = items [itemIndex - 1];
-			index = previousItem.availableIndex + previousItem.computeAvailableDescendentCount ();
+			while (previousItem.expanded && previousItem.items.length > 0) {
+				previousItem = previousItem.items [previousItem.items.length - 1];
+			}
+			index = previousItem.getAvailableIndex () + 1;
 		}
 	}
-
-	if (availableItemsCount == availableItems.length) {
-		int grow = drawCount <= 0 ? 4 : Math.max (4, availableItems.length * 3 / 2);
-		TreeItem[] newAvailableItems = new TreeItem [availableItems.length + grow];
-		System.arraycopy (availableItems, 0, newAvailableItems, 0, availableItems.length);
-		availableItems = newAvailableItems;
-	}
-	if (index != availableItemsCount) {
-		/* new item is not at end of list, so shift other items right to create space for it */
-		System.arraycopy (availableItems, index, availableItems, index + 1, availableItemsCount - index);
-	}
-	availableItems [index] = item;
+	availableItems.insert (index, item);
 	availableItemsCount++;
-
-	/* update availableIndex as needed */
-	for (int i = index; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
-	}
 }
 
 /*
@@ -1930,25 +1872,9 @@ void makeAvailable (TreeItem item) {
  * available (ie.- they were either created or the item was expanded).
  */
 void makeDescendentsAvailable (TreeItem item, TreeItem[] descendents) {
-	int itemAvailableIndex = item.availableIndex;
-	TreeItem[] newAvailableItems = new TreeItem [availableItemsCount + descendents.length - 1];
-	
-	System.arraycopy (availableItems, 0, newAvailableItems, 0, itemAvailableIndex);
-	System.arraycopy (descendents, 0, newAvailableItems, itemAvailableIndex, descendents.length);
-	int startIndex = itemAvailableIndex + 1;
-	System.arraycopy (
-		availableItems,
-		startIndex,
-		newAvailableItems,
-		itemAvailableIndex + descendents.length,
-		availableItemsCount - startIndex);
-	availableItems = newAvailableItems;
-	availableItemsCount = availableItems.length;
-	
-	/* update availableIndex as needed */
-	for (int i = itemAvailableIndex; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
-	}
+	/* skip the first descendent since this is the item being expanded */
+	availableItems.insert (item.getAvailableIndex () + 1, descendents, 1, descendents.length - 1);
+	availableItemsCount = availableItems.size ();
 }
 
 /*
@@ -1956,28 +1882,9 @@ void makeDescendentsAvailable (TreeItem item, TreeItem[] descendents) {
  * unavailable (ie.- they were either disposed or the item was collapsed).
  */
 void makeDescendentsUnavailable (TreeItem item, TreeItem[] descendents) {
-	int descendentsLength = descendents.length;
-	TreeItem[] newAvailableItems = new TreeItem [availableItemsCount - descendentsLength + 1];
-	
-	System.arraycopy (availableItems, 0, newAvailableItems, 0, item.availableIndex + 1);
-	int startIndex = item.availableIndex + descendentsLength;
-	System.arraycopy (
-		availableItems,
-		startIndex,
-		newAvailableItems,
-		item.availableIndex + 1,
-		availableItemsCount - startIndex);
-	availableItems = newAvailableItems;
-	availableItemsCount = availableItems.length;
-	
-	/* update availableIndexes */
-	for (int i = 1; i < descendents.length; i++) {
-		/* skip the first descendent since this is the item being collapsed */
-		descendents [i].availableIndex = -1;
-	}
-	for (int i = item.availableIndex; i < availableItemsCount; i++) {
-		availableItems [i].availableIndex = i;
-	}
+	/* skip the first descendent since this is the item being collapsed */
+	availableItems.remove (item.getAvailableIndex () + 1, descendents.length - 1);
+	availableItemsCount = availableItems.size ();
 	
 	/* remove the selection from all descendents */
 	for (int i = selectedItems.length - 1; i >= 0; i--) {
@@ -1994,14 +1901,14 @@ void makeDescendentsUnavailable (TreeItem item, TreeItem[] descendents) {
 void onArrowDown (int stateMask) {
 	if ((stateMask & (SWT.SHIFT | SWT.CTRL)) == 0) {
 		/* Down Arrow with no modifiers */
-		int newFocusIndex = focusItem.availableIndex + 1;
+		int newFocusIndex = focusItem.getAvailableIndex () + 1;
 		if (newFocusIndex == availableItemsCount) return; 	/* at bottom */
-		selectItem (availableItems [newFocusIndex], false);
-		setFocusItem (availableItems [newFocusIndex], true);
+		selectItem (availableItems.get (newFocusIndex), false);
+		setFocusItem (availableItems.get (newFocusIndex), true);
 		redrawItem (newFocusIndex, true);
-		showItem (availableItems [newFocusIndex]);
+		showItem (availableItems.get (newFocusIndex));
 		Event newEvent = new Event ();
-		newEvent.item = availableItems [newFocusIndex];
+		newEvent.item = availableItems.get (newFocusIndex);
 		postEvent (SWT.Selection, newEvent);
 		return;
 	}
@@ -2023,14 +1930,14 @@ void onArrowDown (int stateMask) {
 			return;
 		}
 		/* Shift+Down Arrow */
-		int newFocusIndex = focusItem.availableIndex + 1;
+		int newFocusIndex = focusItem.getAvailableIndex () + 1;
 		if (newFocusIndex == availableItemsCount) return; 	/* at bottom */
-		selectItem (availableItems [newFocusIndex], false);
-		setFocusItem (availableItems [newFocusIndex], true);
+		selectItem (availableItems.get (newFocusIndex), false);
+		setFocusItem (availableItems.get (newFocusIndex), true);
 		redrawItem (newFocusIndex, true);
-		showItem (availableItems [newFocusIndex]);
+		showItem (availableItems.get (newFocusIndex));
 		Event newEvent = new Event ();
-		newEvent.item = availableItems [newFocusIndex];
+		newEvent.item = availableItems.get (newFocusIndex);
 		postEvent (SWT.Selection, newEvent);
 		return;
 	}
@@ -2053,28 +1960,28 @@ void onArrowDown (int stateMask) {
 			return;
 		}
 		/* CTRL+Down Arrow */
-		int focusIndex = focusItem.availableIndex; 
+		int focusIndex = focusItem.getAvailableIndex (); 
 		if (focusIndex == availableItemsCount - 1) return;	/* at bottom */
-		TreeItem newFocusItem = availableItems [focusIndex + 1];
+		TreeItem newFocusItem = availableItems.get (focusIndex + 1);
 		setFocusItem (newFocusItem, true);
-		redrawItem (newFocusItem.availableIndex, true);
+		redrawItem (newFocusItem.getAvailableIndex (), true);
 		showItem (newFocusItem);
 		return;
 	}
 	/* Shift+Down Arrow */
-	int newFocusIndex = focusItem.availableIndex + 1;
+	int newFocusIndex = focusItem.getAvailableIndex () + 1;
 	if (newFocusIndex == availableItemsCount) return; 	/* at bottom */
 	if (anchorItem == null) anchorItem = focusItem;
-	if (focusItem.availableIndex < anchorItem.availableIndex) {
+	if (focusItem.getAvailableIndex () < anchorItem.getAvailableIndex ()) {
 		deselectItem (focusItem);
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
-	selectItem (availableItems [newFocusIndex], true);
-	setFocusItem (availableItems [newFocusIndex], true);
+	selectItem (availableItems.get (newFocusIndex), true);
+	setFocusItem (availableItems.get (newFocusIndex), true);
 	redrawItem (newFocusIndex, true);
-	showItem (availableItems [newFocusIndex]);
+	showItem (availableItems.get (newFocusIndex));
 	Event newEvent = new Event ();
-	newEvent.item = availableItems [newFocusIndex];
+	newEvent.item = availableItems.get (newFocusIndex);
 	postEvent (SWT.Selection, newEvent);
 }
 void onArrowLeft (int stateMask) {
@@ -2117,7 +2024,7 @@ void onArrowLeft (int stateMask) {
 	
 	selectItem (parentItem, false);
 	setFocusItem (parentItem, true);
-	redrawItem (parentItem.availableIndex, true);
+	redrawItem (parentItem.getAvailableIndex (), true);
 	showItem (parentItem);
 	Event newEvent = new Event ();
 	newEvent.item = parentItem;
@@ -2173,7 +2080,7 @@ void onArrowRight (int stateMask) {
 	}
 	selectItem (children [0], false);
 	setFocusItem (children [0], true);
-	redrawItem (children [0].availableIndex, true);
+	redrawItem (children [0].getAvailableIndex (), true);
 	showItem (children [0]);
 	Event newEvent = new Event ();
 	newEvent.item = children [0];
@@ -2182,9 +2089,9 @@ void onArrowRight (int stateMask) {
 void onArrowUp (int stateMask) {
 	if ((stateMask & (SWT.SHIFT | SWT.CTRL)) == 0) {
 		/* Up Arrow with no modifiers */
-		int newFocusIndex = focusItem.availableIndex - 1;
+		int newFocusIndex = focusItem.getAvailableIndex () - 1;
 		if (newFocusIndex < 0) return; 		/* at top */
-		TreeItem item = availableItems [newFocusIndex];
+		TreeItem item = availableItems.get (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (newFocusIndex, true);
@@ -2211,9 +2118,9 @@ void onArrowUp (int stateMask) {
 			return;
 		}
 		/* Shift+Up Arrow */
-		int newFocusIndex = focusItem.availableIndex - 1;
+		int newFocusIndex = focusItem.getAvailableIndex () - 1;
 		if (newFocusIndex < 0) return; 	/* at top */
-		TreeItem item = availableItems [newFocusIndex];
+		TreeItem item = availableItems.get (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (newFocusIndex, true);
@@ -2241,23 +2148,23 @@ void onArrowUp (int stateMask) {
 			return;
 		}
 		/* CTRL+Up Arrow */
-		int focusIndex = focusItem.availableIndex; 
+		int focusIndex = focusItem.getAvailableIndex (); 
 		if (focusIndex == 0) return;	/* at top */
-		TreeItem newFocusItem = availableItems [focusIndex - 1];
+		TreeItem newFocusItem = availableItems.get (focusIndex - 1);
 		setFocusItem (newFocusItem, true);
 		showItem (newFocusItem);
-		redrawItem (newFocusItem.availableIndex, true);
+		redrawItem (newFocusItem.getAvailableIndex (), true);
 		return;
 	}
 	/* Shift+Up Arrow */
-	int newFocusIndex = focusItem.availableIndex - 1;
+	int newFocusIndex = focusItem.getAvailableIndex () - 1;
 	if (newFocusIndex < 0) return; 		/* at top */
 	if (anchorItem == null) anchorItem = focusItem;
-	if (anchorItem.availableIndex < focusItem.availableIndex) {
+	if (anchorItem.getAvailableIndex () < focusItem.getAvailableIndex ()) {
 		deselectItem (focusItem);
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
-	TreeItem item = availableItems [newFocusIndex];
+	TreeItem item = availableItems.get (newFocusIndex);
 	selectItem (item, true);
 	setFocusItem (item, true);
 	redrawItem (newFocusIndex, true);
@@ -2291,7 +2198,8 @@ void onDispose (Event event) {
 	}
 	toolTipListener = null;
 	topIndex = availableItemsCount = horizontalOffset = 0;
-	availableItems = items = selectedItems = null;
+	availableItems = null;
+	items = selectedItems = null;
 	columns = orderedColumns = null;
 	focusItem = anchorItem = insertMarkItem = lastClickedItem = null;
 	lastSelectionEvent = null;
@@ -2303,8 +2211,8 @@ void onEnd (int stateMask) {
 	int lastAvailableIndex = availableItemsCount - 1;
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* End with no modifiers */
-		if (focusItem.availableIndex == lastAvailableIndex) return; 	/* at bottom */
-		TreeItem item = availableItems [lastAvailableIndex]; 
+		if (focusItem.getAvailableIndex () == lastAvailableIndex) return; 	/* at bottom */
+		TreeItem item = availableItems.get (lastAvailableIndex); 
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (lastAvailableIndex, true);
@@ -2318,12 +2226,12 @@ void onEnd (int stateMask) {
 		if ((stateMask & SWT.CTRL) != 0) {
 			/* CTRL+End, CTRL+Shift+End */
 			int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
-			setTopItem (availableItems [availableItemsCount - visibleItemCount]);
+			setTopItem (availableItems.get (availableItemsCount - visibleItemCount));
 			return;
 		}
 		/* Shift+End */
-		if (focusItem.availableIndex == lastAvailableIndex) return; /* at bottom */
-		TreeItem item = availableItems [lastAvailableIndex]; 
+		if (focusItem.getAvailableIndex () == lastAvailableIndex) return; /* at bottom */
+		TreeItem item = availableItems.get (lastAvailableIndex); 
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (lastAvailableIndex, true);
@@ -2337,27 +2245,29 @@ void onEnd (int stateMask) {
 	if ((stateMask & SWT.CTRL) != 0) {
 		if ((stateMask & SWT.SHIFT) != 0) {
 			/* CTRL+Shift+End */
-			showItem (availableItems [lastAvailableIndex]);
+			showItem (availableItems.get (lastAvailableIndex));
 			return;
 		}
 		/* CTRL+End */
-		if (focusItem.availableIndex == lastAvailableIndex) return; /* at bottom */
-		TreeItem item = availableItems [lastAvailableIndex];
+		if (focusItem.getAvailableIndex () == lastAvailableIndex) return; /* at bottom */
+		TreeItem item = availableItems.get (lastAvailableIndex);
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	/* Shift+End */
 	if (anchorItem == null) anchorItem = focusItem;
-	TreeItem selectedItem = availableItems [lastAvailableIndex];
+	TreeItem selectedItem = availableItems.get (lastAvailableIndex);
 	if (selectedItem == focusItem && selectedItem.isSelected ()) return;
-	int anchorIndex = anchorItem.availableIndex;
-	int selectIndex = selectedItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
+	int selectIndex = selectedItem.getAvailableIndex ();
 	TreeItem[] newSelection = new TreeItem [selectIndex - anchorIndex + 1];
 	int writeIndex = 0;
+	TreeItem item = anchorItem;
 	for (int i = anchorIndex; i <= selectIndex; i++) {
-		newSelection [writeIndex++] = availableItems [i];
+		newSelection [writeIndex++] = item;
+		item = AvailableItems.next (item);
 	}
 	setSelection (newSelection, false);
 	setFocusItem (selectedItem, true);
@@ -2375,7 +2285,7 @@ void onFocusIn () {
 		return;
 	}
 	if (focusItem != null) {
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 		return;
 	}
 	/* an initial focus item must be selected */
@@ -2388,13 +2298,13 @@ void onFocusIn () {
 		}
 		if (initialFocus == null) {
 			/* none of the selected items are available */
-			initialFocus = availableItems [topIndex];
+			initialFocus = availableItems.get (topIndex);
 		}
 	} else {
-		initialFocus = availableItems [topIndex];
+		initialFocus = availableItems.get (topIndex);
 	}
 	setFocusItem (initialFocus, false);
-	redrawItem (initialFocus.availableIndex, true);
+	redrawItem (initialFocus.getAvailableIndex (), true);
 	return;
 }
 void onFocusOut () {
@@ -2406,14 +2316,14 @@ void onFocusOut () {
 	}	
 
 	if (focusItem != null) {
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
 }
 void onHome (int stateMask) {
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* Home with no modifiers */
-		if (focusItem.availableIndex == 0) return; 		/* at top */
-		TreeItem item = availableItems [0];
+		if (focusItem.getAvailableIndex () == 0) return; 		/* at top */
+		TreeItem item = availableItems.get (0);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (0, true);
@@ -2426,12 +2336,12 @@ void onHome (int stateMask) {
 	if ((style & SWT.SINGLE) != 0) {
 		if ((stateMask & SWT.CTRL) != 0) {
 			/* CTRL+Home, CTRL+Shift+Home */
-			setTopItem (availableItems [0]);
+			setTopItem (availableItems.get (0));
 			return;
 		}
 		/* Shift+Home */
-		if (focusItem.availableIndex == 0) return; 		/* at top */
-		TreeItem item = availableItems [0];
+		if (focusItem.getAvailableIndex () == 0) return; 		/* at top */
+		TreeItem item = availableItems.get (0);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		redrawItem (0, true);
@@ -2445,27 +2355,29 @@ void onHome (int stateMask) {
 	if ((stateMask & SWT.CTRL) != 0) {
 		if ((stateMask & SWT.SHIFT) != 0) {
 			/* CTRL+Shift+Home */
-			setTopItem (availableItems [0]);
+			setTopItem (availableItems.get (0));
 			return;
 		}
 		/* CTRL+Home */
-		if (focusItem.availableIndex == 0) return; /* at top */
-		TreeItem item = availableItems [0];
+		if (focusItem.getAvailableIndex () == 0) return; /* at top */
+		TreeItem item = availableItems.get (0);
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	/* Shift+Home */
 	if (anchorItem == null) anchorItem = focusItem;
-	TreeItem selectedItem = availableItems [0];
+	TreeItem selectedItem = availableItems.get (0);
 	if (selectedItem == focusItem && selectedItem.isSelected ()) return;
-	int anchorIndex = anchorItem.availableIndex;
-	int selectIndex = selectedItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
+	int selectIndex = selectedItem.getAvailableIndex ();
 	TreeItem[] newSelection = new TreeItem [anchorIndex + 1];
 	int writeIndex = 0;
+	TreeItem item = anchorItem;
 	for (int i = anchorIndex; i >= 0; i--) {
-		newSelection [writeIndex++] = availableItems [i];
+		newSelection [writeIndex++] = item;
+		item = AvailableItems.previous (item);
 	}
 	setSelection (newSelection, false);
 	setFocusItem (selectedItem, true);
@@ -2524,11 +2436,11 @@ void onKeyDown (Event event) {
 	}
 	if ((event.stateMask & SWT.CTRL) != 0) return;
 
-	int initialIndex = focusItem.availableIndex;
+	int initialIndex = focusItem.getAvailableIndex ();
 	char character = Character.toLowerCase (event.character);
 	/* check available items from current focus item to bottom */
-	for (int i = initialIndex + 1; i < availableItemsCount; i++) {
-		TreeItem item = availableItems [i];
+	TreeItem item = initialIndex + 1 < availableItemsCount ? availableItems.get (initialIndex + 1) : null;
+	for (int i = initialIndex + 1; i < availableItemsCount; i++, item = AvailableItems.next (item)) {
 		String text = item.getText (0, false);
 		if (text.length() > 0) {
 			if (Character.toLowerCase (text.charAt (0)) == character) {
@@ -2544,8 +2456,8 @@ void onKeyDown (Event event) {
 		}
 	}
 	/* check available items from top to current focus item */
-	for (int i = 0; i < initialIndex; i++) {
-		TreeItem item = availableItems [i];
+	item = initialIndex > 0 ? availableItems.get (0) : null;
+	for (int i = 0; i < initialIndex; i++, item = AvailableItems.next (item)) {
 		String text = item.getText (0, false);
 		if (text.length() > 0) {
 			if (Character.toLowerCase (text.charAt (0)) == character) {
@@ -2565,7 +2477,7 @@ void onMouseDoubleClick (Event event) {
 	if (!isFocusControl ()) setFocus ();
 	int index = (event.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if  (!(0 <= index && index < availableItemsCount)) return;	/* not on an available item */
-	TreeItem selectedItem = availableItems [index];
+	TreeItem selectedItem = availableItems.get (index);
 	
 	/* 
 	 * If the two clicks of the double click did not occur over the same item then do not
@@ -2588,7 +2500,7 @@ void onMouseDown (Event event) {
 	if (!isFocusControl ()) forceFocus ();
 	int index = (event.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if (!(0 <= index && index < availableItemsCount)) return;	/* not on an available item */
-	TreeItem selectedItem = availableItems [index];
+	TreeItem selectedItem = availableItems.get (index);
 	
 	/* if click was in expander box */
 	if (selectedItem.items.length > 0 && selectedItem.getExpanderBounds ().contains (event.x, event.y)) {
@@ -2644,7 +2556,7 @@ void onMouseDown (Event event) {
 			if (event.button == 1) {
 				selectItem (selectedItem, false);
 				setFocusItem (selectedItem, true);
-				redrawItem (selectedItem.availableIndex, true);
+				redrawItem (selectedItem.getAvailableIndex (), true);
 				if (sendSelection) {
 					Event newEvent = new Event ();
 					newEvent.item = selectedItem;
@@ -2655,7 +2567,7 @@ void onMouseDown (Event event) {
 			if ((event.stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 				selectItem (selectedItem, false);
 				setFocusItem (selectedItem, true);
-				redrawItem (selectedItem.availableIndex, true);
+				redrawItem (selectedItem.getAvailableIndex (), true);
 				if (sendSelection) {
 					Event newEvent = new Event ();
 					newEvent.item = selectedItem;
@@ -2680,15 +2592,17 @@ void onMouseDown (Event event) {
 		if (event.button == 1) {
 			if ((event.stateMask & (SWT.CTRL | SWT.SHIFT)) == SWT.SHIFT) {
 				if (anchorItem == null) anchorItem = focusItem;
-				int anchorIndex = anchorItem.availableIndex;
-				int selectIndex = selectedItem.availableIndex;
+				int anchorIndex = anchorItem.getAvailableIndex ();
+				int selectIndex = selectedItem.getAvailableIndex ();
 				TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
 				int step = anchorIndex < selectIndex ? 1 : -1;
 				int writeIndex = 0;
+				TreeItem item = availableItems.get (anchorIndex);
 				for (int i = anchorIndex; i != selectIndex; i += step) {
-					newSelection [writeIndex++] = availableItems [i];
+					newSelection [writeIndex++] = item;
+					item = step > 0 ? AvailableItems.next (item) : AvailableItems.previous (item);
 				}
-				newSelection [writeIndex] = availableItems [selectIndex];
+				newSelection [writeIndex] = item;
 				setSelection (newSelection, false);
 				setFocusItem (selectedItem, true);
 				redrawItems (
@@ -2704,7 +2618,7 @@ void onMouseDown (Event event) {
 			}
 			selectItem (selectedItem, (event.stateMask & SWT.CTRL) != 0);
 			setFocusItem (selectedItem, true);
-			redrawItem (selectedItem.availableIndex, true);
+			redrawItem (selectedItem.getAvailableIndex (), true);
 			if (sendSelection) {
 				Event newEvent = new Event ();
 				newEvent.item = selectedItem;
@@ -2716,7 +2630,7 @@ void onMouseDown (Event event) {
 		if ((event.stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 			selectItem (selectedItem, false);
 			setFocusItem (selectedItem, true);
-			redrawItem (selectedItem.availableIndex, true);
+			redrawItem (selectedItem.getAvailableIndex (), true);
 			if (sendSelection) {
 				Event newEvent = new Event ();
 				newEvent.item = selectedItem;
@@ -2730,7 +2644,7 @@ void onMouseDown (Event event) {
 	if ((event.stateMask & SWT.CTRL) != 0) {
 		removeSelectedItem (getSelectionIndex (selectedItem));
 		setFocusItem (selectedItem, true);
-		redrawItem (selectedItem.availableIndex, true);
+		redrawItem (selectedItem.getAvailableIndex (), true);
 		if (sendSelection) {
 			Event newEvent = new Event ();
 			newEvent.item = selectedItem;
@@ -2740,15 +2654,17 @@ void onMouseDown (Event event) {
 	}
 	if ((event.stateMask & SWT.SHIFT) != 0) {
 		if (anchorItem == null) anchorItem = focusItem;
-		int anchorIndex = anchorItem.availableIndex;
-		int selectIndex = selectedItem.availableIndex;
+		int anchorIndex = anchorItem.getAvailableIndex ();
+		int selectIndex = selectedItem.getAvailableIndex ();
 		TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
 		int step = anchorIndex < selectIndex ? 1 : -1;
 		int writeIndex = 0;
+		TreeItem item = availableItems.get (anchorIndex);
 		for (int i = anchorIndex; i != selectIndex; i += step) {
-			newSelection [writeIndex++] = availableItems [i];
+			newSelection [writeIndex++] = item;
+			item = step > 0 ? AvailableItems.next (item) : AvailableItems.previous (item);
 		}
-		newSelection [writeIndex] = availableItems [selectIndex];
+		newSelection [writeIndex] = item;
 		setSelection (newSelection, false);
 		setFocusItem (selectedItem, true);
 		redrawItems (
@@ -2764,7 +2680,7 @@ void onMouseDown (Event event) {
 	}
 	selectItem (selectedItem, false);
 	setFocusItem (selectedItem, true);
-	redrawItem (selectedItem.availableIndex, true);
+	redrawItem (selectedItem.getAvailableIndex (), true);
 	if (sendSelection) {
 		Event newEvent = new Event ();
 		newEvent.item = selectedItem;
@@ -2774,20 +2690,20 @@ void onMouseDown (Event event) {
 void onMouseUp (Event event) {
 	int index = (event.y - getHeaderHeight ()) / itemHeight + topIndex;
 	if (!(0 <= index && index < availableItemsCount)) return;	/* not on an available item */
-	lastClickedItem = availableItems [index];
+	lastClickedItem = availableItems.get (index);
 }
 void onPageDown (int stateMask) {
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* PageDown with no modifiers */
-		int newFocusIndex = focusItem.availableIndex + visibleItemCount - 1;
+		int newFocusIndex = focusItem.getAvailableIndex () + visibleItemCount - 1;
 		newFocusIndex = Math.min (newFocusIndex, availableItemsCount - 1);
-		if (newFocusIndex == focusItem.availableIndex) return;
-		TreeItem item = availableItems [newFocusIndex];
+		if (newFocusIndex == focusItem.getAvailableIndex ()) return;
+		TreeItem item = availableItems.get (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == (SWT.CTRL | SWT.SHIFT)) {
@@ -2795,68 +2711,70 @@ void onPageDown (int stateMask) {
 		int newTopIndex = topIndex + visibleItemCount;
 		newTopIndex = Math.min (newTopIndex, availableItemsCount - visibleItemCount);
 		if (newTopIndex == topIndex) return;
-		setTopItem (availableItems [newTopIndex]);
+		setTopItem (availableItems.get (newTopIndex));
 		return;
 	}
 	if ((style & SWT.SINGLE) != 0) {
 		if ((stateMask & SWT.SHIFT) != 0) {
 			/* Shift+PageDown */
-			int newFocusIndex = focusItem.availableIndex + visibleItemCount - 1;
+			int newFocusIndex = focusItem.getAvailableIndex () + visibleItemCount - 1;
 			newFocusIndex = Math.min (newFocusIndex, availableItemsCount - 1);
-			if (newFocusIndex == focusItem.availableIndex) return;
-			TreeItem item = availableItems [newFocusIndex];
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
+			TreeItem item = availableItems.get (newFocusIndex);
 			selectItem (item, false);
 			setFocusItem (item, true);
 			showItem (item);
-			redrawItem (item.availableIndex, true);
+			redrawItem (item.getAvailableIndex (), true);
 			return;
 		}
 		/* CTRL+PageDown */
 		int newTopIndex = topIndex + visibleItemCount;
 		newTopIndex = Math.min (newTopIndex, availableItemsCount - visibleItemCount);
 		if (newTopIndex == topIndex) return;
-		setTopItem (availableItems [newTopIndex]);
+		setTopItem (availableItems.get (newTopIndex));
 		return;
 	}
 	/* SWT.MULTI */
 	if ((stateMask & SWT.CTRL) != 0) {
 		/* CTRL+PageDown */
 		int bottomIndex = Math.min (topIndex + visibleItemCount - 1, availableItemsCount - 1);
-		if (focusItem.availableIndex != bottomIndex) {
+		if (focusItem.getAvailableIndex () != bottomIndex) {
 			/* move focus to bottom item in viewport */
-			setFocusItem (availableItems [bottomIndex], true);
+			setFocusItem (availableItems.get (bottomIndex), true);
 			redrawItem (bottomIndex, true);
 		} else {
 			/* at bottom of viewport, so set focus to bottom item one page down */
 			int newFocusIndex = Math.min (availableItemsCount - 1, bottomIndex + visibleItemCount);
-			if (newFocusIndex == focusItem.availableIndex) return;
-			setFocusItem (availableItems [newFocusIndex], true);
-			showItem (availableItems [newFocusIndex]);
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
+			setFocusItem (availableItems.get (newFocusIndex), true);
+			showItem (availableItems.get (newFocusIndex));
 			redrawItem (newFocusIndex, true);
 		}
 		return;
 	}
 	/* Shift+PageDown */
 	if (anchorItem == null) anchorItem = focusItem;
-	int anchorIndex = anchorItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
 	int bottomIndex = Math.min (topIndex + visibleItemCount - 1, availableItemsCount - 1);
 	int selectIndex;
-	if (focusItem.availableIndex != bottomIndex) {
+	if (focusItem.getAvailableIndex () != bottomIndex) {
 		/* select from focus to bottom item in viewport */
 		selectIndex = bottomIndex;
 	} else {
 		/* already at bottom of viewport, so select to bottom of one page down */
 		selectIndex = Math.min (availableItemsCount - 1, bottomIndex + visibleItemCount);
-		if (selectIndex == focusItem.availableIndex && focusItem.isSelected ()) return;
+		if (selectIndex == focusItem.getAvailableIndex () && focusItem.isSelected ()) return;
 	}
-	TreeItem selectedItem = availableItems [selectIndex];
+	TreeItem selectedItem = availableItems.get (selectIndex);
 	TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
 	int step = anchorIndex < selectIndex ? 1 : -1;
 	int writeIndex = 0;
+	TreeItem item = availableItems.get (anchorIndex);
 	for (int i = anchorIndex; i != selectIndex; i += step) {
-		newSelection [writeIndex++] = availableItems [i];
+		newSelection [writeIndex++] = item;
+		item = step > 0 ? AvailableItems.next (item) : AvailableItems.previous (item);
 	}
-	newSelection [writeIndex] = availableItems [selectIndex];
+	newSelection [writeIndex] = item;
 	setSelection (newSelection, false);
 	setFocusItem (selectedItem, true);
 	showItem (selectedItem);
@@ -2868,77 +2786,79 @@ void onPageUp (int stateMask) {
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == 0) {
 		/* PageUp with no modifiers */
-		int newFocusIndex = Math.max (0, focusItem.availableIndex - visibleItemCount + 1);
-		if (newFocusIndex == focusItem.availableIndex) return;
-		TreeItem item = availableItems [newFocusIndex];
+		int newFocusIndex = Math.max (0, focusItem.getAvailableIndex () - visibleItemCount + 1);
+		if (newFocusIndex == focusItem.getAvailableIndex ()) return;
+		TreeItem item = availableItems.get (newFocusIndex);
 		selectItem (item, false);
 		setFocusItem (item, true);
 		showItem (item);
-		redrawItem (item.availableIndex, true);
+		redrawItem (item.getAvailableIndex (), true);
 		return;
 	}
 	if ((stateMask & (SWT.CTRL | SWT.SHIFT)) == (SWT.CTRL | SWT.SHIFT)) {
 		/* CTRL+Shift+PageUp */
 		int newTopIndex = Math.max (0, topIndex - visibleItemCount);
 		if (newTopIndex == topIndex) return;
-		setTopItem (availableItems [newTopIndex]);
+		setTopItem (availableItems.get (newTopIndex));
 		return;
 	}
 	if ((style & SWT.SINGLE) != 0) {
 		if ((stateMask & SWT.SHIFT) != 0) {
 			/* Shift+PageUp */
-			int newFocusIndex = Math.max (0, focusItem.availableIndex - visibleItemCount + 1);
-			if (newFocusIndex == focusItem.availableIndex) return;
-			TreeItem item = availableItems [newFocusIndex];
+			int newFocusIndex = Math.max (0, focusItem.getAvailableIndex () - visibleItemCount + 1);
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
+			TreeItem item = availableItems.get (newFocusIndex);
 			selectItem (item, false);
 			setFocusItem (item, true);
 			showItem (item);
-			redrawItem (item.availableIndex, true);
+			redrawItem (item.getAvailableIndex (), true);
 			return;
 		}
 		/* CTRL+PageUp */
 		int newTopIndex = Math.max (0, topIndex - visibleItemCount);
 		if (newTopIndex == topIndex) return;
-		setTopItem (availableItems [newTopIndex]);
+		setTopItem (availableItems.get (newTopIndex));
 		return;
 	}
 	/* SWT.MULTI */
 	if ((stateMask & SWT.CTRL) != 0) {
 		/* CTRL+PageUp */
-		if (focusItem.availableIndex != topIndex) {
+		if (focusItem.getAvailableIndex () != topIndex) {
 			/* move focus to top item in viewport */
-			setFocusItem (availableItems [topIndex], true);
+			setFocusItem (availableItems.get (topIndex), true);
 			redrawItem (topIndex, true);
 		} else {
 			/* at top of viewport, so set focus to top item one page up */
-			int newFocusIndex = Math.max (0, focusItem.availableIndex - visibleItemCount);
-			if (newFocusIndex == focusItem.availableIndex) return;
-			setFocusItem (availableItems [newFocusIndex], true);
-			showItem (availableItems [newFocusIndex]);
+			int newFocusIndex = Math.max (0, focusItem.getAvailableIndex () - visibleItemCount);
+			if (newFocusIndex == focusItem.getAvailableIndex ()) return;
+			setFocusItem (availableItems.get (newFocusIndex), true);
+			showItem (availableItems.get (newFocusIndex));
 			redrawItem (newFocusIndex, true);
 		}
 		return;
 	}
 	/* Shift+PageUp */
 	if (anchorItem == null) anchorItem = focusItem;
-	int anchorIndex = anchorItem.availableIndex;
+	int anchorIndex = anchorItem.getAvailableIndex ();
 	int selectIndex;
-	if (focusItem.availableIndex != topIndex) {
+	if (focusItem.getAvailableIndex () != topIndex) {
 		/* select from focus to top item in viewport */
 		selectIndex = topIndex;
 	} else {
 		/* already at top of viewport, so select to top of one page up */
 		selectIndex = Math.max (0, topIndex - visibleItemCount);
-		if (selectIndex == focusItem.availableIndex && focusItem.isSelected ()) return;
+		if (selectIndex == focusItem.getAvailableIndex () && focusItem.isSelected ()) return;
 	}
-	TreeItem selectedItem = availableItems [selectIndex];
+	TreeItem selectedItem = availableItems.get (selectIndex);
 	TreeItem[] newSelection = new TreeItem [Math.abs (anchorIndex - selectIndex) + 1];
 	int step = anchorIndex < selectIndex ? 1 : -1;
 	int writeIndex = 0;
+	TreeItem item = availableItems.get (anchorIndex);
 	for (int i = anchorIndex; i != selectIndex; i += step) {
-		newSelection [writeIndex++] = availableItems [i];
+		newSelection [writeIndex++] = item;
+		item = step > 0 ? AvailableItems.next (item) : AvailableItems.previous (item);
 	}
-	newSelection [writeIndex] = availableItems [selectIndex];
+	newSelection [writeIndex] = item;
 	setSelection (newSelection, false);
 	setFocusItem (selectedItem, true);
 	showItem (selectedItem);
@@ -2975,7 +2895,7 @@ void onPaint (Event event) {
 	/* fill background not handled by items */
 	gc.setBackground (getBackground ());
 	gc.setClipping (clipping);
-	int bottomY = endIndex >= 0 ? getItemY (availableItems [endIndex]) + itemHeight : 0;
+	int bottomY = endIndex >= 0 ? getItemY (availableItems.get (endIndex)) + itemHeight : 0;
 	int fillHeight = Math.max (0, clientArea.height - bottomY);
 	if (fillHeight > 0) {	/* space below bottom item */
 		drawBackground (gc, 0, bottomY, clientArea.width, fillHeight);
@@ -2993,7 +2913,7 @@ void onPaint (Event event) {
 	int[] lineDash = gc.getLineDash ();
 	int lineWidth = gc.getLineWidth ();
 	for (int i = startIndex; i <= Math.min (endIndex, availableItemsCount - 1); i++) {
-		TreeItem item = availableItems [i];
+		TreeItem item = availableItems.get (i);
 		if (!item.isDisposed ()) {	/* ensure that item was not disposed in a callback */
 			if (startColumn == -1) {
 				/* indicates that region to paint is to the right of the last column */
@@ -3165,7 +3085,7 @@ void onSpace () {
 	if (focusItem == null) return;
 	if (!focusItem.isSelected ()) {
 		selectItem (focusItem, (style & SWT.MULTI) != 0);
-		redrawItem (focusItem.availableIndex, true);
+		redrawItem (focusItem.getAvailableIndex (), true);
 	}
 	if ((style & SWT.CHECK) != 0) {
 		focusItem.setChecked (!focusItem.checked);
@@ -3237,7 +3157,7 @@ void redrawFromItemDownwards (int index) {
  */
 void redrawItem (int itemIndex, boolean focusBoundsOnly) {
 	if (itemIndex == -1) return;
-	if (itemIndex < availableItemsCount && !availableItems [itemIndex].isInViewport ()) return;
+	if (itemIndex < availableItemsCount && !availableItems.get (itemIndex).isInViewport ()) return;
 	redrawItems (itemIndex, itemIndex, focusBoundsOnly);
 }
 /*
@@ -3264,7 +3184,7 @@ void redrawItems (int startIndex, int endIndex, boolean focusBoundsOnly) {
 		}
 		endIndex = Math.min (endIndex, availableItemsCount - 1);
 		for (int i = startIndex; i <= endIndex; i++) {
-			TreeItem item = availableItems [i];
+			TreeItem item = availableItems.get (i);
 			if (item.isInViewport ()) {
 				/* if custom painting is being done then repaint the full item */
 				if (custom) {
@@ -3297,7 +3217,8 @@ public void removeAll () {
 	for (int i = 0; i < items.length; i++) {
 		items [i].dispose (false);
 	}
-	items = availableItems = selectedItems = NO_ITEMS;
+	items = selectedItems = NO_ITEMS;
+	availableItems.removeAll ();
 	availableItemsCount = topIndex = 0;
 	anchorItem = lastClickedItem = insertMarkItem = null;
 	lastSelectionEvent = null;
@@ -3409,7 +3330,7 @@ public void select (TreeItem item) {
 	if (item == null) error (SWT.ERROR_NULL_ARGUMENT);
 	if (item.isDisposed ()) error (SWT.ERROR_INVALID_ARGUMENT);
 	selectItem (item, (style & SWT.MULTI) != 0);
-	redrawItem (item.availableIndex, true);
+	redrawItem (item.getAvailableIndex (), true);
 }
 /**
  * Selects all of the items in the receiver.
@@ -3425,8 +3346,7 @@ public void select (TreeItem item) {
 public void selectAll () {
 	checkWidget ();
 	if ((style & SWT.SINGLE) != 0) return;
-	selectedItems = new TreeItem [availableItemsCount];
-	System.arraycopy (availableItems, 0, selectedItems, 0, availableItemsCount);
+	selectedItems = availableItems.getItems (0, availableItemsCount);
 	redraw ();
 }
 void selectItem (TreeItem item, boolean addToSelection) {
@@ -3435,7 +3355,7 @@ void selectItem (TreeItem item, boolean addToSelection) {
 		selectedItems = new TreeItem[] {item};
 		for (int i = 0; i < oldSelectedItems.length; i++) {
 			if (oldSelectedItems [i] != item) {
-				redrawItem (oldSelectedItems [i].availableIndex, true);
+				redrawItem (oldSelectedItems [i].getAvailableIndex (), true);
 			}
 		}
 	} else {
@@ -3532,7 +3452,7 @@ void setFocusItem (TreeItem item, boolean redrawOldFocus) {
 	TreeItem oldFocusItem = focusItem;
 	focusItem = item;
 	if (redrawOldFocus && oldFocusItem != null) {
-		redrawItem (oldFocusItem.availableIndex, true);
+		redrawItem (oldFocusItem.getAvailableIndex (), true);
 	}
 }
 public void setFont (Font value) {
@@ -3652,11 +3572,11 @@ public void setInsertMark (TreeItem item, boolean before) {
 	TreeItem oldInsertItem = insertMarkItem;
 	insertMarkItem = item;
 	insertMarkPrecedes = before;
-	if (oldInsertItem != null && oldInsertItem.availableIndex != -1) {
-		redrawItem (oldInsertItem.availableIndex, true);
+	if (oldInsertItem != null && oldInsertItem.getAvailableIndex () != -1) {
+		redrawItem (oldInsertItem.getAvailableIndex (), true);
 	}
-	if (item != null && item != oldInsertItem && item.availableIndex != -1) {
-		redrawItem (item.availableIndex, true);
+	if (item != null && item != oldInsertItem && item.getAvailableIndex () != -1) {
+		redrawItem (item.getAvailableIndex (), true);
 	}
 }
 /**
@@ -3680,9 +3600,10 @@ public void setItemCount (int count) {
 
 	/* if the new item count is less than the current count then remove all excess items from the end */
 	if (count < items.length) {
-		redrawStart = count > 0 ? items [count - 1].availableIndex : 0;
+		redrawStart = count > 0 ? items [count - 1].getAvailableIndex () : 0;
 		redrawEnd = availableItemsCount - 1;
-		availableItemsCount = items [count].availableIndex;
+		availableItemsCount = items [count].getAvailableIndex ();
+		availableItems.remove (availableItemsCount, availableItems.size () - availableItemsCount);
 		for (int i = count; i < items.length; i++) {
 			items [i].dispose (false);
 		}
@@ -3721,23 +3642,17 @@ public void setItemCount (int count) {
 		if (columns.length == 0) updateHorizontalBar ();
 	} else {
 		int grow = count - items.length;
-		redrawStart = items.length == 0 ? 0 : items [items.length - 1].availableIndex;
+		redrawStart = items.length == 0 ? 0 : items [items.length - 1].getAvailableIndex ();
 		redrawEnd = availableItemsCount + grow - 1;
 		TreeItem[] newItems = new TreeItem [count];
 		System.arraycopy (items, 0, newItems, 0, items.length);
 		items = newItems;
-		if (availableItems.length < availableItemsCount + grow) {
-			TreeItem[] newAvailableItems = new TreeItem [availableItemsCount + grow];
-			System.arraycopy (availableItems, 0, newAvailableItems, 0, availableItemsCount);
-			availableItems = newAvailableItems;
-		}
 		for (int i = items.length - grow; i < count; i++) {
-			TreeItem newItem = new TreeItem (this, SWT.NONE, i, false);
-			items [i] = newItem;
-			items [i].availableIndex = availableItemsCount;
-			availableItems [availableItemsCount++] = newItem;
+			items [i] = new TreeItem (this, SWT.NONE, i, false);
 		}
-		if (oldCount == 0) focusItem = availableItems [0];
+		availableItems.insert (availableItemsCount, items, count - grow, grow);
+		availableItemsCount += grow;
+		if (oldCount == 0) focusItem = availableItems.get (0);
 	}
 
 	updateVerticalBar ();
@@ -3789,11 +3704,6 @@ public void setRedraw (boolean value) {
 	checkWidget();
 	if (value) {
 		if (--drawCount == 0) {
-			if (availableItems.length - availableItemsCount > 3) {
-				TreeItem[] newAvailableItems = new TreeItem [availableItemsCount];
-				System.arraycopy (availableItems, 0, newAvailableItems, 0, availableItemsCount);
-				availableItems = newAvailableItems;
-			}
 			updateVerticalBar ();
 			updateHorizontalBar ();
 		}
@@ -3885,7 +3795,7 @@ void setSelection (TreeItem[] items, boolean updateViewport) {
 
 	for (int i = 0; i < oldSelection.length; i++) {
 		if (!oldSelection [i].isSelected ()) {
-			int availableIndex = oldSelection [i].availableIndex;
+			int availableIndex = oldSelection [i].getAvailableIndex ();
 			if (availableIndex != -1) {
 				redrawItem (availableIndex, true);
 			}
@@ -3896,7 +3806,7 @@ void setSelection (TreeItem[] items, boolean updateViewport) {
 		setFocusItem (selectedItems [0], true);
 	}
 	for (int i = 0; i < selectedItems.length; i++) {
-		int availableIndex = selectedItems [i].availableIndex;
+		int availableIndex = selectedItems [i].getAvailableIndex ();
 		if (availableIndex != -1) {
 			redrawItem (availableIndex, true);
 		}
@@ -3982,7 +3892,7 @@ public void setTopItem (TreeItem item) {
 
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	if (availableItemsCount < visibleItemCount) return;
-	int index = Math.min (item.availableIndex, availableItemsCount - visibleItemCount);
+	int index = Math.min (item.getAvailableIndex (), availableItemsCount - visibleItemCount);
 	if (topIndex == index) return;
 
 	update ();
@@ -4067,7 +3977,7 @@ public void showItem (TreeItem item) {
 	/* item must be available */
 	if (!item.isAvailable ()) item.parentItem.expandAncestors ();
 	
-	int index = item.availableIndex;
+	int index = item.getAvailableIndex ();
 	int visibleItemCount = (clientArea.height - getHeaderHeight ()) / itemHeight;
 	/* nothing to do if item is already in viewport */
 	if (topIndex <= index && index < topIndex + visibleItemCount) return;
@@ -4078,7 +3988,7 @@ public void showItem (TreeItem item) {
 	} else {
 		/* item is below current viewport, so show on bottom */
 		visibleItemCount = Math.max (visibleItemCount, 1);	/* item to show should be top item */
-		setTopItem (availableItems [Math.min (index - visibleItemCount + 1, availableItemsCount - 1)]);
+		setTopItem (availableItems.get (Math.min (index - visibleItemCount + 1, availableItemsCount - 1)));
 	}
 }
 /**
@@ -4117,7 +4027,7 @@ void updateColumnWidth (TreeColumn column, int width) {
 		redraw (clientArea.width - change, 0, change, clientArea.height, false);
 	}
 	/* the focus box must be repainted because its stipple may become shifted as a result of its new width */
-	if (focusItem != null) redrawItem (focusItem.availableIndex, true);
+	if (focusItem != null) redrawItem (focusItem.getAvailableIndex (), true);
 
 	GC headerGC = new GC (header);
 	if (drawCount <= 0 && header.getVisible ()) {
@@ -4193,8 +4103,8 @@ void updateHorizontalBar () {
 			maxX += columns [i].width;
 		}
 	} else {
-		for (int i = 0; i < availableItemsCount; i++) {
-			Rectangle itemBounds = availableItems [i].getCellBounds (0);
+		for (TreeItem item = availableItems.get (0); item != null; item = AvailableItems.next (item)) {
+			Rectangle itemBounds = item.getCellBounds (0);
 			maxX = Math.max (maxX, itemBounds.x + itemBounds.width + horizontalOffset);
 		}
 	}
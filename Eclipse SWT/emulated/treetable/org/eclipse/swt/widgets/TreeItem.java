@@ -36,7 +36,8 @@ public class TreeItem extends Item {
 	Tree parent;
 	TreeItem parentItem;
 	TreeItem[] items = Tree.NO_ITEMS;
-	int availableIndex = -1;	/* index in parent's flat list of available (though not necessarily within viewport) items */
+	TreeItem availableLeft, availableRight, availableParent;	/* links in parent's tree of available (though not necessarily within viewport) items */
+	int availableSize, availablePriority;	/* size of the subtree rooted at the receiver in that tree, 0 if not available */
 	int depth = 0;				/* cached for performance, does not change after instantiation */
 	boolean checked, grayed, expanded, cached;
 
@@ -353,14 +354,14 @@ void addItem (TreeItem item, int index) {
 	 * If new item is above viewport then adjust topIndex and the vertical scrollbar
 	 * so that the current viewport items will not change. 
 	 */
-	if (item.availableIndex < parent.topIndex) {
+	if (item.getAvailableIndex () < parent.topIndex) {
 		parent.topIndex++;
 		ScrollBar vBar = parent.getVerticalBar ();
 		if (vBar != null) vBar.setSelection (parent.topIndex);
 		return;
 	}
 	
-	parent.redrawFromItemDownwards (availableIndex);
+	parent.redrawFromItemDownwards (getAvailableIndex ());
 }
 static Tree checkNull (Tree tree) {
 	if (tree == null) SWT.error (SWT.ERROR_NULL_ARGUMENT);
@@ -430,7 +431,7 @@ public void clear (int index, boolean recursive) {
 	/* if there are no columns then the horizontal scrollbar may need adjusting */
 	TreeItem[] availableDescendents = null;
 	int oldRightX = 0;
-	if (item.availableIndex != -1 && parent.columns.length == 0) {
+	if (item.getAvailableIndex () != -1 && parent.columns.length == 0) {
 		if (recursive) {
 			availableDescendents = item.computeAvailableDescendents ();
 			for (int i = 0; i < availableDescendents.length; i++) {
@@ -448,7 +449,7 @@ public void clear (int index, boolean recursive) {
 	if (recursive) {
 		item.clearAll (true, false);
 	}
-	if (item.availableIndex == -1) return;	/* no visual update needed */
+	if (item.getAvailableIndex () == -1) return;	/* no visual update needed */
 
 	/* adjust the horizontal scrollbar if needed */
 	if (parent.columns.length == 0) {
@@ -470,9 +471,9 @@ public void clear (int index, boolean recursive) {
 		int descendentCount = availableDescendents == null ?
 			item.computeAvailableDescendentCount () :
 			availableDescendents.length;
-		parent.redrawItems (item.availableIndex, item.availableIndex + descendentCount - 1, false);
+		parent.redrawItems (item.getAvailableIndex (), item.getAvailableIndex () + descendentCount - 1, false);
 	} else {
-		parent.redrawItem (item.availableIndex, false);
+		parent.redrawItem (item.getAvailableIndex (), false);
 	}
 }
 /**
@@ -504,7 +505,7 @@ void clearAll (boolean recursive, boolean doVisualUpdate) {
 	/* if there are no columns then the horizontal scrollbar may need adjusting */
 	TreeItem[] availableDescendents = null;
 	int oldRightX = 0;
-	if (doVisualUpdate && availableIndex != -1 && expanded && parent.columns.length == 0) {
+	if (doVisualUpdate && getAvailableIndex () != -1 && expanded && parent.columns.length == 0) {
 		if (recursive) {
 			availableDescendents = computeAvailableDescendents ();
 			/*
@@ -529,7 +530,7 @@ void clearAll (boolean recursive, boolean doVisualUpdate) {
 		if (recursive) items [i].clearAll (true, false);
 	}
 
-	if (!doVisualUpdate || availableIndex == -1 || !expanded) return;	/* no visual update needed */
+	if (!doVisualUpdate || getAvailableIndex () == -1 || !expanded) return;	/* no visual update needed */
 
 	/* adjust the horizontal scrollbar if needed */
 	if (parent.columns.length == 0) {
@@ -556,13 +557,13 @@ void clearAll (boolean recursive, boolean doVisualUpdate) {
 
 	/* redraw the item(s) */
 	if (recursive) {
-		int startIndex = items [0].availableIndex;
+		int startIndex = items [0].getAvailableIndex ();
 		TreeItem lastChild = items [items.length - 1]; 
-		int endIndex = lastChild.availableIndex + lastChild.computeAvailableDescendentCount () - 1;
+		int endIndex = lastChild.getAvailableIndex () + lastChild.computeAvailableDescendentCount () - 1;
 		parent.redrawItems (startIndex, endIndex, false);
 	} else {
 		for (int i = 0; i < items.length; i++) {
-			parent.redrawItem (items [i].availableIndex, false);
+			parent.redrawItem (items [i].getAvailableIndex (), false);
 		}
 	}
 }
@@ -742,12 +743,12 @@ public void dispose () {
 		if (isLastChild () && index > 0) {
 			/* vertical connector lines no longer needed for this item */
 			if (parentItem != null) {
-				startIndex = parentItem.items [index - 1].availableIndex;
+				startIndex = parentItem.items [index - 1].getAvailableIndex ();
 			} else {
-				startIndex = parent.items [index - 1].availableIndex;
+				startIndex = parent.items [index - 1].getAvailableIndex ();
 			}
 		} else {
-			startIndex = availableIndex;
+			startIndex = getAvailableIndex ();
 		}
 		endIndex = parent.availableItemsCount - 1;
 	}
@@ -759,7 +760,7 @@ public void dispose () {
 		parent.reassignFocus ();
 		focusItem = parent.focusItem;
 		if (focusItem != null) {
-			parent.redrawItem (focusItem.availableIndex, true);
+			parent.redrawItem (focusItem.getAvailableIndex (), true);
 		}
 	}
 	if (parentItem != null) parentItem.removeItem (this, index);
@@ -802,6 +803,13 @@ void expandAncestors () {
 		expanded = false;
 	}
 }
+/*
+ * Returns the receiver's index in the parent's available items, or -1 if
+ * it is not available.
+ */
+int getAvailableIndex () {
+	return parent.availableItems.indexOf (this);
+}
 /**
  * Returns the receiver's background color.
  *
@@ -1636,6 +1644,7 @@ boolean isAvailable () {
  * viewport of the parent.
  */
 boolean isInViewport () {
+	int availableIndex = getAvailableIndex ();
 	if (availableIndex == -1) return false;
 	int topIndex = parent.topIndex;
 	if (availableIndex < topIndex) return false;
@@ -2149,7 +2158,7 @@ public void removeAll () {
 	items = Tree.NO_ITEMS;
 	expanded = false;
 	if (isAvailable ()) {
-		parent.redrawItems (availableIndex, lastAvailableIndex, false);
+		parent.redrawItems (getAvailableIndex (), lastAvailableIndex, false);
 	}
 }
 /*
@@ -2289,6 +2298,7 @@ public void setExpanded (boolean value) {
 	if ((parent.style & SWT.VIRTUAL) != 0) cached = true;
 	if (value) {
 		expanded = value;
+		int availableIndex = getAvailableIndex ();
 		if (availableIndex == -1) return;
 
 		TreeItem[] availableDescendents = computeAvailableDescendents ();
@@ -2337,6 +2347,7 @@ public void setExpanded (boolean value) {
 	} else {
 		TreeItem[] descendents = computeAvailableDescendents ();
 		expanded = value;
+		int availableIndex = getAvailableIndex ();
 		if (availableIndex == -1) return;
 		Rectangle clientArea = parent.clientArea;
 
@@ -2382,7 +2393,7 @@ public void setExpanded (boolean value) {
 			parent.sendEvent (SWT.Selection, newEvent);
 			if (isDisposed ()) return;
 			parent.showItem (this);
-			parent.redrawItem (availableIndex, true);
+			parent.redrawItem (getAvailableIndex (), true);
 		}
 	}
 	/* redraw the receiver's expander box */
@@ -2753,11 +2764,12 @@ public void setItemCount (int count) {
 	checkWidget ();
 	count = Math.max (0, count);
 	if (count == items.length) return;
+	int availableIndex = getAvailableIndex ();
 	int redrawStart, redrawEnd;
 
 	/* if the new item count is less than the current count then remove all excess items from the end */
 	if (count < items.length) {
-		redrawStart = count > 0 ? items [count - 1].availableIndex : availableIndex;
+		redrawStart = count > 0 ? items [count - 1].getAvailableIndex () : availableIndex;
 		redrawEnd = parent.availableItemsCount - 1;
 		for (int i = count; i < items.length; i++) {
 			items [i].dispose (true);
@@ -2771,10 +2783,18 @@ public void setItemCount (int count) {
 		}
 		if (count == 0) expanded = false;
 	} else {
-		int oldAvailableDescendentCount = computeAvailableDescendentCount ();
 		int grow = count - items.length;
-		redrawStart = items.length == 0 ? availableIndex : items [items.length - 1].availableIndex;
+		redrawStart = items.length == 0 ? availableIndex : items [items.length - 1].getAvailableIndex ();
 		redrawEnd = expanded && isAvailable () ? parent.availableItemsCount + grow  - 1: redrawStart;
+		/* the new available items follow the receiver's last available descendent */
+		int insertIndex = -1;
+		if (expanded && availableIndex != -1) {
+			TreeItem lastItem = this;
+			while (lastItem.expanded && lastItem.items.length > 0) {
+				lastItem = lastItem.items [lastItem.items.length - 1];
+			}
+			insertIndex = lastItem.getAvailableIndex () + 1;
+		}
 		TreeItem[] newItems = new TreeItem [count];
 		System.arraycopy (items, 0, newItems, 0, items.length);
 		items = newItems;
@@ -2782,39 +2802,14 @@ public void setItemCount (int count) {
 			items [i] = new TreeItem (this, SWT.NONE, i, false);
 		}
 		
-		if (expanded && availableIndex != -1) {
-			/* expand the availableItems array if necessary */
-			if (parent.availableItems.length < parent.availableItemsCount + grow) {
-				TreeItem[] newAvailableItems = new TreeItem [parent.availableItemsCount + grow];
-				System.arraycopy (parent.availableItems, 0, newAvailableItems, 0, parent.availableItemsCount);
-				parent.availableItems = newAvailableItems;
-			}
-			TreeItem[] availableItems = parent.availableItems;
-			/* shift items right to create space for the new available items */
-			int dest = availableIndex + oldAvailableDescendentCount + grow;
-			System.arraycopy (
-				availableItems,
-				availableIndex + oldAvailableDescendentCount,
-				availableItems,
-				dest,
-				availableItems.length - dest);
+		if (insertIndex != -1) {
+			parent.availableItems.insert (insertIndex, items, count - grow, grow);
 			parent.availableItemsCount += grow;
-			/* copy new items in */
-			System.arraycopy (
-				items,
-				items.length - grow,
-				availableItems,
-				availableIndex + oldAvailableDescendentCount,
-				grow);
-			/* update availableIndex for all affected items */
-			for (int i = availableIndex + oldAvailableDescendentCount; i < parent.availableItemsCount; i++) {
-				availableItems [i].availableIndex = i;
-			}
 		}
 	}
 
 	if ((parent.style & SWT.VIRTUAL) != 0) cached = true;
-	if (availableIndex != -1) {
+	if (getAvailableIndex () != -1) {
 		if (expanded) parent.updateVerticalBar ();
 		parent.redrawItems (redrawStart, redrawEnd, false);
 	}
@@ -2896,7 +2891,7 @@ public void setText (int columnIndex, String value) {
 	gc.setFont (getFont (columnIndex, false));
 	computeDisplayText (columnIndex, gc);
 	gc.dispose ();
-	if (availableIndex == -1) return;
+	if (getAvailableIndex () == -1) return;
 	if (parent.columns.length == 0) {
 		Rectangle bounds = getBounds (false);
 		int rightX = bounds.x + bounds.width;
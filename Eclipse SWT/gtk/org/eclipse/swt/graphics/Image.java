@@ -278,6 +278,9 @@ public Image(Device device, Image srcImage, int flag) {
 		OS.gdk_pixbuf_get_from_drawable(pixbuf, srcImage.pixmap, colormap, 0, 0, 0, 0, width, height);
 		int stride = OS.gdk_pixbuf_get_rowstride(pixbuf);
 		int /*long*/ pixels = OS.gdk_pixbuf_get_pixels(pixbuf);
+		byte[] data = new byte[stride * height];
+		OS.memmove(data, pixels, data.length);
+		OS.g_object_unref(pixbuf);
 	
 		/* Apply transformation */
 		switch (flag) {
@@ -292,52 +295,45 @@ public Image(Device device, Image srcImage, int flag) {
 				byte oneRed = (byte)oneRGB.red;
 				byte oneGreen = (byte)oneRGB.green;
 				byte oneBlue = (byte)oneRGB.blue;
-				byte[] line = new byte[stride];
 				for (int y=0; y<height; y++) {
-					OS.memmove(line, pixels + (y * stride), stride);
 					for (int x=0; x<width; x++) {
-						int offset = x*3;
-						int red = line[offset] & 0xFF;
-						int green = line[offset+1] & 0xFF;
-						int blue = line[offset+2] & 0xFF;
+						int offset = y*stride + x*3;
+						int red = data[offset] & 0xFF;
+						int green = data[offset+1] & 0xFF;
+						int blue = data[offset+2] & 0xFF;
 						int intensity = red * red + green * green + blue * blue;
 						if (intensity < 98304) {
-							line[offset] = zeroRed;
-							line[offset+1] = zeroGreen;
-							line[offset+2] = zeroBlue;
+							data[offset] = zeroRed;
+							data[offset+1] = zeroGreen;
+							data[offset+2] = zeroBlue;
 						} else {
-							line[offset] = oneRed;
-							line[offset+1] = oneGreen;
-							line[offset+2] = oneBlue;
+							data[offset] = oneRed;
+							data[offset+1] = oneGreen;
+							data[offset+2] = oneBlue;
 						}
 					}
-					OS.memmove(pixels + (y * stride), line, stride);
 				}
 				break;
 			}
 			case SWT.IMAGE_GRAY: {			
-				byte[] line = new byte[stride];
 				for (int y=0; y<height; y++) {
-					OS.memmove(line, pixels + (y * stride), stride);
 					for (int x=0; x<width; x++) {
-						int offset = x*3;
-						int red = line[offset] & 0xFF;
-						int green = line[offset+1] & 0xFF;
-						int blue = line[offset+2] & 0xFF;
+						int offset = y*stride + x*3;
+						int red = data[offset] & 0xFF;
+						int green = data[offset+1] & 0xFF;
+						int blue = data[offset+2] & 0xFF;
 						byte intensity = (byte)((red+red+green+green+green+green+green+blue) >> 3);
-						line[offset] = line[offset+1] = line[offset+2] = intensity;
+						data[offset] = data[offset+1] = data[offset+2] = intensity;
 					}
-					OS.memmove(pixels + (y * stride), line, stride);
 				}
 				break;
 			}
 		}
 	
-		/* Copy data back to destination pixmap */
-		OS.gdk_pixbuf_render_to_drawable(pixbuf, pixmap, gdkGC, 0, 0, 0, 0, width, height, OS.GDK_RGB_DITHER_NORMAL, 0, 0);
+		/* Draw the data on the destination pixmap */
+		OS.gdk_draw_rgb_image(pixmap, gdkGC, 0, 0, width, height, OS.GDK_RGB_DITHER_NORMAL, data, stride);
 		
 		/* Free resources */
-		OS.g_object_unref(pixbuf);
 		OS.g_object_unref(gdkGC);
 	}
 	init();
@@ -554,16 +550,16 @@ void initNative(String filename) {
 				int height = OS.gdk_pixbuf_get_height(pixbuf);
 				int stride = OS.gdk_pixbuf_get_rowstride(pixbuf);
 				int /*long*/ pixels = OS.gdk_pixbuf_get_pixels(pixbuf);
-				byte[] line = new byte[stride];
+				byte[] data = new byte[stride * height];
+				OS.memmove(data, pixels, data.length);
 				alphaData = new byte[width * height];
 				for (int y = 0; y < height; y++) {
-					OS.memmove(line, pixels + (y * stride), stride);
 					for (int x = 0; x < width; x++) {
-						alphaData[y*width+x] = line[x*4 + 3];
-						line[x*4 + 3] = (byte) 0xFF;
+						alphaData[y*width+x] = data[y*stride + x*4 + 3];
+						data[y*stride + x*4 + 3] = (byte) 0xFF;
 					}
-					OS.memmove(pixels + (y * stride), line, stride);
 				}
+				OS.memmove(pixels, data, data.length);
 				createAlphaMask(width, height);
 			}
 			int /*long*/ [] pixmap_return = new int /*long*/ [1];
@@ -962,12 +958,14 @@ void init(ImageData image) {
 	if (!(((image.depth == 1 || image.depth == 2 || image.depth == 4 || image.depth == 8) && !palette.isDirect) ||
 		((image.depth == 8) || (image.depth == 16 || image.depth == 24 || image.depth == 32) && palette.isDirect)))
 			SWT.error (SWT.ERROR_UNSUPPORTED_DEPTH);
-	int /*long*/ pixbuf = OS.gdk_pixbuf_new(OS.GDK_COLORSPACE_RGB, false, 8, width, height);
-	if (pixbuf == 0) SWT.error(SWT.ERROR_NO_HANDLES);
-	int stride = OS.gdk_pixbuf_get_rowstride(pixbuf);
-	int /*long*/ data = OS.gdk_pixbuf_get_pixels(pixbuf);
+	/*
+	* Draw the image data on the pixmap directly when it is in the RGB
+	* format, instead of copying it into a pixbuf first.
+	*/
 	byte[] buffer = image.data;
-	if (!palette.isDirect || image.depth != 24 || stride != image.bytesPerLine || palette.redMask != 0xFF0000 || palette.greenMask != 0xFF00 || palette.blueMask != 0xFF) {
+	int stride = image.bytesPerLine;
+	if (!palette.isDirect || image.depth != 24 || palette.redMask != 0xFF0000 || palette.greenMask != 0xFF00 || palette.blueMask != 0xFF) {
+		stride = (width * 3 + 3) / 4 * 4;
 		buffer = new byte[stride * height];
 		if (palette.isDirect) {
 			ImageData.blit(ImageData.BLIT_SRC,
@@ -995,14 +993,12 @@ void init(ImageData image) {
 				false, false);
 		}
 	}
-	OS.memmove(data, buffer, stride * height);
 	int /*long*/ pixmap = OS.gdk_pixmap_new (OS.GDK_ROOT_PARENT(), width, height, -1);
 	if (pixmap == 0) SWT.error(SWT.ERROR_NO_HANDLES);
 	int /*long*/ gdkGC = OS.gdk_gc_new(pixmap);
 	if (gdkGC == 0) SWT.error(SWT.ERROR_NO_HANDLES);
-	OS.gdk_pixbuf_render_to_drawable(pixbuf, pixmap, gdkGC, 0, 0, 0, 0, width, height, OS.GDK_RGB_DITHER_NORMAL, 0, 0);
+	OS.gdk_draw_rgb_image(pixmap, gdkGC, 0, 0, width, height, OS.GDK_RGB_DITHER_NORMAL, buffer, stride);
 	OS.g_object_unref(gdkGC);
-	OS.g_object_unref(pixbuf);
 	
 	boolean isIcon = image.getTransparencyType() == SWT.TRANSPARENCY_MASK;
 	if (isIcon || image.transparentPixel != -1) {
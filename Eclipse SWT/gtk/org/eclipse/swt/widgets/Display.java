@@ -118,19 +118,12 @@ public class Display extends Device {
 	int /*long*/ shellMapProcClosure;
 
 	/* Widget Table */
-	int [] indexTable;
-	int freeSlot;
-	int /*long*/ lastHandle;
-	Widget lastWidget;
-	Widget [] widgetTable;
+	WidgetTable widgetTable;
 	final static int GROW_SIZE = 1024;
-	static final int SWT_OBJECT_INDEX;
 	static final int SWT_OBJECT_INDEX1;
 	static final int SWT_OBJECT_INDEX2;
 	static {
-		byte [] buffer = Converter.wcsToMbcs (null, "SWT_OBJECT_INDEX", true); //$NON-NLS-1$
-		SWT_OBJECT_INDEX = OS.g_quark_from_string (buffer);
-		buffer = Converter.wcsToMbcs (null, "SWT_OBJECT_INDEX1", true); //$NON-NLS-1$
+		byte [] buffer = Converter.wcsToMbcs (null, "SWT_OBJECT_INDEX1", true); //$NON-NLS-1$
 		SWT_OBJECT_INDEX1 = OS.g_quark_from_string (buffer);
 		buffer = Converter.wcsToMbcs (null, "SWT_OBJECT_INDEX2", true); //$NON-NLS-1$
 		SWT_OBJECT_INDEX2 = OS.g_quark_from_string (buffer);
@@ -164,8 +157,9 @@ public class Display extends Device {
 	Tray tray;
 	
 	/* Timers */
-	int [] timerIds;
-	Runnable [] timerList;
+	int timerId;
+	long timerTime;
+	TimerWheel timerWheel;
 	Callback timerCallback;
 	int /*long*/ timerProc;
 	Callback windowTimerCallback;
@@ -625,25 +619,7 @@ void addPopup (Menu menu) {
 
 void addWidget (int /*long*/ handle, Widget widget) {
 	if (handle == 0) return;
-	if (freeSlot == -1) {
-		int length = (freeSlot = indexTable.length) + GROW_SIZE;
-		int[] newIndexTable = new int[length];
-		Widget[] newWidgetTable = new Widget [length];
-		System.arraycopy (indexTable, 0, newIndexTable, 0, freeSlot);
-		System.arraycopy (widgetTable, 0, newWidgetTable, 0, freeSlot);
-		for (int i = freeSlot; i < length - 1; i++) {
-			newIndexTable[i] = i + 1;
-		}
-		newIndexTable[length - 1] = -1;
-		indexTable = newIndexTable;
-		widgetTable = newWidgetTable;
-	}
-	int index = freeSlot + 1;
-	OS.g_object_set_qdata (handle, SWT_OBJECT_INDEX, index);
-	int oldSlot = freeSlot;
-	freeSlot = indexTable[oldSlot];
-	indexTable [oldSlot] = -2;
-	widgetTable [oldSlot] = widget;
+	widgetTable.put (handle, widget);
 }
 
 /**
@@ -681,6 +657,52 @@ public void asyncExec (Runnable runnable) {
 	}
 }
 
+/**
+ * Causes the <code>run()</code> method of the runnable to
+ * be invoked by the user-interface thread at the next 
+ * reasonable opportunity, unless a runnable with the same
+ * key is already waiting to be invoked. In that case, the
+ * waiting runnable is replaced by the new one, which runs
+ * in its place. This allows a background thread to post
+ * repeated updates of the same widget without flooding the
+ * user-interface thread. The caller of this method continues 
+ * to run in parallel, and is not notified when the
+ * runnable has completed.
+ * <p>
+ * Note that at the time the runnable is invoked, widgets 
+ * that have the receiver as their display may have been
+ * disposed. Therefore, it is necessary to check for this
+ * case inside the runnable before accessing the widget.
+ * </p>
+ *
+ * @param key the key identifying the update
+ * @param runnable code to run on the user-interface thread or <code>null</code>
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the key is null</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_DEVICE_DISPOSED - if the receiver has been disposed</li>
+ * </ul>
+ * 
+ * @see #asyncExec(Runnable)
+ * 
+ * @since 3.6
+ */
+public void asyncExec (Object key, Runnable runnable) {
+	if (key == null) error (SWT.ERROR_NULL_ARGUMENT);
+	synchronized (Device.class) {
+		if (isDisposed ()) error (SWT.ERROR_DEVICE_DISPOSED);
+		synchronized (idleLock) {
+			if (idleNeeded && idleHandle == 0) {
+	 			//NOTE: calling unlocked function in OS
+				idleHandle = OS._g_idle_add (idleProc, 0);
+			}
+		}
+		synchronizer.asyncExec (key, runnable);
+	}
+}
+
 /**
  * Causes the system hardware to emit a short sound
  * (if it supports this capability).
@@ -1947,8 +1969,9 @@ public Shell [] getShells () {
 	checkDevice ();
 	int index = 0;
 	Shell [] result = new Shell [16];
-	for (int i = 0; i < widgetTable.length; i++) {
-		Widget widget = widgetTable [i];
+	Widget [] widgets = widgetTable.values;
+	for (int i = 0; i < widgets.length; i++) {
+		Widget widget = widgets [i];
 		if (widget != null && widget instanceof Shell) {
 			int j = 0;
 			while (j < index) {
@@ -2305,13 +2328,7 @@ public Thread getThread () {
 
 Widget getWidget (int /*long*/ handle) {
 	if (handle == 0) return null;
-	if (lastWidget != null && lastHandle == handle) return lastWidget;
-	int /*long*/ index = OS.g_object_get_qdata (handle, SWT_OBJECT_INDEX) - 1;
-	if (0 <= index && index < widgetTable.length) {
-		lastHandle = handle;
-		return lastWidget = widgetTable [(int)/*64*/index];
-	}
-	return null;	
+	return widgetTable.get (handle);
 }
 
 int /*long*/ idleProc (int /*long*/ data) {
@@ -2572,10 +2589,7 @@ void initializeSystemSettings () {
 }
 
 void initializeWidgetTable () {
-	indexTable = new int [GROW_SIZE];
-	widgetTable = new Widget [GROW_SIZE];
-	for (int i=0; i<GROW_SIZE-1; i++) indexTable [i] = i + 1;
-	indexTable [GROW_SIZE - 1] = -1;
+	widgetTable = new WidgetTable (GROW_SIZE);
 }
 
 void initializeWindowManager () {
@@ -3250,13 +3264,9 @@ void releaseDisplay () {
 	if (shellMapProcClosure != 0) OS.g_closure_unref (shellMapProcClosure);
 
 	/* Dispose the timer callback */
-	if (timerIds != null) {
-		for (int i=0; i<timerIds.length; i++) {
-			if (timerIds [i] != 0) OS.gtk_timeout_remove (timerIds [i]);
-		}
-	}
-	timerIds = null;
-	timerList = null;
+	if (timerId != 0) OS.gtk_timeout_remove (timerId);
+	timerId = 0;
+	timerWheel = null;
 	timerProc = 0;
 	timerCallback.dispose ();
 	timerCallback = null;
@@ -3335,10 +3345,11 @@ void releaseDisplay () {
 	/* Release references */
 	popups = null;
 	thread = null;
-	lastWidget = activeShell = null;
+	activeShell = null;
 	flushData = closures = null;
-	indexTable = signalIds = treeSelection = null;
-	widgetTable = modalShells = null;
+	signalIds = treeSelection = null;
+	modalShells = null;
+	widgetTable = null;
 	data = null;
 	values = keys = null;
 	windowManager = null;
@@ -3451,17 +3462,7 @@ void removePopup (Menu menu) {
 
 Widget removeWidget (int /*long*/ handle) {
 	if (handle == 0) return null;
-	lastWidget = null;
-	Widget widget = null;
-	int index = (int)/*64*/ OS.g_object_get_qdata (handle, SWT_OBJECT_INDEX) - 1;
-	if (0 <= index && index < widgetTable.length) {
-		widget = widgetTable [index];
-		widgetTable [index] = null;
-		indexTable [index] = freeSlot;
-		freeSlot = index;
-		OS.g_object_set_qdata (handle, SWT_OBJECT_INDEX, 0);
-	}
-	return widget;	
+	return widgetTable.remove (handle);
 }
 
 boolean runAsyncMessages (boolean all) {
@@ -3933,49 +3934,60 @@ public boolean sleep () {
 public void timerExec (int milliseconds, Runnable runnable) {
 	checkDevice ();
 	if (runnable == null) error (SWT.ERROR_NULL_ARGUMENT);
-	if (timerList == null) timerList = new Runnable [4];
-	if (timerIds == null) timerIds = new int [4];	
-	int index = 0;
-	while (index < timerList.length) {
-		if (timerList [index] == runnable) break;
-		index++;
-	}
-	if (index != timerList.length) {
-		OS.gtk_timeout_remove (timerIds [index]);
-		timerList [index] = null;
-		timerIds [index] = 0;
-		if (milliseconds < 0) return;
-	} else {
-		if (milliseconds < 0) return;
-		index = 0;
-		while (index < timerList.length) {
-			if (timerList [index] == null) break;
-			index++;
-		}
-		if (index == timerList.length) {
-			Runnable [] newTimerList = new Runnable [timerList.length + 4];
-			System.arraycopy (timerList, 0, newTimerList, 0, timerList.length);
-			timerList = newTimerList;
-			int [] newTimerIds = new int [timerIds.length + 4];
-			System.arraycopy (timerIds, 0, newTimerIds, 0, timerIds.length);
-			timerIds = newTimerIds;
-		}
-	}
-	int timerId = OS.gtk_timeout_add (milliseconds, timerProc, index);
-	if (timerId != 0) {
-		timerIds [index] = timerId;
-		timerList [index] = runnable;
+	timerExec (milliseconds, 0, runnable);
+}
+
+/*
+ * Causes the runnable to be run after the given number of milliseconds,
+ * and then every period milliseconds when the period is positive, until
+ * it is cancelled with a negative number of milliseconds.
+ */
+void timerExec (int milliseconds, int period, Runnable runnable) {
+	if (timerWheel == null) timerWheel = new TimerWheel ();
+	if (milliseconds < 0) {
+		timerWheel.cancel (runnable);
+		return;
 	}
+	long time = timerWheel.schedule (milliseconds, period, runnable);
+	if (timerId == 0 || time < timerTime) setTimer (time);
+}
+
+void setTimer (long time) {
+	if (timerId != 0) OS.gtk_timeout_remove (timerId);
+	int timeout = (int) Math.max (0, time - timerWheel.now ());
+	timerId = OS.gtk_timeout_add (timeout, timerProc, 0);
+	timerTime = time;
 }
 
 int /*long*/ timerProc (int /*long*/ i) {
-	if (timerList == null) return 0;
-	int index = (int)/*64*/i;
-	if (0 <= index && index < timerList.length) {
-		Runnable runnable = timerList [index];
-		timerList [index] = null;
-		timerIds [index] = 0;
-		if (runnable != null) runnable.run ();
+	timerId = 0;
+	if (timerWheel == null) return 0;
+	timerWheel.expire ();
+	long time = timerWheel.nextTime ();
+	if (time != -1) setTimer (time);
+	/*
+	* Take the expired runnables one at a time, so that a runnable
+	* that cancels or reschedules another one that expired with it
+	* stops it from running now.
+	*/
+	try {
+		Runnable runnable;
+		while (timerWheel != null && (runnable = timerWheel.poll ()) != null) {
+			/* Arm the native timer for the next period of a repeating timer */
+			TimerWheel.Timer timer = timerWheel.find (runnable);
+			if (timer != null && (timerId == 0 || timer.expires < timerTime)) {
+				setTimer (timer.expires);
+			}
+			runnable.run ();
+		}
+	} finally {
+		/*
+		* If a runnable throws an exception, run the runnables
+		* that expired after it as soon as possible.
+		*/
+		if (timerWheel != null && timerWheel.expired != null) {
+			setTimer (timerWheel.now ());
+		}
 	}
 	return 0;
 }
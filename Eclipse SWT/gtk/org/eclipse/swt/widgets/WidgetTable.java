@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2009 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.swt.widgets;
+
+
+/**
+ * Instances of this class map the native handles of a display
+ * to their widgets.
+ * <p>
+ * The handles are kept in an open addressing hash table with linear
+ * probing that doubles in size when it becomes half full, so that
+ * mapping a handle does not need to call into the native code.  The
+ * most recently found widgets are also kept in a small direct mapped
+ * cache in front of the table.
+ * </p>
+ */
+class WidgetTable {
+	long [] keys;
+	Widget [] values;
+	int size, shift;
+	long [] cacheKeys = new long [CACHE_SIZE];
+	Widget [] cacheValues = new Widget [CACHE_SIZE];
+
+	static final int CACHE_BITS = 3;
+	static final int CACHE_SIZE = 1 << CACHE_BITS;
+
+WidgetTable (int capacity) {
+	int length = 16;
+	shift = 28;
+	while (length < capacity) {
+		length <<= 1;
+		shift--;
+	}
+	keys = new long [length];
+	values = new Widget [length];
+}
+
+static int hash (long handle) {
+	return ((int) (handle ^ (handle >>> 32))) * 0x9E3779B9;
+}
+
+Widget get (long handle) {
+	int hash = hash (handle);
+	int cacheIndex = hash >>> (32 - CACHE_BITS);
+	if (cacheKeys [cacheIndex] == handle) return cacheValues [cacheIndex];
+	int mask = keys.length - 1;
+	int index = hash >>> shift;
+	long key;
+	while ((key = keys [index]) != 0) {
+		if (key == handle) {
+			cacheKeys [cacheIndex] = handle;
+			return cacheValues [cacheIndex] = values [index];
+		}
+		index = (index + 1) & mask;
+	}
+	return null;
+}
+
+void put (long handle, Widget widget) {
+	if (size * 2 >= keys.length) {
+		long [] oldKeys = keys;
+		Widget [] oldValues = values;
+		keys = new long [oldKeys.length * 2];
+		values = new Widget [oldValues.length * 2];
+		shift--;
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys [i] != 0) {
+				int index = hash (oldKeys [i]) >>> shift;
+				while (keys [index] != 0) index = (index + 1) & mask;
+				keys [index] = oldKeys [i];
+				values [index] = oldValues [i];
+			}
+		}
+	}
+	int hash = hash (handle);
+	int cacheIndex = hash >>> (32 - CACHE_BITS);
+	if (cacheKeys [cacheIndex] == handle) cacheValues [cacheIndex] = widget;
+	int mask = keys.length - 1;
+	int index = hash >>> shift;
+	long key;
+	while ((key = keys [index]) != 0) {
+		if (key == handle) {
+			values [index] = widget;
+			return;
+		}
+		index = (index + 1) & mask;
+	}
+	keys [index] = handle;
+	values [index] = widget;
+	size++;
+}
+
+Widget remove (long handle) {
+	int hash = hash (handle);
+	int cacheIndex = hash >>> (32 - CACHE_BITS);
+	if (cacheKeys [cacheIndex] == handle) {
+		cacheKeys [cacheIndex] = 0;
+		cacheValues [cacheIndex] = null;
+	}
+	int mask = keys.length - 1;
+	int index = hash >>> shift;
+	long key;
+	while ((key = keys [index]) != handle) {
+		if (key == 0) return null;
+		index = (index + 1) & mask;
+	}
+	Widget widget = values [index];
+	size--;
+	/*
+	* Move back the following handles of the same run that
+	* can be found from the free slot, so that the table
+	* does not need tombstones.
+	*/
+	int next = index;
+	while (true) {
+		next = (next + 1) & mask;
+		if ((key = keys [next]) == 0) break;
+		int home = hash (key) >>> shift;
+		if (index <= next ? (home <= index || home > next) : (home <= index && home > next)) {
+			keys [index] = key;
+			values [index] = values [next];
+			index = next;
+		}
+	}
+	keys [index] = 0;
+	values [index] = null;
+	return widget;
+}
+
+}
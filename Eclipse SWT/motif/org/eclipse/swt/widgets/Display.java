@@ -568,6 +568,46 @@ public void asyncExec (Runnable runnable) {
 		synchronizer.asyncExec (runnable);
 	}
 }
+
+/**
+ * Causes the <code>run()</code> method of the runnable to
+ * be invoked by the user-interface thread at the next 
+ * reasonable opportunity, unless a runnable with the same
+ * key is already waiting to be invoked. In that case, the
+ * waiting runnable is replaced by the new one, which runs
+ * in its place. This allows a background thread to post
+ * repeated updates of the same widget without flooding the
+ * user-interface thread. The caller of this method continues 
+ * to run in parallel, and is not notified when the
+ * runnable has completed.
+ * <p>
+ * Note that at the time the runnable is invoked, widgets 
+ * that have the receiver as their display may have been
+ * disposed. Therefore, it is necessary to check for this
+ * case inside the runnable before accessing the widget.
+ * </p>
+ *
+ * @param key the key identifying the update
+ * @param runnable code to run on the user-interface thread or <code>null</code>
+ *
+ * @exception IllegalArgumentException <ul>
+ *    <li>ERROR_NULL_ARGUMENT - if the key is null</li>
+ * </ul>
+ * @exception SWTException <ul>
+ *    <li>ERROR_DEVICE_DISPOSED - if the receiver has been disposed</li>
+ * </ul>
+ * 
+ * @see #asyncExec(Runnable)
+ * 
+ * @since 3.6
+ */
+public void asyncExec (Object key, Runnable runnable) {
+	if (key == null) error (SWT.ERROR_NULL_ARGUMENT);
+	synchronized (Device.class) {
+		if (isDisposed ()) error (SWT.ERROR_DEVICE_DISPOSED);
+		synchronizer.asyncExec (key, runnable);
+	}
+}
 /**
  * Causes the system hardware to emit a short sound
  * (if it supports this capability).